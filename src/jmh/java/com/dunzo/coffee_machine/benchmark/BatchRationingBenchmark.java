@@ -0,0 +1,68 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.BatchRationer;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.RationResult;
+import com.dunzo.coffee_machine.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of rationing a shared hot ingredient from many outlets, directly (batch size 1) and through
+ * the BatchRationer with different batch sizes and windows
+ * The throughput mode gives rations per second, the sample mode gives the latency distribution of a single ration
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class BatchRationingBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int batchSize;
+
+    @Param({"0", "50"})
+    public int windowMicros;
+
+    private InventoryManager inventoryManager;
+    private BatchRationer batchRationer;
+    private Recipe recipe;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        Map<String, Integer> itemsQuantity = new LinkedHashMap<>();
+        Map<String, Integer> ingredients = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            itemsQuantity.put("ingredient_" + i, Integer.MAX_VALUE);
+            ingredients.put("ingredient_" + i, 1);
+        }
+        inventoryManager = new InventoryManager(itemsQuantity);
+        recipe = Recipe.compile("beverage", ingredients, inventoryManager.getIngredientRegistry());
+        batchRationer = batchSize > 1 ?
+                new BatchRationer(inventoryManager, batchSize, TimeUnit.MICROSECONDS.toNanos(windowMicros)) : null;
+    }
+
+    @Benchmark
+    public RationResult ration() {
+        return batchRationer == null ? inventoryManager.tryRation(recipe) : batchRationer.ration(recipe);
+    }
+}
@@ -0,0 +1,28 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar
+ * Delegates to the JMH launcher, defaulting the results to json so that runs can be compared for regressions
+ * All the usual JMH options are accepted and take precedence, e.g. -rff other.json or -rf text
+ */
+public class BenchmarkRunner {
+
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add(0, "json");
+            arguments.add(0, "-rf");
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add(0, DEFAULT_RESULT_FILE);
+            arguments.add(0, "-rff");
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,20 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+/**
+ * Helpers shared by the benchmarks
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * keeps the machine's own INFO lines, e.g. the machine and menu lifecycle, out of the measurements
+     */
+    static void quietLogging() {
+        LogManager.getRootLogger().setLevel(Level.WARN);
+    }
+}
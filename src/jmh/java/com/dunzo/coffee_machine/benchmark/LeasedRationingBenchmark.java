@@ -0,0 +1,66 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.IngredientLeases;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.RationResult;
+import com.dunzo.coffee_machine.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of rationing the same ingredients from many outlets, on the shared counters and from the outlets' own
+ * leases of a striped inventory
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LeasedRationingBenchmark {
+
+    @Param({"false", "true"})
+    public boolean striped;
+
+    @Param({"5", "50"})
+    public int ingredientsPerRecipe;
+
+    private InventoryManager inventoryManager;
+    private IngredientLeases ingredientLeases;
+    private Recipe recipe;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        Map<String, Integer> itemsQuantity = new LinkedHashMap<>();
+        Map<String, Integer> ingredients = new LinkedHashMap<>();
+        for (int i = 0; i < ingredientsPerRecipe; i++) {
+            itemsQuantity.put("ingredient_" + i, Integer.MAX_VALUE);
+            ingredients.put("ingredient_" + i, 1);
+        }
+        inventoryManager = new InventoryManager(itemsQuantity);
+        recipe = Recipe.compile("beverage", ingredients, inventoryManager.getIngredientRegistry());
+        ingredientLeases = striped ? new IngredientLeases(inventoryManager, 8) : null;
+    }
+
+    @Benchmark
+    public RationResult ration() {
+        return ingredientLeases == null ? inventoryManager.tryRation(recipe) : ingredientLeases.ration(recipe);
+    }
+}
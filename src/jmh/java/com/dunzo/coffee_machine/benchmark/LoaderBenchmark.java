@@ -0,0 +1,63 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineDefinitionLoader;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a synthetic menu from its json bytes with the streaming loader, against building the whole tree first
+ * Run with -prof gc to compare the allocation per load
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    @Param({"1000", "100000"})
+    public int beverages;
+
+    @Param({"50", "5000"})
+    public int ingredients;
+
+    private ObjectMapper objectMapper;
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        input = objectMapper.writeValueAsBytes(SyntheticMenu.generate(beverages, ingredients, 5, 1000, 100, 42)
+                .toInput(4, objectMapper));
+    }
+
+    @Benchmark
+    public MachineDefinition streamingLoad() throws IOException {
+        return MachineDefinitionLoader.load(new ByteArrayInputStream(input));
+    }
+
+    @Benchmark
+    public MachineDefinition treeThenLoad() throws IOException {
+        JsonNode tree = objectMapper.readTree(input);
+        return MachineDefinitionLoader.load(tree, objectMapper);
+    }
+}
@@ -0,0 +1,85 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.ApplicationConstants;
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end time to serve a whole synthetic menu through CoffeeMachine.submitAllOrders() and close()
+ * Stock is sized so that roughly half of the orders can be served
+ * Run with and without the machine metrics to check the cost of the instrumentation end to end
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderThroughputBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int beverages;
+
+    @Param({"5", "50", "500"})
+    public int ingredients;
+
+    @Param({"4"})
+    public int outlets;
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private SyntheticMenu menu;
+    private CoffeeMachine coffeeMachine;
+    private List<Recipe> recipes;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkSupport.quietLogging();
+        System.setProperty(ApplicationConstants.METRICS_ENABLED_PROPERTY, Boolean.toString(metrics));
+        //average recipe uses 3 ingredients of 25 units each
+        int quantityPerIngredient = Math.max(1, beverages * 3 * 25 / ingredients / 2);
+        menu = SyntheticMenu.generate(beverages, ingredients, 5, quantityPerIngredient, 0, 42);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, menu.getItemsQuantity());
+        recipes = new ArrayList<>(beverages);
+        menu.getBeverages().forEach((name, ingredients) -> recipes.add(Recipe.compile(name, ingredients, ingredientRegistry)));
+        coffeeMachine = new CoffeeMachine(outlets, inventoryManager);
+    }
+
+    @Benchmark
+    public List<OutletResponse> submitAllOrdersAndClose() throws Exception {
+        List<CompletableFuture<OutletResponse>> responses = coffeeMachine.submitAllOrders(recipes);
+        coffeeMachine.close();
+        List<OutletResponse> results = new ArrayList<>(responses.size());
+        for (CompletableFuture<OutletResponse> response : responses) {
+            results.add(response.join());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,98 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.BeveragePreparationTask;
+import com.dunzo.coffee_machine.FeasibilityIndex;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.MachineMetrics;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of BeveragePreparationTask.call() with 1/4/16/64 outlet threads sharing one inventory
+ * Each thread is an outlet picking random beverages of a synthetic menu
+ * Run with and without the machine metrics to check the cost of the instrumentation
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreparationTaskBenchmark {
+
+    @Param({"20"})
+    public int ingredients;
+
+    @Param({"100"})
+    public int beverages;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private BeveragePreparationTask[] tasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        SyntheticMenu menu = SyntheticMenu.generate(beverages, ingredients, 5, Integer.MAX_VALUE, 0, 42);
+        InventoryManager inventoryManager = new InventoryManager(menu.getItemsQuantity());
+        RefillProvider refillProvider = RefillProvider.createEmpty(inventoryManager.getIngredientRegistry());
+        FeasibilityIndex feasibilityIndex = new FeasibilityIndex(inventoryManager, refillProvider);
+        MachineMetrics machineMetrics = metrics ? new MachineMetrics() : MachineMetrics.disabled();
+        tasks = new BeveragePreparationTask[beverages];
+        int i = 0;
+        for (Map.Entry<String, Map<String, Integer>> beverage : menu.getBeverages().entrySet()) {
+            tasks[i++] = new BeveragePreparationTask(Recipe.compile(beverage.getKey(), beverage.getValue(),
+                    inventoryManager.getIngredientRegistry()), inventoryManager, refillProvider, feasibilityIndex,
+                    machineMetrics);
+        }
+    }
+
+    private OutletResponse prepareRandomBeverage() throws Exception {
+        return tasks[ThreadLocalRandom.current().nextInt(tasks.length)].call();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OutletResponse outlets1() throws Exception {
+        return prepareRandomBeverage();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OutletResponse outlets4() throws Exception {
+        return prepareRandomBeverage();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public OutletResponse outlets16() throws Exception {
+        return prepareRandomBeverage();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public OutletResponse outlets64() throws Exception {
+        return prepareRandomBeverage();
+    }
+}
@@ -0,0 +1,119 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.AvailabilityIndex;
+import com.dunzo.coffee_machine.FeasibilityIndex;
+import com.dunzo.coffee_machine.InsufficientIngredientsException;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.RationResult;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of InventoryManager rationing when the ingredients are available and when they are not
+ * Run with and without an AvailabilityIndex of a 1000 beverage menu listening to the inventory
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RationBenchmark {
+
+    @Param({"5", "50"})
+    public int ingredientsPerRecipe;
+
+    @Param({"false", "true"})
+    public boolean availabilityIndex;
+
+    private InventoryManager inventoryManager;
+    private FeasibilityIndex feasibilityIndex;
+    private Recipe recipe;
+    private Recipe insufficientRecipe;
+    private Map<String, Integer> recipeMap;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        Map<String, Integer> itemsQuantity = new LinkedHashMap<>();
+        Map<String, Integer> ingredients = new LinkedHashMap<>();
+        for (int i = 0; i < ingredientsPerRecipe; i++) {
+            itemsQuantity.put("ingredient_" + i, Integer.MAX_VALUE);
+            ingredients.put("ingredient_" + i, 1);
+        }
+        itemsQuantity.put("scarce", 0);
+        inventoryManager = new InventoryManager(itemsQuantity);
+        feasibilityIndex = new FeasibilityIndex(inventoryManager,
+                RefillProvider.createEmpty(inventoryManager.getIngredientRegistry()));
+        recipe = Recipe.compile("beverage", ingredients, inventoryManager.getIngredientRegistry());
+        recipeMap = ingredients;
+        Map<String, Integer> insufficientIngredients = new LinkedHashMap<>(ingredients);
+        insufficientIngredients.put("scarce", 1);
+        insufficientRecipe = Recipe.compile("insufficient", insufficientIngredients, inventoryManager.getIngredientRegistry());
+        if (availabilityIndex) {
+            //every beverage of the menu shares the ingredients of the benchmarked recipe
+            List<Recipe> menu = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                menu.add(Recipe.compile("beverage_" + i, Collections.singletonMap("ingredient_" + i % ingredientsPerRecipe,
+                        1 + i), inventoryManager.getIngredientRegistry()));
+            }
+            new AvailabilityIndex(inventoryManager, RefillProvider.createEmpty(inventoryManager.getIngredientRegistry()), menu);
+        }
+    }
+
+    @Benchmark
+    public RationResult rationSuccess() {
+        return inventoryManager.tryRation(recipe);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RationResult rationSuccessContended() {
+        return inventoryManager.tryRation(recipe);
+    }
+
+    @Benchmark
+    public void rationSuccessMapAdapter() throws InsufficientIngredientsException {
+        inventoryManager.ration(recipeMap);
+    }
+
+    @Benchmark
+    public RationResult rationInsufficient() {
+        return inventoryManager.tryRation(insufficientRecipe);
+    }
+
+    @Benchmark
+    public Object rationInsufficientException() {
+        try {
+            inventoryManager.ration(insufficientRecipe);
+            throw new IllegalStateException("scarce ingredient was rationed");
+        } catch (InsufficientIngredientsException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public RationResult feasibilityCheckInfeasible() {
+        return feasibilityIndex.check(insufficientRecipe);
+    }
+}
@@ -0,0 +1,64 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.BeveragePreparationTask;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the fail-refill-retry path of BeveragePreparationTask backed by the RefillProvider
+ * Every invocation starts with an empty inventory and a full refill pack, so that every order needs a refill
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RefillBenchmark {
+
+    private static final int INGREDIENTS = 5;
+
+    private SyntheticMenu menu;
+    private Map.Entry<String, Map<String, Integer>> beverage;
+    private BeveragePreparationTask task;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkSupport.quietLogging();
+        menu = SyntheticMenu.generate(1, INGREDIENTS, INGREDIENTS, 0, 1000, 42);
+        beverage = menu.getBeverages().entrySet().iterator().next();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, Collections.emptyMap());
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, menu.getRefillPack());
+        task = new BeveragePreparationTask(Recipe.compile(beverage.getKey(), beverage.getValue(), ingredientRegistry),
+                inventoryManager, refillProvider);
+    }
+
+    @Benchmark
+    public OutletResponse prepareAfterRefill() {
+        return task.call();
+    }
+}
@@ -0,0 +1,71 @@
+package com.dunzo.coffee_machine.benchmark;
+
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.OrderScheduler;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SchedulePlan;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to plan a window of orders with the OrderScheduler, stock is sized so that roughly half of the orders fit
+ * The beverages served by the plan and in the order of submission are printed once per trial
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int window;
+
+    @Param({"5", "50"})
+    public int ingredients;
+
+    private OrderScheduler orderScheduler;
+    private List<Recipe> recipes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        //average recipe uses 3 ingredients of 25 units each
+        int quantityPerIngredient = Math.max(1, window * 3 * 25 / ingredients / 2);
+        SyntheticMenu menu = SyntheticMenu.generate(window, ingredients, 5, quantityPerIngredient, 0, 42);
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, menu.getItemsQuantity());
+        recipes = new ArrayList<>(window);
+        menu.getBeverages().forEach((name, ingredients) -> recipes.add(Recipe.compile(name, ingredients, ingredientRegistry)));
+        orderScheduler = new OrderScheduler(inventoryManager, RefillProvider.createEmpty(ingredientRegistry));
+    }
+
+    @TearDown(Level.Trial)
+    public void printServed() {
+        System.out.println(orderScheduler.plan(recipes));
+    }
+
+    @Benchmark
+    public SchedulePlan plan() {
+        return orderScheduler.plan(recipes);
+    }
+}
@@ -2,10 +2,41 @@ package com.dunzo.coffee_machine;
 
 public class ApplicationConstants {
     public static final String MACHINE = "machine";
+    public static final String FLEET = "fleet";
     public static final String REFILL_PACK = "refill_pack";
     public static final String DEFAULT_INPUT_FILE_NAME = "input.json";
     public static final String BEVERAGES = "beverages";
     public static final String OUTLETS = "outlets";
     public static final String COUNT_N = "count_n";
+    public static final String QUEUE_CAPACITY = "queue_capacity";
+    public static final String OVERFLOW_POLICY = "overflow_policy";
+    public static final String EXECUTION_MODE = "execution_mode";
+    public static final String RATION_BATCH_SIZE = "ration_batch_size";
+    public static final String RATION_BATCH_WINDOW_US = "ration_batch_window_us";
+    public static final String SCHEDULING_POLICY = "scheduling_policy";
+    public static final String STRIPED_INVENTORY = "striped_inventory";
+    public static final String PRIORITY_AGING_MS = "priority_aging_ms";
     public static final String TOTAL_ITEMS_QUANTITY = "total_items_quantity";
+    public static final String SIMULATION = "simulation";
+    public static final String REPLENISHMENT = "replenishment";
+    public static final String INTERVAL_MS = "interval_ms";
+    public static final String HORIZON_MS = "horizon_ms";
+    public static final String SMOOTHING = "smoothing";
+    public static final String LOW_WATER_MARKS = "low_water_marks";
+    public static final String ORDERS = "orders";
+    public static final String ARRIVAL_PROCESS = "arrival_process";
+    public static final String ARRIVALS_PER_HOUR = "arrivals_per_hour";
+    public static final String SEED = "seed";
+    public static final String DEFAULT_BREW_TIME_S = "default_brew_time_s";
+    public static final String BREW_TIME_S = "brew_time_s";
+    public static final String MIX = "mix";
+    public static final String DISCRETE_EVENT_PROPERTY = "coffee_machine.discrete_event";
+    public static final String STATE_DIRECTORY_PROPERTY = "coffee_machine.state_dir";
+    public static final String SHARED_INVENTORY_PROPERTY = "coffee_machine.shared_inventory";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "coffee_machine.snapshot_interval";
+    public static final String JOURNAL_PROPERTY = "coffee_machine.journal";
+    public static final String TRACE_PROPERTY = "coffee_machine.trace";
+    public static final String METRICS_ENABLED_PROPERTY = "coffee_machine.metrics.enabled";
+    public static final String METRICS_INTERVAL_PROPERTY = "coffee_machine.metrics.interval_ms";
+    public static final String METRICS_TIMING_SAMPLE_PROPERTY = "coffee_machine.metrics.timing_sample_rate";
 }
@@ -0,0 +1,52 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Random;
+
+/**
+ * How orders arrive at the coffee machine in the discrete-event simulation and in the load generator
+ */
+public enum ArrivalProcess {
+
+    /**
+     * independent arrivals, the time between two orders is exponentially distributed
+     */
+    POISSON {
+        @Override
+        long nextInterArrivalNanos(Random random, double meanNanos) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+        }
+    },
+
+    /**
+     * orders arrive at a fixed interval
+     */
+    UNIFORM {
+        @Override
+        long nextInterArrivalNanos(Random random, double meanNanos) {
+            return (long) meanNanos;
+        }
+    },
+
+    /**
+     * orders arrive in bursts at the same mean rate: nine gaps in ten are exponentially distributed around a tenth of
+     * the mean and the others, the pauses between the bursts, around 9.1 times the mean
+     */
+    BURSTY {
+        @Override
+        long nextInterArrivalNanos(Random random, double meanNanos) {
+            double gapMeanNanos = random.nextInt(10) == 0 ? meanNanos * 9.1 : meanNanos * 0.1;
+            return (long) (-Math.log(1 - random.nextDouble()) * gapMeanNanos);
+        }
+    };
+
+    /**
+     * @param random
+     * @param meanNanos mean time between two orders
+     * @return time until the next order arrives
+     */
+    abstract long nextInterArrivalNanos(Random random, double meanNanos);
+
+    public static ArrivalProcess fromConfig(String value) {
+        return ArrivalProcess.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,73 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingredient counters of a single process, kept in an array of atomic counters
+ * The array grows with the registry by copying the references, so the counters themselves are never replaced and a
+ * compare-and-set on an old copy of the array is still applied to the live counter
+ */
+final class AtomicIngredientCounters implements IngredientCounters {
+
+    private final IngredientRegistry ingredientRegistry;
+    private volatile AtomicInteger[] counters;
+
+    /**
+     * @param ingredientRegistry
+     * @param quantities initial quantity of every ingredient indexed by ingredient id
+     */
+    AtomicIngredientCounters(IngredientRegistry ingredientRegistry, int[] quantities) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.counters = new AtomicInteger[0];
+        for (int id = 0; id < quantities.length; id++) {
+            counterOf(id).set(quantities[id]);
+        }
+    }
+
+    @Override
+    public int length() {
+        return counters.length;
+    }
+
+    @Override
+    public int get(int ingredientId) {
+        AtomicInteger[] counters = this.counters;
+        //ingredients registered after the counters were read have no stock yet
+        return ingredientId < counters.length ? counters[ingredientId].get() : 0;
+    }
+
+    @Override
+    public boolean compareAndSet(int ingredientId, int expectedQuantity, int quantity) {
+        return counters[ingredientId].compareAndSet(expectedQuantity, quantity);
+    }
+
+    @Override
+    public int addAndGet(int ingredientId, int quantity) {
+        return counterOf(ingredientId).addAndGet(quantity);
+    }
+
+    /**
+     * Method to get the counter for the given ingredient id, growing the counters up to the registry size if needed
+     * @param ingredientId
+     * @return
+     */
+    private AtomicInteger counterOf(int ingredientId) {
+        AtomicInteger[] counters = this.counters;
+        if (ingredientId < counters.length)
+            return counters[ingredientId];
+        synchronized (this) {
+            counters = this.counters;
+            if (ingredientId >= counters.length) {
+                int length = Math.max(ingredientId + 1, ingredientRegistry.size());
+                AtomicInteger[] grown = Arrays.copyOf(counters, length);
+                for (int i = counters.length; i < length; i++) {
+                    grown[i] = new AtomicInteger();
+                }
+                this.counters = grown;
+                counters = grown;
+            }
+            return counters[ingredientId];
+        }
+    }
+}
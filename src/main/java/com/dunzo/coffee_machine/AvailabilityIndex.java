@@ -0,0 +1,327 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Incrementally maintained index of which beverages of a menu can be made right now
+ * <p>
+ * A beverage is available if every one of its ingredients is present in the required quantity in the stock plus the
+ * remaining refill pack, the same rule the coffee machine admits orders by. The index keeps, for every ingredient, the
+ * beverages using it sorted by the quantity they need, and the number of beverages for which the current quantity is
+ * enough. Every beverage counts how many of its ingredients are short and its bit in the availability bitset is set
+ * while that count is 0.
+ * <p>
+ * The index listens to the InventoryManager, but a ration or a refill only flags the ingredients it changed as dirty,
+ * so the rationing outlets pay a read of one bit per ingredient for the index. Catching up with the inventory only
+ * visits the dirty ingredients and only updates the beverages whose required quantity the changes crossed. Lookups
+ * catch up first and then read a single counter, lookups which find nothing dirty never lock. Updates which cross a
+ * required quantity are serialized per ingredient so that they are applied in the order of the quantities they read.
+ * <p>
+ * Subscribers are notified whenever a beverage becomes available or unavailable, once the index catches up with the
+ * change: on the next lookup, or within an interval of the change once start() runs the refresher in the background.
+ * Several indexes can listen to the same inventory, e.g. one per menu, close() stops one of them listening.
+ */
+public class AvailabilityIndex implements InventoryListener, AutoCloseable {
+
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+    private final Recipe[] beverages;
+    private final Map<String, Integer> indexByName;
+    private final IngredientUsage[] usages;
+    private final AtomicIntegerArray shortIngredients;
+    private final AtomicLongArray availability;
+    //one bit per ingredient changed since the index last caught up with it
+    private final AtomicLongArray dirty;
+    //set after a dirty bit, so that a catch up which finds it clear can skip the bits
+    private volatile boolean stale;
+    private final List<AvailabilityListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ScheduledExecutorService refresher;
+
+    /**
+     * Method to build the index of the given menu and start listening to the inventory
+     * @param inventoryManager
+     * @param refillProvider
+     * @param menu
+     */
+    public AvailabilityIndex(InventoryManager inventoryManager, RefillProvider refillProvider, List<Recipe> menu) {
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+        this.beverages = menu.toArray(new Recipe[0]);
+        this.indexByName = new HashMap<>();
+        this.shortIngredients = new AtomicIntegerArray(beverages.length);
+        this.availability = new AtomicLongArray((beverages.length + 63) >>> 6);
+        this.usages = buildUsages(beverages);
+        this.dirty = new AtomicLongArray((usages.length + 63) >>> 6);
+        for (int index = 0; index < beverages.length; index++) {
+            indexByName.putIfAbsent(beverages[index].getBeverageName(), index);
+            //every ingredient is short until its quantity is first read
+            shortIngredients.set(index, beverages[index].size());
+        }
+        inventoryManager.addInventoryListener(this);
+        for (int id = 0; id < usages.length; id++) {
+            if (usages[id] != null)
+                update(id);
+        }
+        for (int index = 0; index < beverages.length; index++) {
+            publish(index);
+        }
+    }
+
+    /**
+     * reverse index from every ingredient to the beverages using it, sorted by the quantity they need
+     */
+    private static IngredientUsage[] buildUsages(Recipe[] beverages) {
+        int ingredients = 0;
+        int[] uses = new int[0];
+        for (Recipe beverage : beverages) {
+            for (int i = 0; i < beverage.size(); i++) {
+                int id = beverage.ingredientIdAt(i);
+                if (id >= uses.length)
+                    uses = Arrays.copyOf(uses, Math.max(id + 1, uses.length * 2));
+                uses[id]++;
+                ingredients = Math.max(ingredients, id + 1);
+            }
+        }
+        long[][] entries = new long[ingredients][];
+        for (int id = 0; id < ingredients; id++) {
+            entries[id] = new long[uses[id]];
+            uses[id] = 0;
+        }
+        for (int index = 0; index < beverages.length; index++) {
+            Recipe beverage = beverages[index];
+            for (int i = 0; i < beverage.size(); i++) {
+                int id = beverage.ingredientIdAt(i);
+                //quantity and beverage index packed so that sorting orders by quantity
+                entries[id][uses[id]++] = (long) beverage.quantityAt(i) << 32 | index;
+            }
+        }
+        IngredientUsage[] usages = new IngredientUsage[ingredients];
+        for (int id = 0; id < ingredients; id++) {
+            if (entries[id].length > 0)
+                usages[id] = new IngredientUsage(entries[id]);
+        }
+        return usages;
+    }
+
+    /**
+     * @param beverageIndex position of the beverage in the menu
+     * @return true if the beverage can be made now
+     */
+    public boolean isAvailable(int beverageIndex) {
+        refresh();
+        return shortIngredients.get(beverageIndex) == 0;
+    }
+
+    /**
+     * @param beverageName
+     * @return true if the beverage is on the menu and can be made now
+     */
+    public boolean isAvailable(String beverageName) {
+        Integer index = indexByName.get(beverageName);
+        return index != null && isAvailable(index.intValue());
+    }
+
+    /**
+     * @return copy of the availability bitset, bit i is set if the beverage at position i of the menu can be made now
+     */
+    public BitSet getAvailable() {
+        refresh();
+        long[] words = new long[availability.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = availability.get(i);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    public List<Recipe> getMenu() {
+        return Arrays.asList(beverages);
+    }
+
+    public void subscribe(AvailabilityListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(AvailabilityListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Method to catch up with the inventory in the background, so that the subscribers are notified within the given
+     * interval of a change even if nobody looks the beverages up
+     * @param interval
+     * @param unit
+     * @return this index
+     */
+    public synchronized AvailabilityIndex start(long interval, TimeUnit unit) {
+        if (refresher != null)
+            throw new IllegalStateException("Availability index is already refreshed in the background");
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "availability-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, interval, interval, unit);
+        return this;
+    }
+
+    /**
+     * Method to stop listening to the inventory and stop the background refresher, if any
+     * The index keeps answering with the availability it last caught up with
+     */
+    @Override
+    public void close() {
+        inventoryManager.removeInventoryListener(this);
+        ScheduledExecutorService runningRefresher = refresher;
+        if (runningRefresher != null)
+            runningRefresher.shutdownNow();
+    }
+
+    @Override
+    public void rationed(Recipe recipe) {
+        for (int i = 0; i < recipe.size(); i++) {
+            markDirty(recipe.ingredientIdAt(i));
+        }
+    }
+
+    @Override
+    public void refilled(int ingredientId) {
+        markDirty(ingredientId);
+    }
+
+    /**
+     * called on the ration path after the quantity changed, only the first change after a catch up writes the bit
+     */
+    private void markDirty(int ingredientId) {
+        if (ingredientId >= usages.length || usages[ingredientId] == null)
+            return;
+        int word = ingredientId >>> 6;
+        long bit = 1L << ingredientId;
+        while (true) {
+            long current = dirty.get(word);
+            if ((current & bit) != 0)
+                return;
+            if (dirty.compareAndSet(word, current, current | bit))
+                break;
+        }
+        stale = true;
+    }
+
+    /**
+     * Method to bring the index in line with the inventory and notify the subscribers of the changes of availability
+     * Done by every lookup and by the background refresher, returns right away if nothing changed since the last
+     * catch up and otherwise only updates the dirty ingredients
+     */
+    public void refresh() {
+        if (!stale)
+            return;
+        //cleared before the bits are taken, a later change flags the index again
+        stale = false;
+        for (int word = 0; word < dirty.length(); word++) {
+            if (dirty.get(word) == 0)
+                continue;
+            //taken before the quantities are read, a later change sets its bit again
+            long bits = dirty.getAndSet(word, 0);
+            while (bits != 0) {
+                update(word << 6 | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Method to bring the beverages using the ingredient in line with its current quantity
+     * @param ingredientId
+     */
+    private void update(int ingredientId) {
+        IngredientUsage usage = ingredientId < usages.length ? usages[ingredientId] : null;
+        if (usage == null)
+            return;
+        /*
+        fast path without the lock: if no update is running and the quantity read after our change doesn't cross the
+        quantity of the beverages around the boundary, nothing changes. An update which starts after busy was read
+        reads the quantity after our change, one which finished before left the boundary we check against
+         */
+        long quantity = quantityOf(ingredientId);
+        if (!usage.busy) {
+            long[] entries = usage.entries;
+            int sufficient = usage.sufficient;
+            if ((sufficient == 0 || (entries[sufficient - 1] >>> 32) <= quantity)
+                    && (sufficient == entries.length || (entries[sufficient] >>> 32) > quantity))
+                return;
+        }
+        synchronized (usage) {
+            usage.busy = true;
+            //read under the lock, so that the last update of the ingredient always sees the latest quantity
+            quantity = quantityOf(ingredientId);
+            long[] entries = usage.entries;
+            int sufficient = usage.sufficient;
+            while (sufficient < entries.length && (entries[sufficient] >>> 32) <= quantity) {
+                int index = (int) entries[sufficient++];
+                if (shortIngredients.decrementAndGet(index) == 0)
+                    publish(index);
+            }
+            while (sufficient > 0 && (entries[sufficient - 1] >>> 32) > quantity) {
+                int index = (int) entries[--sufficient];
+                if (shortIngredients.incrementAndGet(index) == 1)
+                    publish(index);
+            }
+            usage.sufficient = sufficient;
+            usage.busy = false;
+        }
+    }
+
+    private long quantityOf(int ingredientId) {
+        return (long) inventoryManager.getQuantity(ingredientId) + refillProvider.remainingQuantity(ingredientId);
+    }
+
+    /**
+     * Method to bring the bit of the beverage in line with its count of short ingredients and notify the subscribers
+     * The count is checked again after the bit is written, a concurrent change of another ingredient either sees the
+     * new bit or is caught up with here
+     * @param index
+     */
+    private void publish(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            boolean available = shortIngredients.get(index) == 0;
+            long current = availability.get(word);
+            long updated = available ? current | bit : current & ~bit;
+            if (current == updated) {
+                if (available == (shortIngredients.get(index) == 0))
+                    return;
+                continue;
+            }
+            if (availability.compareAndSet(word, current, updated)) {
+                for (AvailabilityListener listener : listeners) {
+                    listener.availabilityChanged(beverages[index], available);
+                }
+            }
+        }
+    }
+
+    /**
+     * beverages using an ingredient as quantity and index pairs sorted by quantity, the first sufficient of them
+     * need no more than the current quantity
+     */
+    private static final class IngredientUsage {
+        private final long[] entries;
+        private volatile int sufficient;
+        private volatile boolean busy;
+
+        IngredientUsage(long[] entries) {
+            Arrays.sort(entries);
+            this.entries = entries;
+        }
+    }
+}
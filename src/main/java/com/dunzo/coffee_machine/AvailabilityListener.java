@@ -0,0 +1,14 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Subscriber to the changes of availability of the beverages of an AvailabilityIndex
+ * Called on the thread whose ration or refill changed the availability, so it must not block
+ */
+public interface AvailabilityListener {
+
+    /**
+     * @param beverage  beverage of the menu whose availability changed
+     * @param available true if the beverage can be made now, false if it can't anymore
+     */
+    void availabilityChanged(Recipe beverage, boolean available);
+}
@@ -0,0 +1,204 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Batching stage in front of the InventoryManager
+ * <p>
+ * Outlets hand their recipe to the rationer and wait for its result. Whichever outlet finds no batch in progress
+ * becomes the combiner: it collects the waiting rations, up to the batch size or until the window runs out, decides
+ * them one after the other in arrival order against a single view of the inventory and deducts the accepted ones
+ * with one compare-and-set per ingredient for the whole batch. Every ration stays all-or-nothing: it is accepted only
+ * if all of its ingredients fit in what the view has left. If an unbatched ration (e.g. the retry after a refill)
+ * changed the inventory in the meantime and the batch no longer fits, the accepted rations fall back to being
+ * rationed one by one. Outlets only see their result once the whole batch is deducted and logged.
+ */
+public class BatchRationer implements Rationer {
+
+    private static final int MAX_YIELDS = 64;
+
+    private final InventoryManager inventoryManager;
+    private final int batchSize;
+    private final long windowNanos;
+    private final ConcurrentLinkedQueue<Ration> pending;
+    private final AtomicBoolean combining;
+    //state of the combiner, only touched by the thread which holds combining
+    private final Ration[] batch;
+    private final RationResult[] decisions;
+    private int[] view;
+    private boolean[] viewed;
+    private int[] totals;
+    private int[] touched;
+
+    /**
+     * @param inventoryManager
+     * @param batchSize   maximum number of rations decided together
+     * @param windowNanos how long the combiner waits for the batch to fill up
+     */
+    public BatchRationer(InventoryManager inventoryManager, int batchSize, long windowNanos) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive!");
+        this.inventoryManager = inventoryManager;
+        this.batchSize = batchSize;
+        this.windowNanos = windowNanos;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.combining = new AtomicBoolean();
+        this.batch = new Ration[batchSize];
+        this.decisions = new RationResult[batchSize];
+        this.view = new int[0];
+        this.viewed = new boolean[0];
+        this.totals = new int[0];
+        this.touched = new int[0];
+    }
+
+    /**
+     * Method to ration the recipe as part of a batch, blocks until the batch is decided
+     * @param recipe
+     * @return same as {@link InventoryManager#tryRation(Recipe)}
+     */
+    @Override
+    public RationResult ration(Recipe recipe) {
+        Ration ration = new Ration(recipe, Thread.currentThread());
+        pending.offer(ration);
+        int yields = 0;
+        while (ration.result == null) {
+            if (combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } finally {
+                    combining.set(false);
+                }
+            } else if (yields++ < MAX_YIELDS) {
+                //a batch is decided in a few microseconds, cheaper to give way to the combiner than to park
+                Thread.yield();
+            } else {
+                //the combiner unparks us, the timeout covers a ration queued just after the combiner stopped draining
+                LockSupport.parkNanos(this, Math.max(windowNanos, 10_000));
+            }
+        }
+        return ration.result;
+    }
+
+    private void combine() {
+        int size = 0;
+        long deadline = System.nanoTime() + windowNanos;
+        while (size < batchSize) {
+            Ration ration = pending.poll();
+            if (ration != null) {
+                batch[size++] = ration;
+            } else if (size == 0 || System.nanoTime() - deadline >= 0) {
+                break;
+            } else {
+                Thread.yield();
+            }
+        }
+        if (size == 0)
+            return;
+        decide(size);
+        for (int i = 0; i < size; i++) {
+            Ration ration = batch[i];
+            RationResult decision = decisions[i];
+            batch[i] = null;
+            decisions[i] = null;
+            ration.complete(decision);
+        }
+    }
+
+    /**
+     * Method to decide the rations of the batch in arrival order against a single view of the inventory
+     * The results are kept in decisions until the inventory is deducted, waiting outlets poll the rations meanwhile
+     * @param size
+     */
+    private void decide(int size) {
+        ensureCapacity(inventoryManager.getIngredientRegistry().size());
+        int touchedCount = 0;
+        for (int r = 0; r < size; r++) {
+            Recipe recipe = batch[r].recipe;
+            boolean fits = true;
+            for (int i = 0; i < recipe.size(); i++) {
+                int id = recipe.ingredientIdAt(i);
+                if (id >= view.length) {
+                    //registered after the view was sized, there is no stock of it
+                    fits = false;
+                    continue;
+                }
+                if (!viewed[id]) {
+                    viewed[id] = true;
+                    view[id] = inventoryManager.getSharedQuantity(id);
+                    touched[touchedCount++] = id;
+                }
+                if (view[id] < recipe.quantityAt(i))
+                    fits = false;
+            }
+            if (fits) {
+                for (int i = 0; i < recipe.size(); i++) {
+                    view[recipe.ingredientIdAt(i)] -= recipe.quantityAt(i);
+                    totals[recipe.ingredientIdAt(i)] += recipe.quantityAt(i);
+                }
+                decisions[r] = RationResult.SUCCESS;
+            } else {
+                decisions[r] = insufficient(recipe);
+            }
+        }
+        //pack the aggregated deductions in place of the view, it is not needed anymore
+        int deductions = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            if (totals[id] > 0) {
+                view[deductions] = totals[id];
+                touched[deductions++] = id;
+            }
+        }
+        boolean deducted = deductions == 0 || inventoryManager.tryDeductAll(touched, view, deductions);
+        for (int r = 0; r < size; r++) {
+            if (decisions[r].isSuccess()) {
+                if (deducted)
+                    inventoryManager.rationed(batch[r].recipe);
+                else
+                    decisions[r] = inventoryManager.tryRation(batch[r].recipe);
+            }
+        }
+        //the views of the next batch start from scratch
+        Arrays.fill(viewed, false);
+        Arrays.fill(totals, 0);
+    }
+
+    private RationResult insufficient(Recipe recipe) {
+        int[] insufficientIngredients = new int[recipe.size()];
+        int count = 0;
+        for (int i = 0; i < recipe.size(); i++) {
+            int id = recipe.ingredientIdAt(i);
+            if (id >= view.length || view[id] < recipe.quantityAt(i))
+                insufficientIngredients[count++] = id;
+        }
+        return RationResult.insufficient(Arrays.copyOf(insufficientIngredients, count));
+    }
+
+    private void ensureCapacity(int ingredients) {
+        if (view.length < ingredients) {
+            view = new int[ingredients];
+            viewed = new boolean[ingredients];
+            totals = new int[ingredients];
+            touched = new int[ingredients];
+        }
+    }
+
+    private static final class Ration {
+        private final Recipe recipe;
+        private final Thread outlet;
+        private volatile RationResult result;
+
+        Ration(Recipe recipe, Thread outlet) {
+            this.recipe = recipe;
+            this.outlet = outlet;
+        }
+
+        void complete(RationResult decision) {
+            result = decision;
+            LockSupport.unpark(outlet);
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.dunzo.coffee_machine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -15,71 +13,148 @@ import java.util.concurrent.Callable;
 public class BeveragePreparationTask implements Callable<OutletResponse> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BeveragePreparationTask.class);
-    private final ThreadLocal<String> beverageName;
-    private final ThreadLocal<Map<String, Integer>> ingredientsRequired;
+    private final Recipe recipe;
     private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+    private final FeasibilityIndex feasibilityIndex;
+    private final MachineMetrics metrics;
+    private final OrderJournal orderJournal;
+    private final long orderId;
+    private final Rationer rationer;
 
     public BeveragePreparationTask(String beverageName, Map<String, Integer> ingredientsRequired, InventoryManager inventoryManager) {
-        this.beverageName = ThreadLocal.withInitial(() -> beverageName);
-        this.ingredientsRequired = ThreadLocal.withInitial(() -> ingredientsRequired);
+        this(Recipe.compile(beverageName, ingredientsRequired, inventoryManager.getIngredientRegistry()), inventoryManager);
+    }
+
+    public BeveragePreparationTask(Recipe recipe, InventoryManager inventoryManager) {
+        this(recipe, inventoryManager, RefillProvider.createEmpty(inventoryManager.getIngredientRegistry()));
+    }
+
+    public BeveragePreparationTask(Recipe recipe, InventoryManager inventoryManager, RefillProvider refillProvider) {
+        this(recipe, inventoryManager, refillProvider, new FeasibilityIndex(inventoryManager, refillProvider));
+    }
+
+    public BeveragePreparationTask(Recipe recipe, InventoryManager inventoryManager, RefillProvider refillProvider,
+                                   FeasibilityIndex feasibilityIndex) {
+        this(recipe, inventoryManager, refillProvider, feasibilityIndex, MachineMetrics.disabled());
+    }
+
+    public BeveragePreparationTask(Recipe recipe, InventoryManager inventoryManager, RefillProvider refillProvider,
+                                   FeasibilityIndex feasibilityIndex, MachineMetrics metrics) {
+        this(recipe, inventoryManager, refillProvider, feasibilityIndex, metrics, OrderJournal.NONE, 0, null);
+    }
+
+    /**
+     * @param rationer stage to go through for the first ration attempt, batching it with other outlets or serving
+     *                 it from the outlet's lease, null to ration directly
+     */
+    BeveragePreparationTask(Recipe recipe, InventoryManager inventoryManager, RefillProvider refillProvider,
+                            FeasibilityIndex feasibilityIndex, MachineMetrics metrics, OrderJournal orderJournal,
+                            long orderId, Rationer rationer) {
+        this.recipe = recipe;
         this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+        this.feasibilityIndex = feasibilityIndex;
+        this.metrics = metrics;
+        this.orderJournal = orderJournal;
+        this.orderId = orderId;
+        this.rationer = rationer;
+    }
+
+    public Recipe getRecipe() {
+        return recipe;
+    }
+
+    MachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Method to answer the order without preparing it
+     * @param status
+     * @return
+     */
+    OutletResponse refuse(OrderStatus status) {
+        OutletResponse outletResponse = new OutletResponse(recipe.getBeverageName(), status);
+        metrics.recordRefused(outletResponse);
+        orderJournal.failed(orderId, recipe, status);
+        return outletResponse;
     }
 
     @Override
-    public OutletResponse call() throws Exception {
+    public OutletResponse call() {
+        //not queued, no wait
+        long startedAt = metrics.startTiming();
+        return prepare(startedAt, startedAt);
+    }
+
+    /**
+     * Method to prepare the beverage of an order which was submitted at the given time
+     * @param submittedAt System.nanoTime() at the submission of the order, as given by MachineMetrics.startTiming(), 0
+     *                    if the order isn't timed
+     * @return
+     */
+    OutletResponse prepare(long submittedAt) {
+        return prepare(submittedAt, submittedAt == 0 ? 0 : System.nanoTime());
+    }
+
+    private OutletResponse prepare(long submittedAt, long startedAt) {
         //get ration from inventoryManager to make the beverage
-        String beverageName = this.beverageName.get();
+        String beverageName = recipe.getBeverageName();
         LOGGER.debug("Getting ration to make {}", beverageName);
-        synchronized (inventoryManager) {
-            try {
-                inventoryManager.ration(ingredientsRequired.get());
-                LOGGER.info("{} is prepared", beverageName);
-            } catch (InsufficientIngredientsException e) {
-                LOGGER.error("Insufficient ingredients for making {}!", beverageName);
-                try {
-                    attemptAfterRefill(e.getInsufficientIngredients(), ingredientsRequired.get());
-                    LOGGER.info("{} is prepared", beverageName);
-                } catch (InsufficientIngredientsException insufficientIngredientsException) {
-                    LOGGER.error("{} cannot be prepared because following are not available: {}", beverageName,
-                            insufficientIngredientsException.getInsufficientIngredients());
-                    return new OutletResponse(beverageName, false);
-                }
-            }
+        //no global lock here, the inventory manager reserves all the ingredients of the recipe atomically
+        RationResult rationResult = rationer == null ? inventoryManager.tryRation(recipe) : rationer.ration(recipe);
+        if (!rationResult.isSuccess()) {
+            LOGGER.debug("Insufficient ingredients for making {}!", beverageName);
+            rationResult = attemptAfterRefill(rationResult);
         }
-        return new OutletResponse(beverageName, true);
+        //untimed orders don't read the clock at all
+        long rationedAt = startedAt == 0 ? 0 : System.nanoTime();
+        if (!rationResult.isSuccess()) {
+            orderJournal.failed(orderId, recipe, OrderStatus.INSUFFICIENT_INGREDIENTS);
+            //outcomes are only logged at debug level, the ingredient names are not even looked up otherwise
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("{} cannot be prepared because following are not available: {}", beverageName,
+                        rationResult.getInsufficientIngredients(inventoryManager.getIngredientRegistry()));
+        } else {
+            //the beverage is handed out only once its ration survives a crash
+            inventoryManager.awaitDurable();
+            orderJournal.rationed(orderId, recipe);
+            LOGGER.debug("{} is prepared", beverageName);
+        }
+        OutletResponse outletResponse = new OutletResponse(beverageName,
+                rationResult.isSuccess() ? OrderStatus.PREPARED : OrderStatus.INSUFFICIENT_INGREDIENTS,
+                startedAt - submittedAt, rationedAt - startedAt);
+        metrics.recordServed(outletResponse, startedAt != 0);
+        return outletResponse;
     }
 
     /**
      * Method to request the Refill Provider to provide a refill and then attempt the rationing again
+     * Only the shortfall of the recipe is refilled, and the refill is skipped altogether if the refill pack can't
+     * make up for the insufficient ingredients
      *
-     * @param insufficientIngredients
-     * @param ingredientsRequired
+     * @param failedRation
+     * @return
      */
-    private void attemptAfterRefill(List<String> insufficientIngredients, Map<String, Integer> ingredientsRequired) throws InsufficientIngredientsException {
-        LOGGER.debug("Checking if refill provider has all the missing ingredients...");
-        if (insufficientIngredients == null || insufficientIngredients.size() == 0)
-            throw new IllegalStateException("Insufficient Ingredients can't be null or 0 at this point!");
-        List<String> missingIngredients = new ArrayList<>();
-        for (String ingredient : insufficientIngredients) {
-            if (RefillProvider.ingredientAvailable(ingredient)) {
-                refill(ingredient, RefillProvider.getIngredient(ingredient));
-                LOGGER.debug("{} is available, added it to the inventory!", ingredient);
-            } else {
-                missingIngredients.add(ingredient);
-                LOGGER.debug("{} is unavailable, added to missing ingredients!", ingredient);
-            }
+    private RationResult attemptAfterRefill(RationResult failedRation) {
+        metrics.recordRefillAttempt();
+        RationResult feasibility = feasibilityIndex.check(recipe);
+        if (!feasibility.isSuccess()) {
+            LOGGER.debug("Refill pack can't make up for the insufficient ingredients");
+            metrics.recordRefillInfeasible();
+            return feasibility;
         }
-        if (missingIngredients.size() > 0)
-            throw new InsufficientIngredientsException(missingIngredients);
-        else inventoryManager.ration(ingredientsRequired);
-    }
-
-    /**
-     * Method to replenish the given ingredient in the inventory manager
-     * @param ingredient
-     * @param quantity
-     */
-    private void refill(String ingredient, Integer quantity) {
-        inventoryManager.refill(ingredient, quantity);
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Refilling the shortfall of {}", failedRation.getInsufficientIngredients(inventoryManager.getIngredientRegistry()));
+        RationResult refill = refillProvider.refillShortfall(recipe, inventoryManager, orderJournal, orderId);
+        if (refill.isInfeasible()) {
+            metrics.recordRefillInfeasible();
+            return refill;
+        }
+        //another outlet may have consumed the refill or refilled the rest in the meantime, the retry decides
+        RationResult retry = inventoryManager.tryRation(recipe);
+        metrics.recordRefillOutcome(retry.isSuccess());
+        return retry;
     }
 }
@@ -3,23 +3,68 @@ package com.dunzo.coffee_machine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class to imitate an automated coffee machine
+ * <p>
+ * The machine keeps serving orders until it is closed: orders can be submitted at any time and each one gets its own
+ * CompletableFuture, nothing is retained by the machine once an order is prepared. The outlets are created once with
+ * the machine and are reused for every order.
+ * <p>
+ * The outlets are either threads of the machine's own pool, virtual threads bounded to the number of outlets or, when
+ * the machine is part of a fleet, logical slots on an executor shared by all the machines of the fleet.
+ * <p>
+ * Orders are served in the order they were queued, or by priority class and deadline if the outlets are configured
+ * to dispatch by priority, see PriorityOrderQueue. An order whose deadline passes before an outlet picks it up is
+ * answered EXPIRED without touching the inventory.
+ * <p>
+ * Beverages can be ordered by name from the menu of the machine, an immutable Menu published through an atomic
+ * reference. The menu can be replaced, or reloaded from a file over JMX, while the machine is serving: orders look
+ * their recipe up without locking and keep it until they are served, so the outlets never pause for a new menu.
+ * <p>
+ * Every order is counted in the machine's metrics, and a sample of them records its timings, which can be read as a
+ * snapshot or over JMX once the machine is registered as an MBean. Setting the system property
+ * coffee_machine.metrics.enabled to false turns the recording off for the machines created afterwards, and
+ * coffee_machine.metrics.timing_sample_rate sets how many orders there are per timed one, 1 to time them all.
  */
-public class CoffeeMachine {
+public class CoffeeMachine implements AutoCloseable, CoffeeMachineMXBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CoffeeMachine.class);
+    private final BlockingQueue<Runnable> orderQueue;
     private final ExecutorService outletExecutors;
     private final InventoryManager inventoryManager;
-    private final List<Future<OutletResponse>> results;
+    private final RefillProvider refillProvider;
+    private final FeasibilityIndex feasibilityIndex;
+    private final MachineMetrics metrics;
+    private final AtomicLong lastOrderId;
+    private final Rationer rationer;
+    private final IngredientLeases ingredientLeases;
+    private final OrderScheduler orderScheduler;
+    private final AtomicReference<Menu> menu;
+    private volatile ReplenishmentService replenishmentService;
+    private volatile OrderJournal orderJournal;
+    private volatile ObjectName objectName;
+    private volatile boolean closed;
 
     /**
      * constructor to initialize the initial state of the coffee machine
@@ -28,33 +73,414 @@ public class CoffeeMachine {
      * @param inventoryManager
      */
     public CoffeeMachine(Integer outlets, InventoryManager inventoryManager) {
-        this.outletExecutors = Executors.newFixedThreadPool(outlets);
+        this(OutletConfig.of(outlets), inventoryManager);
+    }
+
+    /**
+     * constructor to initialize the coffee machine with a possibly bounded order queue in front of the outlets
+     *
+     * @param outletConfig
+     * @param inventoryManager
+     */
+    public CoffeeMachine(OutletConfig outletConfig, InventoryManager inventoryManager) {
+        this(outletConfig, inventoryManager, RefillProvider.createEmpty(inventoryManager.getIngredientRegistry()));
+    }
+
+    /**
+     * constructor to initialize the coffee machine with its own refill provider
+     *
+     * @param outletConfig
+     * @param inventoryManager
+     * @param refillProvider
+     */
+    public CoffeeMachine(OutletConfig outletConfig, InventoryManager inventoryManager, RefillProvider refillProvider) {
+        this(outletConfig, inventoryManager, refillProvider, null);
+    }
+
+    /**
+     * constructor to initialize the coffee machine with its outlets running on the given shared executor
+     *
+     * @param outletConfig
+     * @param inventoryManager
+     * @param refillProvider
+     * @param sharedExecutor executor shared with other machines, null for a dedicated pool of outlet threads
+     */
+    public CoffeeMachine(OutletConfig outletConfig, InventoryManager inventoryManager, RefillProvider refillProvider,
+                         Executor sharedExecutor) {
+        this.orderQueue = createOrderQueue(outletConfig);
+        this.outletExecutors = createOutletExecutors(outletConfig, orderQueue, sharedExecutor);
         this.inventoryManager = inventoryManager;
-        this.results = new ArrayList<>();
+        this.refillProvider = refillProvider;
+        this.feasibilityIndex = new FeasibilityIndex(inventoryManager, refillProvider);
+        this.metrics = Boolean.parseBoolean(System.getProperty(ApplicationConstants.METRICS_ENABLED_PROPERTY, "true")) ?
+                new MachineMetrics(Integer.getInteger(ApplicationConstants.METRICS_TIMING_SAMPLE_PROPERTY,
+                        MachineMetrics.DEFAULT_TIMING_SAMPLE_RATE)) : MachineMetrics.disabled();
+        this.lastOrderId = new AtomicLong();
+        this.orderJournal = OrderJournal.NONE;
+        this.ingredientLeases = outletConfig.isInventoryStriped() ?
+                new IngredientLeases(inventoryManager, outletConfig.getCount()) : null;
+        this.rationer = ingredientLeases != null ? ingredientLeases : outletConfig.isRationBatched() ?
+                new BatchRationer(inventoryManager, outletConfig.getRationBatchSize(),
+                        outletConfig.getRationBatchWindowNanos()) : null;
+        this.orderScheduler = outletConfig.getSchedulingPolicy() == SchedulingPolicy.YIELD ?
+                new OrderScheduler(inventoryManager, refillProvider) : null;
+        this.menu = new AtomicReference<>(Menu.EMPTY);
+    }
+
+    /**
+     * Method to create the queue of the orders waiting for an outlet: by priority if configured, otherwise first in
+     * first out, bounded or not
+     * @param outletConfig
+     * @return
+     */
+    private static BlockingQueue<Runnable> createOrderQueue(OutletConfig outletConfig) {
+        if (outletConfig.isPriorityDispatched())
+            return new PriorityOrderQueue(outletConfig.getQueueCapacity(), outletConfig.getPriorityAgingNanos());
+        return outletConfig.isQueueBounded() ?
+                new ArrayBlockingQueue<>(outletConfig.getQueueCapacity()) : new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Method to create the outlets: slots on the shared executor if there is one, otherwise a pool of platform threads
+     * or virtual threads as configured
+     * @param outletConfig
+     * @param orderQueue
+     * @param sharedExecutor
+     * @return
+     */
+    private static ExecutorService createOutletExecutors(OutletConfig outletConfig, BlockingQueue<Runnable> orderQueue,
+                                                         Executor sharedExecutor) {
+        if (sharedExecutor != null)
+            return new OutletSlotExecutor(sharedExecutor, outletConfig.getCount(), orderQueue, outletConfig.getOverflowPolicy());
+        if (outletConfig.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            if (VirtualThreadOutletExecutor.isSupported())
+                return new VirtualThreadOutletExecutor(outletConfig.getCount(), orderQueue, outletConfig.getOverflowPolicy());
+            LOGGER.warn("Virtual threads need Java 21 or later, falling back to platform threads for the outlets");
+        }
+        return new ThreadPoolExecutor(outletConfig.getCount(), outletConfig.getCount(),
+                0L, TimeUnit.MILLISECONDS, orderQueue, outletConfig.getOverflowPolicy().asRejectedExecutionHandler());
+    }
+
+    public InventoryManager getInventoryManager() {
+        return inventoryManager;
+    }
+
+    public RefillProvider getRefillProvider() {
+        return refillProvider;
+    }
+
+    public IngredientRegistry getIngredientRegistry() {
+        return inventoryManager.getIngredientRegistry();
+    }
+
+    public MachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return leases of the outlets, null unless the inventory is striped
+     */
+    public IngredientLeases getIngredientLeases() {
+        return ingredientLeases;
+    }
+
+    /**
+     * @return the menu currently served
+     */
+    public Menu getMenu() {
+        return menu.get();
+    }
+
+    @Override
+    public long getMenuVersion() {
+        return menu.get().getVersion();
+    }
+
+    /**
+     * Method to replace the menu with the given beverages, compiled against the registry of the machine
+     * The ingredients new to the inventory are registered before the menu is published, and the orders submitted
+     * before are served with the recipes they were submitted with
+     * @param beverages
+     * @return the published menu
+     */
+    public Menu publishMenu(List<Recipe> beverages) {
+        for (Recipe beverage : beverages) {
+            inventoryManager.registerIngredients(beverage);
+        }
+        while (true) {
+            Menu current = menu.get();
+            Menu next = current.next(beverages);
+            if (menu.compareAndSet(current, next)) {
+                LOGGER.info("Menu version {} published with {} beverages", next.getVersion(), beverages.size());
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Method to replace the menu with the beverages of the given machine input
+     * @param path
+     * @return the published menu
+     * @throws IOException
+     */
+    public Menu reloadMenu(Path path) throws IOException {
+        return publishMenu(MachineDefinitionLoader.loadBeverages(path, getIngredientRegistry()));
+    }
+
+    @Override
+    public long reloadMenu(String file) throws IOException {
+        return reloadMenu(Paths.get(file)).getVersion();
+    }
+
+    /**
+     * Method to record the orders submitted from now on in the given journal
+     * The journal is not closed with the machine
+     * @param orderJournal
+     */
+    public void setOrderJournal(OrderJournal orderJournal) {
+        this.orderJournal = orderJournal == null ? OrderJournal.NONE : orderJournal;
+    }
+
+    /**
+     * @return number of orders waiting for an outlet
+     */
+    @Override
+    public int getQueueDepth() {
+        return orderQueue.size();
+    }
+
+    @Override
+    public MetricsSnapshot getMetricsSnapshot() {
+        return new MetricsSnapshot(getQueueDepth(), metrics, inventoryManager);
+    }
+
+    /**
+     * Method to register the coffee machine with the platform MBean server, it is unregistered when the machine is
+     * closed
+     * @param name name of the machine, unique among the registered machines
+     * @return
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.dunzo.coffee_machine:type=CoffeeMachine,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            LOGGER.error("Unable to register the coffee machine {} as an MBean!", name);
+            throw new IllegalStateException("Unable to register the coffee machine " + name + " as an MBean", e);
+        }
+    }
+
+    /**
+     * Method to start topping up the inventory from the refill pack ahead of demand, see ReplenishmentService
+     * The service is stopped when the machine is closed
+     * @param replenishmentConfig
+     * @return the started service
+     */
+    public ReplenishmentService startReplenishment(ReplenishmentConfig replenishmentConfig) {
+        ReplenishmentService service = new ReplenishmentService(inventoryManager, refillProvider, replenishmentConfig);
+        replenishmentService = service.start();
+        return service;
+    }
+
+    /**
+     * Method to keep track of which beverages of the menu can be made as the inventory changes
+     * @param menu
+     * @return index of the availability of the beverages, kept up to date until it is closed
+     */
+    public AvailabilityIndex trackAvailability(List<Recipe> menu) {
+        return new AvailabilityIndex(inventoryManager, refillProvider, menu);
+    }
+
+    /**
+     * @return the replenishment service of the machine, null if the refill pack is used only on demand
+     */
+    public ReplenishmentService getReplenishmentService() {
+        return replenishmentService;
+    }
+
+    /**
+     * Method to queue an order for the given beverage at the outlets
+     * If the order queue is bounded and full, the overflow policy decides whether the order is refused, the caller
+     * waits or the oldest queued order is shed
+     * Orders which can never be satisfied are answered right away without being queued
+     * @param beverage
+     * @return future completed with the response of the outlet once the beverage is prepared or refused
+     * @throws IllegalStateException if the coffee machine is closed
+     */
+    public CompletableFuture<OutletResponse> submitOrder(Recipe beverage) {
+        return submitOrder(beverage, PriorityClass.STANDARD, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method to queue an order for the beverage of the given name on the current menu
+     * @param beverageName
+     * @return future completed with the response of the outlet once the beverage is prepared or refused
+     * @throws IllegalArgumentException if the beverage is not on the menu
+     * @throws IllegalStateException    if the coffee machine is closed
+     */
+    public CompletableFuture<OutletResponse> submitOrder(String beverageName) {
+        Recipe beverage = menu.get().getRecipe(beverageName);
+        if (beverage == null)
+            throw new IllegalArgumentException(beverageName + " is not on the menu!");
+        return submitOrder(beverage);
+    }
+
+    /**
+     * Method to queue an order of the given priority class for the given beverage at the outlets
+     * @param beverage
+     * @param priorityClass
+     * @param deadline      time an outlet has to pick the order up from now on, 0 for no deadline
+     * @param unit
+     * @return future completed with the response of the outlet once the beverage is prepared or refused
+     * @throws IllegalStateException if the coffee machine is closed
+     */
+    public CompletableFuture<OutletResponse> submitOrder(Recipe beverage, PriorityClass priorityClass, long deadline,
+                                                         TimeUnit unit) {
+        long deadlineAt = Order.NO_DEADLINE;
+        if (deadline > 0) {
+            deadlineAt = System.nanoTime() + unit.toNanos(deadline);
+            if (deadlineAt == Order.NO_DEADLINE)
+                deadlineAt++;
+        }
+        BeveragePreparationTask task = createTask(beverage);
+        //orders that can't be satisfied even with the refill pack are refused before they take an outlet
+        RationResult feasibility = feasibilityIndex.check(beverage);
+        if (!feasibility.isSuccess()) {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("{} cannot be prepared because following are not available: {}",
+                        beverage.getBeverageName(), feasibility.getInsufficientIngredients(getIngredientRegistry()));
+            return CompletableFuture.completedFuture(task.refuse(OrderStatus.INSUFFICIENT_INGREDIENTS));
+        }
+        Order order = new Order(task, priorityClass, deadlineAt);
+        try {
+            outletExecutors.execute(order);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Coffee machine is closed, can't accept order for " + beverage.getBeverageName(), e);
+        }
+        return order.getResponse();
     }
 
     /**
      * Method to submit and queue the orders at the given outlets
      * @param beverageOrders
+     * @return
+     */
+    public List<CompletableFuture<OutletResponse>> submitAllOrders(Map<String, Map<String, Integer>> beverageOrders) {
+        List<Recipe> recipes = new ArrayList<>(beverageOrders.size());
+        beverageOrders.forEach((name, ingredients) -> recipes.add(Recipe.compile(name, ingredients, getIngredientRegistry())));
+        return submitAllOrders(recipes);
+    }
+
+    /**
+     * Method to submit and queue the compiled orders at the given outlets
+     * With the YIELD scheduling policy the orders are planned together first: the planned ones are queued cheapest
+     * first and the others are refused right away, so which beverages are served no longer depends on the timing of
+     * the outlets
+     * @param beverageOrders
+     * @return futures of the orders in the order of submission
      */
-    public void submitAllOrders(Map<String, Map<String, Integer>> beverageOrders) {
-        beverageOrders.forEach((name, recipe) -> {
-            LOGGER.info("Submitting order for {}", name);
-            results.add(outletExecutors.submit(new BeveragePreparationTask(name, recipe, inventoryManager)));
+    public List<CompletableFuture<OutletResponse>> submitAllOrders(List<Recipe> beverageOrders) {
+        return submitAllOrders(beverageOrders, PriorityClass.STANDARD);
+    }
+
+    /**
+     * Method to submit and queue the compiled orders at the given outlets, all of them in the given priority class
+     * e.g. BULK for a large batch which shouldn't hold up the walk-in customers
+     * @param beverageOrders
+     * @param priorityClass
+     * @return futures of the orders in the order of submission
+     */
+    public List<CompletableFuture<OutletResponse>> submitAllOrders(List<Recipe> beverageOrders,
+                                                                   PriorityClass priorityClass) {
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>(beverageOrders.size());
+        if (orderScheduler == null) {
+            beverageOrders.forEach(recipe -> {
+                LOGGER.info("Submitting order for {}", recipe.getBeverageName());
+                responses.add(submitOrder(recipe, priorityClass, 0, TimeUnit.NANOSECONDS));
+                LOGGER.info("Order submitted!");
+            });
+            return responses;
+        }
+        SchedulePlan schedulePlan = orderScheduler.plan(beverageOrders);
+        LOGGER.info("Planned {} of {} orders, {} would be served in the order of submission", schedulePlan.getServed(),
+                schedulePlan.getWindowSize(), schedulePlan.getFifoServed());
+        for (int index = 0; index < beverageOrders.size(); index++) {
+            responses.add(null);
+        }
+        for (int index : schedulePlan.getAdmissionOrder()) {
+            LOGGER.info("Submitting order for {}", beverageOrders.get(index).getBeverageName());
+            responses.set(index, submitOrder(beverageOrders.get(index), priorityClass, 0, TimeUnit.NANOSECONDS));
             LOGGER.info("Order submitted!");
-        });
+        }
+        for (int index = 0; index < beverageOrders.size(); index++) {
+            if (!schedulePlan.isAdmitted(index)) {
+                Recipe beverage = beverageOrders.get(index);
+                LOGGER.debug("{} cannot be prepared because it does not fit in the plan", beverage.getBeverageName());
+                metrics.recordPlannedOut();
+                responses.set(index, CompletableFuture.completedFuture(
+                        createTask(beverage).refuse(OrderStatus.INSUFFICIENT_INGREDIENTS)));
+            }
+        }
+        return responses;
+    }
+
+    private BeveragePreparationTask createTask(Recipe beverage) {
+        OrderJournal orderJournal = this.orderJournal;
+        long orderId = lastOrderId.incrementAndGet();
+        orderJournal.submitted(orderId, beverage);
+        return new BeveragePreparationTask(beverage, inventoryManager, refillProvider, feasibilityIndex, metrics,
+                orderJournal, orderId, rationer);
     }
 
     /**
-     * method to shutdown the coffee machine and return the responses of the execution at the outlet
-     * @return
+     * Method to stop accepting orders and wait for the queued ones to be served
+     * Once they are, the leases of a striped inventory are returned
+     * @param timeout
+     * @param unit
+     * @return true if all the queued orders were served within the timeout
+     * @throws InterruptedException
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        outletExecutors.shutdown();
+        boolean drained = outletExecutors.awaitTermination(timeout, unit);
+        if (drained && ingredientLeases != null)
+            ingredientLeases.returnAll();
+        return drained;
+    }
+
+    /**
+     * method to gracefully shutdown the coffee machine, waits for all the queued orders to be served
+     * The replenishment service and the MBean are let go even if the wait is interrupted, closing the machine again
+     * once it is closed does nothing
+     * @throws IllegalStateException if interrupted while waiting, with the interrupt status of the thread restored
      */
-    public List<OutletResponse> shutDown() throws ExecutionException, InterruptedException {
-        this.outletExecutors.shutdown();
-        List<OutletResponse> responses = new ArrayList<>();
-        for (Future<OutletResponse> result : results) {
-            responses.add(result.get());
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        try {
+            while (!drain(1, TimeUnit.MINUTES)) {
+                LOGGER.info("Waiting for the outlets to serve the queued orders...");
+            }
+            closed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the outlets to serve the queued orders", e);
+        } finally {
+            ReplenishmentService service = replenishmentService;
+            if (service != null)
+                service.close();
+            ObjectName registeredName = objectName;
+            if (registeredName != null) {
+                objectName = null;
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+                } catch (JMException e) {
+                    LOGGER.warn("Unable to unregister the coffee machine MBean {}", registeredName);
+                }
+            }
         }
-        return responses ;
     }
 }
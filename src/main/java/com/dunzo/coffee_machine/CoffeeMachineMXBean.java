@@ -0,0 +1,23 @@
+package com.dunzo.coffee_machine;
+
+import java.io.IOException;
+
+/**
+ * Management interface of a coffee machine, registered with the platform MBean server on request
+ */
+public interface CoffeeMachineMXBean {
+
+    int getQueueDepth();
+
+    MetricsSnapshot getMetricsSnapshot();
+
+    long getMenuVersion();
+
+    /**
+     * Method to replace the menu with the beverages of the given machine input
+     * @param file
+     * @return version of the new menu
+     * @throws IOException
+     */
+    long reloadMenu(String file) throws IOException;
+}
@@ -1,20 +1,17 @@
 package com.dunzo.coffee_machine;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class CoffeeMachineSimulation {
@@ -25,85 +22,186 @@ public class CoffeeMachineSimulation {
 
         //read the input json file to initialize parameters like number of outlets, initial ingredients, etc.
         LOGGER.debug("Loading {} file...", inputFileName);
-        String inputJson;
-        try {
-            URL resource = Main.class.getClassLoader().getResource(inputFileName);
-            if (resource == null) {
-                LOGGER.error("Resource {} not found!", inputFileName);
-                throw new RuntimeException("Resource " + inputFileName + " not found!");
+        MachineDefinition machineDefinition = load(inputFileName);
+        LOGGER.debug("loaded successfully!");
+
+        //initialize coffee machine with the given number of outlets, ingredients parameters and refill-pack if present
+        //every resource is closed in the reverse order of opening, also when the run fails half way
+        LOGGER.info("Starting Coffee Machine...");
+        OrderTrace.Recorder traceRecorder;
+        List<CompletableFuture<OutletResponse>> responses;
+        List<OutletResponse> results;
+        try (SharedInventory sharedInventory = openSharedInventory(machineDefinition);
+             DurableInventory durableInventory = sharedInventory == null ? openDurableInventory(machineDefinition) : null;
+             EventJournal eventJournal = openJournal(machineDefinition);
+             CoffeeMachine coffeeMachine = createMachine(machineDefinition, sharedInventory, durableInventory)) {
+            coffeeMachine.registerMBean(inputFileName);
+            traceRecorder = openTraceRecorder(eventJournal);
+            coffeeMachine.setOrderJournal(traceRecorder != null ? traceRecorder : eventJournal);
+            LOGGER.info("Coffee Machine started!");
+
+            //dump the metrics periodically if an interval is given
+            long metricsInterval = Long.getLong(ApplicationConstants.METRICS_INTERVAL_PROPERTY, 0);
+            try (MetricsReporter metricsReporter = metricsInterval > 0 ?
+                    new MetricsReporter(coffeeMachine, metricsInterval, TimeUnit.MILLISECONDS) : null) {
+
+                //fetch all the beverage orders to be served from the input
+                LOGGER.info("Getting all the beverage orders");
+                List<Recipe> beverageOrders = machineDefinition.getBeverages();
+                LOGGER.info("Total beverage orders found = {}", beverageOrders.size());
+
+                //execute all beverage orders
+                LOGGER.info("submitting beverage orders...");
+                responses = coffeeMachine.submitAllOrders(beverageOrders);
+                LOGGER.info("{} beverage orders submitted!", beverageOrders.size());
+
+                //shutdown coffee machine once all the orders are served
+                LOGGER.info("Shutting down coffee machine...");
+                coffeeMachine.close();
             }
-            inputJson = Files.readAllLines(Paths.get(resource.toURI()))
-                    .stream().collect(Collectors.joining("\n"));
-        } catch (IOException e) {
-            LOGGER.error("Unable to read the file!");
-            throw new RuntimeException("Unable to read the file!", e);
-        } catch (URISyntaxException e) {
-            LOGGER.error("Error while getting the {} file path!", inputFileName);
-            throw new RuntimeException("Error while getting the " + inputFileName + " file path!", e);
+            if (traceRecorder != null)
+                traceRecorder.toTrace().write(Paths.get(System.getProperty(ApplicationConstants.TRACE_PROPERTY)));
+            results = responses.stream().map(CompletableFuture::join).collect(Collectors.toList());
+            LOGGER.debug("Coffee machine metrics: {}", coffeeMachine.getMetricsSnapshot());
+        } catch (CompletionException | InterruptedException | IOException e) {
+            LOGGER.error("Error shutting down the coffee machine and getting the outlet responses!");
+            throw new RuntimeException("Error shutting down the Coffee Machine and getting the outlet responses", e);
         }
-        LOGGER.debug("{} = " + "\n" + inputJson, inputFileName);
+        LOGGER.info("Coffee Machine shut down!");
+        //the outlets only log the outcomes at debug level, they are reported here once the orders are served
+        for (OutletResponse result : results) {
+            LOGGER.info("{}: {}", result.getBeverageName(), result.getStatus());
+        }
+
+        return results;
+    }
+
+    /**
+     * Method to simulate the machine of the input in virtual time with the brew times and the order arrivals of its
+     * simulation section, no real outlet is started
+     *
+     * @param inputFileName
+     * @return
+     */
+    public static SimulationReport simulate(String inputFileName) {
+        LOGGER.debug("Loading {} file...", inputFileName);
+        MachineDefinition machineDefinition = load(inputFileName);
         LOGGER.debug("loaded successfully!");
 
-        ObjectMapper objectMapper = new ObjectMapper();
+        LOGGER.info("Simulating {} orders on {} outlets...", machineDefinition.getSimulationConfig().getOrders(),
+                machineDefinition.getOutletConfig().getCount());
+        SimulationReport simulationReport = new DiscreteEventSimulation(machineDefinition).run();
+        LOGGER.info("Simulation finished: {}", simulationReport);
+        return simulationReport;
+    }
 
-        //initialize coffee machine with the given number of outlets and ingredients parameters
-        LOGGER.info("Starting Coffee Machine...");
-        CoffeeMachine coffeeMachine = MachineFactory.create(inputJson, objectMapper);
-        LOGGER.info("Coffee Machine started!");
+    /**
+     * Method to create the machine on top of the shared or the durable inventory if either is given
+     *
+     * @param machineDefinition
+     * @param sharedInventory   null if the inventory is not shared with other processes
+     * @param durableInventory  null if the inventory is kept in memory only
+     * @return
+     */
+    private static CoffeeMachine createMachine(MachineDefinition machineDefinition, SharedInventory sharedInventory,
+                                               DurableInventory durableInventory) {
+        if (sharedInventory != null)
+            return MachineFactory.create(machineDefinition, sharedInventory, null);
+        if (durableInventory != null)
+            return MachineFactory.create(machineDefinition, durableInventory, null);
+        return MachineFactory.create(machineDefinition, null);
+    }
 
-        //fetch all the beverage orders to be served from the input
-        LOGGER.info("Getting all the beverage orders");
-        Map<String, Map<String, Integer>> beverageOrders = null;
+    /**
+     * Method to open the durable inventory of the machine if a state directory is given
+     *
+     * @param machineDefinition
+     * @return the durable inventory or null if the inventory is to be kept in memory only
+     */
+    private static DurableInventory openDurableInventory(MachineDefinition machineDefinition) {
+        String stateDirectory = System.getProperty(ApplicationConstants.STATE_DIRECTORY_PROPERTY);
+        if (stateDirectory == null || stateDirectory.trim().isEmpty())
+            return null;
+        int snapshotInterval = Integer.getInteger(ApplicationConstants.SNAPSHOT_INTERVAL_PROPERTY,
+                DurableInventory.DEFAULT_SNAPSHOT_INTERVAL);
         try {
-            beverageOrders = readBeverageTasks(inputJson, objectMapper);
-        } catch (JsonProcessingException e) {
-            LOGGER.info("Error reading beverage tasks!");
-            throw new RuntimeException("Error reading beverage tasks!");
+            return DurableInventory.open(Paths.get(stateDirectory), machineDefinition, snapshotInterval);
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the inventory state in {}!", stateDirectory);
+            throw new RuntimeException("Unable to open the inventory state in " + stateDirectory, e);
         }
-        if (beverageOrders == null)
-            throw new IllegalStateException("beverages can't be null!");
-        LOGGER.info("Total beverage orders found = {}", beverageOrders.size());
+    }
 
-        //fetch refill-pack if present
-        LOGGER.info("Initializing Refill Provider...");
+    /**
+     * Method to open the inventory shared with other processes if an inventory file is given
+     *
+     * @param machineDefinition
+     * @return the shared inventory or null if the inventory belongs to this process only
+     */
+    private static SharedInventory openSharedInventory(MachineDefinition machineDefinition) {
+        String inventoryFile = System.getProperty(ApplicationConstants.SHARED_INVENTORY_PROPERTY);
+        if (inventoryFile == null || inventoryFile.trim().isEmpty())
+            return null;
         try {
-            RefillProvider.initRefillProvider(inputJson, objectMapper);
-        } catch (JsonProcessingException e) {
-            LOGGER.info("Error reading the refill-pack!");
-            throw new RuntimeException("Error reading the refill-pack!", e);
+            return SharedInventory.open(Paths.get(inventoryFile), machineDefinition);
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the shared inventory {}!", inventoryFile);
+            throw new RuntimeException("Unable to open the shared inventory " + inventoryFile, e);
         }
-        LOGGER.info("Refill Provider Initialized!");
-
-        //execute all beverage orders
-        LOGGER.info("submitting beverage orders...");
-        coffeeMachine.submitAllOrders(beverageOrders);
-        LOGGER.info("{} beverage orders submitted!", beverageOrders.size());
+    }
 
-        //shutdown coffee machine
-        LOGGER.info("Shutting down coffee machine...");
-        List<OutletResponse> results;
+    /**
+     * Method to open the event journal of the machine if a journal file is given
+     *
+     * @param machineDefinition
+     * @return the journal or null if the orders are not to be journaled
+     */
+    private static EventJournal openJournal(MachineDefinition machineDefinition) {
+        String journalFile = System.getProperty(ApplicationConstants.JOURNAL_PROPERTY);
+        if (journalFile == null || journalFile.trim().isEmpty())
+            return null;
         try {
-            results = coffeeMachine.shutDown();
-        } catch (ExecutionException | InterruptedException e) {
-            LOGGER.error("Error shutting down the coffee machine and getting the outlet responses!");
-            throw new RuntimeException("Error shutting down the Coffee Machine and getting the outlet responses", e);
+            return new EventJournal(Paths.get(journalFile), machineDefinition.getIngredientRegistry(),
+                    EventJournal.DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the event journal {}!", journalFile);
+            throw new RuntimeException("Unable to open the event journal " + journalFile, e);
         }
-        LOGGER.info("Coffee Machine shut down!");
+    }
 
-        return results;
+    /**
+     * Method to record the orders of the machine as a trace if a trace file is given, the trace is written once the
+     * machine is closed
+     *
+     * @param eventJournal journal the recorder passes the order events on to, null if there is none
+     * @return the recorder or null if the orders are not to be traced
+     */
+    private static OrderTrace.Recorder openTraceRecorder(EventJournal eventJournal) {
+        String traceFile = System.getProperty(ApplicationConstants.TRACE_PROPERTY);
+        if (traceFile == null || traceFile.trim().isEmpty())
+            return null;
+        return new OrderTrace.Recorder(eventJournal == null ? OrderJournal.NONE : eventJournal);
     }
 
     /**
-     * Method to read the beverage orders (beverage name and ingredients to be included) from the input
+     * Method to load the machine definition from the resources, or from the filesystem if there is no such resource
      *
-     * @param inputJson
-     * @param objectMapper
+     * @param inputFileName
      * @return
-     * @throws JsonProcessingException
      */
-    private static Map<String, Map<String, Integer>> readBeverageTasks(String inputJson, ObjectMapper objectMapper) throws JsonProcessingException {
-        JsonNode beveragesNode = objectMapper.readTree(inputJson).get(ApplicationConstants.MACHINE).get(ApplicationConstants.BEVERAGES);
-        return objectMapper.convertValue(beveragesNode,
-                new TypeReference<Map<String, Map<String, Integer>>>() {});
+    static MachineDefinition load(String inputFileName) {
+        try (InputStream resource = CoffeeMachineSimulation.class.getClassLoader().getResourceAsStream(inputFileName)) {
+            if (resource != null)
+                return MachineDefinitionLoader.load(resource);
+            Path path = Paths.get(inputFileName);
+            if (!Files.isRegularFile(path)) {
+                LOGGER.error("Resource {} not found!", inputFileName);
+                throw new RuntimeException("Resource " + inputFileName + " not found!");
+            }
+            return MachineDefinitionLoader.load(path);
+        } catch (IOException e) {
+            LOGGER.error("Unable to read the file!");
+            throw new RuntimeException("Unable to read the file!", e);
+        }
     }
 }
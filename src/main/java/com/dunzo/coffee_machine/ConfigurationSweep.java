@@ -0,0 +1,135 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tool to size a coffee machine by simulating every combination of outlet count, stock level and refill pack level
+ * <p>
+ * Every point of the sweep is a DiscreteEventSimulation of the machine with the workload of its simulation section,
+ * so a point takes milliseconds instead of the real brew times and the same point always gives the same result. The
+ * points are simulated in parallel on a fork-join pool: each one builds its own InventoryManager and RefillProvider
+ * and only shares the immutable recipes and the ingredient registry of the input, nothing is kept in static state.
+ * <p>
+ * The result is a table of the throughput and the served ratio of every configuration, with the Pareto-optimal ones,
+ * those no other configuration beats on outlets, stock, throughput and served ratio all at once, marked.
+ * <p>
+ * usage: ConfigurationSweep input-file outlets stock-scales refill-scales [parallelism]
+ * <br>
+ * e.g. ConfigurationSweep input.json 1..10 0.5..5:0.5 0,1..9 to simulate 1000 configurations, see SweepSpace#parse
+ */
+public class ConfigurationSweep {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationSweep.class);
+    //points simulated by a single task, simulations are short so splitting further only adds overhead
+    private static final int POINTS_PER_TASK = 4;
+
+    public static void main(String[] args) {
+        if (args.length < 4)
+            throw new IllegalArgumentException("usage: ConfigurationSweep input-file outlets stock-scales " +
+                    "refill-scales [parallelism]");
+        MachineDefinition machineDefinition = CoffeeMachineSimulation.load(args[0]);
+        SweepSpace sweepSpace = SweepSpace.parse(args[1], args[2], args[3]);
+        int parallelism = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        SweepReport sweepReport = run(machineDefinition, sweepSpace, parallelism);
+        System.out.print(sweepReport.toTable());
+        LOGGER.info("Swept {} configurations in {} ms, {} of them are Pareto-optimal", sweepReport.getResults().size(),
+                TimeUnit.NANOSECONDS.toMillis(sweepReport.getElapsedNanos()), sweepReport.getParetoFront().size());
+    }
+
+    /**
+     * Method to simulate every point of the sweep space on the given machine
+     * @param machineDefinition machine whose outlets, stock and refill pack are swept, with the workload to simulate
+     * @param sweepSpace
+     * @param parallelism       number of points simulated at the same time
+     * @return
+     */
+    public static SweepReport run(MachineDefinition machineDefinition, SweepSpace sweepSpace, int parallelism) {
+        LOGGER.info("Sweeping {} configurations on {} threads...", sweepSpace.size(), parallelism);
+        long start = System.nanoTime();
+        SweepResult[] results = new SweepResult[sweepSpace.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SweepTask(machineDefinition, sweepSpace, results, 0, results.length));
+        } finally {
+            pool.shutdown();
+        }
+        return new SweepReport(Arrays.asList(results), System.nanoTime() - start);
+    }
+
+    /**
+     * Method to simulate a single point of the sweep
+     * @param machineDefinition
+     * @param sweepSpace
+     * @param point
+     * @return
+     */
+    static SweepResult simulate(MachineDefinition machineDefinition, SweepSpace sweepSpace, int point) {
+        int outlets = sweepSpace.outletCountAt(point);
+        int[] itemsQuantity = scale(machineDefinition.getItemsQuantity(), sweepSpace.stockScaleAt(point));
+        int[] refillPack = scale(machineDefinition.getRefillPack(), sweepSpace.refillScaleAt(point));
+        long provisionedQuantity = 0;
+        for (int quantity : itemsQuantity) {
+            provisionedQuantity += quantity;
+        }
+        for (int quantity : refillPack) {
+            provisionedQuantity += quantity;
+        }
+        MachineDefinition configuration = new MachineDefinition(machineDefinition.getIngredientRegistry(),
+                machineDefinition.getOutletConfig().withCount(outlets), itemsQuantity, refillPack,
+                machineDefinition.getBeverages(), machineDefinition.getSimulationConfig());
+        SimulationReport simulationReport = new DiscreteEventSimulation(configuration).run();
+        return new SweepResult(outlets, sweepSpace.stockScaleAt(point), sweepSpace.refillScaleAt(point),
+                provisionedQuantity, simulationReport);
+    }
+
+    private static int[] scale(int[] quantities, double scale) {
+        int[] scaled = new int[quantities.length];
+        for (int id = 0; id < quantities.length; id++) {
+            scaled[id] = (int) Math.min(Integer.MAX_VALUE, Math.round(quantities[id] * scale));
+        }
+        return scaled;
+    }
+
+    /**
+     * simulates the points [from, to) of the sweep, splitting the range in halves until it is small enough
+     */
+    private static final class SweepTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MachineDefinition machineDefinition;
+        private final SweepSpace sweepSpace;
+        private final SweepResult[] results;
+        private final int from;
+        private final int to;
+
+        private SweepTask(MachineDefinition machineDefinition, SweepSpace sweepSpace, SweepResult[] results,
+                          int from, int to) {
+            this.machineDefinition = machineDefinition;
+            this.sweepSpace = sweepSpace;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= POINTS_PER_TASK) {
+                for (int point = from; point < to; point++) {
+                    results[point] = simulate(machineDefinition, sweepSpace, point);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SweepTask(machineDefinition, sweepSpace, results, from, middle),
+                    new SweepTask(machineDefinition, sweepSpace, results, middle, to));
+        }
+    }
+}
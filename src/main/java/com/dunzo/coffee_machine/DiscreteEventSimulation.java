@@ -0,0 +1,348 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic discrete-event simulation of a coffee machine in virtual time
+ * <p>
+ * Orders arrive as configured in the simulation section of the input and every beverage takes its brew time at an
+ * outlet. Nothing sleeps and no thread is started: a virtual clock jumps from one event to the next in a priority
+ * queue ordered by time, so millions of orders are simulated on a single thread far faster than real time. The same
+ * seed always gives the same simulation.
+ * <p>
+ * Orders go through the same logic as the real machine: the FeasibilityIndex turns away orders which can't be made
+ * even with the refill pack when they arrive, and an outlet rations the recipe from the InventoryManager, refilling
+ * the shortfall from the RefillProvider and retrying once if the ration fails. An order refused at the outlet frees
+ * the outlet right away. Orders wait for an outlet in the order they arrived.
+ */
+public class DiscreteEventSimulation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscreteEventSimulation.class);
+    private static final int ARRIVAL = -1;
+    private static final double NANOS_PER_HOUR = 3_600_000_000_000d;
+
+    private final MachineDefinition machineDefinition;
+    private final SimulationConfig simulationConfig;
+
+    public DiscreteEventSimulation(MachineDefinition machineDefinition) {
+        this(machineDefinition, machineDefinition.getSimulationConfig());
+    }
+
+    /**
+     * @param machineDefinition machine to simulate, every run starts from its initial stock and refill pack
+     * @param simulationConfig
+     */
+    public DiscreteEventSimulation(MachineDefinition machineDefinition, SimulationConfig simulationConfig) {
+        this.machineDefinition = machineDefinition;
+        this.simulationConfig = simulationConfig;
+    }
+
+    /**
+     * Method to run the simulation until every order is served or refused
+     * @return
+     */
+    public SimulationReport run() {
+        long startedAt = System.nanoTime();
+        Run run = new Run();
+        run.simulate();
+        SimulationReport simulationReport = run.report(System.nanoTime() - startedAt);
+        LOGGER.debug("Simulated {} orders with {} events", simulationReport.getOrders(), simulationReport.getEvents());
+        return simulationReport;
+    }
+
+    /**
+     * state of a single run, the clock is in nanoseconds since the start of the simulation
+     */
+    private final class Run {
+        private final IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        private final InventoryManager inventoryManager =
+                new InventoryManager(ingredientRegistry, machineDefinition.getItemsQuantity());
+        private final RefillProvider refillProvider =
+                new RefillProvider(ingredientRegistry, machineDefinition.getRefillPack());
+        private final FeasibilityIndex feasibilityIndex = new FeasibilityIndex(inventoryManager, refillProvider);
+        private final Random random = new Random(simulationConfig.getSeed());
+        private final double meanInterArrivalNanos = NANOS_PER_HOUR / simulationConfig.getArrivalsPerHour();
+        private final Recipe[] beverages = machineDefinition.getBeverages().toArray(new Recipe[0]);
+        private final long[] brewNanos = new long[beverages.length];
+        private final int[] cumulativeWeights = new int[beverages.length];
+
+        private final EventQueue events = new EventQueue();
+        private final OrderQueue waiting = new OrderQueue();
+        private final int outlets = machineDefinition.getOutletConfig().getCount();
+        private final int[] idleOutlets = new int[outlets];
+        private int idleHead;
+        private int idleCount;
+
+        private final long[] served = new long[outlets];
+        private final long[] refused = new long[outlets];
+        private final long[] busyNanos = new long[outlets];
+        private final LatencyHistogram[] waits = new LatencyHistogram[outlets];
+        private final LatencyHistogram allWaits = new LatencyHistogram();
+        private final List<List<StockOut>> stockOuts = new ArrayList<>();
+        private final boolean[][] stockedOut = new boolean[outlets][];
+        private final List<StockOut> admissionStockOuts = new ArrayList<>();
+        private final boolean[] stockedOutAtAdmission;
+
+        private long now;
+        private long arrived;
+        private long refusedAtAdmission;
+        private long processedEvents;
+
+        Run() {
+            int totalWeight = 0;
+            for (int i = 0; i < beverages.length; i++) {
+                brewNanos[i] = simulationConfig.getBrewNanos(beverages[i].getBeverageName());
+                totalWeight += simulationConfig.getWeight(beverages[i].getBeverageName());
+                cumulativeWeights[i] = totalWeight;
+            }
+            if (totalWeight <= 0 && simulationConfig.getOrders() > 0)
+                throw new IllegalArgumentException("None of the beverages is part of the simulated order mix!");
+            for (int outlet = 0; outlet < outlets; outlet++) {
+                idleOutlets[outlet] = outlet;
+                waits[outlet] = new LatencyHistogram();
+                stockOuts.add(new ArrayList<>());
+                stockedOut[outlet] = new boolean[ingredientRegistry.size()];
+            }
+            idleCount = outlets;
+            stockedOutAtAdmission = new boolean[ingredientRegistry.size()];
+        }
+
+        void simulate() {
+            if (simulationConfig.getOrders() > 0)
+                events.add(nextArrival(), ARRIVAL);
+            while (!events.isEmpty()) {
+                now = events.peekTime();
+                int outlet = events.poll();
+                processedEvents++;
+                if (outlet == ARRIVAL) {
+                    arrive();
+                } else {
+                    //the outlet is done brewing
+                    idleOutlets[(idleHead + idleCount++) % outlets] = outlet;
+                }
+                dispatch();
+            }
+        }
+
+        private long nextArrival() {
+            return now + simulationConfig.getArrivalProcess().nextInterArrivalNanos(random, meanInterArrivalNanos);
+        }
+
+        private void arrive() {
+            arrived++;
+            if (arrived < simulationConfig.getOrders())
+                events.add(nextArrival(), ARRIVAL);
+            int beverage = pickBeverage();
+            RationResult feasibility = feasibilityIndex.check(beverages[beverage]);
+            if (!feasibility.isSuccess()) {
+                refusedAtAdmission++;
+                recordStockOuts(feasibility, beverage, stockedOutAtAdmission, admissionStockOuts);
+                return;
+            }
+            waiting.add(now, beverage);
+        }
+
+        private int pickBeverage() {
+            int weight = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int index = Arrays.binarySearch(cumulativeWeights, weight + 1);
+            if (index < 0)
+                return -index - 1;
+            //beverages with no weight share the cumulative weight of the one before them, take the first of them
+            while (index > 0 && cumulativeWeights[index - 1] == cumulativeWeights[index]) {
+                index--;
+            }
+            return index;
+        }
+
+        /**
+         * hands the waiting orders to the idle outlets, longest idle outlet first
+         */
+        private void dispatch() {
+            while (idleCount > 0 && !waiting.isEmpty()) {
+                int outlet = idleOutlets[idleHead];
+                long arrivedAt = waiting.peekArrival();
+                int beverage = waiting.poll();
+                RationResult rationResult = ration(beverages[beverage]);
+                if (!rationResult.isSuccess()) {
+                    refused[outlet]++;
+                    recordStockOuts(rationResult, beverage, stockedOut[outlet], stockOuts.get(outlet));
+                    continue;
+                }
+                idleHead = (idleHead + 1) % outlets;
+                idleCount--;
+                waits[outlet].record(now - arrivedAt);
+                allWaits.record(now - arrivedAt);
+                served[outlet]++;
+                busyNanos[outlet] += brewNanos[beverage];
+                events.add(now + brewNanos[beverage], outlet);
+            }
+        }
+
+        /**
+         * same as the preparation at a real outlet: ration, then refill the shortfall and retry once
+         */
+        private RationResult ration(Recipe recipe) {
+            RationResult rationResult = inventoryManager.tryRation(recipe);
+            if (rationResult.isSuccess())
+                return rationResult;
+            RationResult feasibility = feasibilityIndex.check(recipe);
+            if (!feasibility.isSuccess())
+                return feasibility;
+            RationResult refill = refillProvider.refillShortfall(recipe, inventoryManager);
+            return refill.isInfeasible() ? refill : inventoryManager.tryRation(recipe);
+        }
+
+        private void recordStockOuts(RationResult rationResult, int beverage, boolean[] stockedOut, List<StockOut> timeline) {
+            List<String> ingredients = rationResult.getInsufficientIngredients(ingredientRegistry);
+            for (String ingredient : ingredients) {
+                int id = ingredientRegistry.idOf(ingredient);
+                if (!stockedOut[id]) {
+                    stockedOut[id] = true;
+                    timeline.add(new StockOut(now, ingredient, beverages[beverage].getBeverageName()));
+                }
+            }
+        }
+
+        SimulationReport report(long elapsedNanos) {
+            List<OutletReport> outletReports = new ArrayList<>(outlets);
+            long totalServed = 0;
+            for (int outlet = 0; outlet < outlets; outlet++) {
+                totalServed += served[outlet];
+                outletReports.add(new OutletReport(outlet, served[outlet], refused[outlet], busyNanos[outlet],
+                        now == 0 ? 0 : (double) busyNanos[outlet] / now, waits[outlet].summarize(),
+                        stockOuts.get(outlet)));
+            }
+            return new SimulationReport(arrived, totalServed, refusedAtAdmission, now, processedEvents, elapsedNanos,
+                    allWaits.summarize(), outletReports, admissionStockOuts);
+        }
+    }
+
+    /**
+     * binary min-heap of events by time, events at the same time come out in the order they were added
+     * there is at most one pending arrival plus one completion per outlet, so the heap stays tiny
+     */
+    private static final class EventQueue {
+        private long[] times = new long[16];
+        private long[] sequences = new long[16];
+        private int[] outlets = new int[16];
+        private int size;
+        private long lastSequence;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekTime() {
+            return times[0];
+        }
+
+        void add(long time, int outlet) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+                outlets = Arrays.copyOf(outlets, size * 2);
+            }
+            int index = size++;
+            long sequence = lastSequence++;
+            //sift up
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!before(time, sequence, parent))
+                    break;
+                move(parent, index);
+                index = parent;
+            }
+            set(index, time, sequence, outlet);
+        }
+
+        int poll() {
+            int outlet = outlets[0];
+            size--;
+            long time = times[size];
+            long sequence = sequences[size];
+            int last = outlets[size];
+            int index = 0;
+            //sift down
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && before(times[child + 1], sequences[child + 1], child))
+                    child++;
+                if (!before(times[child], sequences[child], time, sequence))
+                    break;
+                move(child, index);
+                index = child;
+            }
+            if (size > 0)
+                set(index, time, sequence, last);
+            return outlet;
+        }
+
+        private boolean before(long time, long sequence, int index) {
+            return before(time, sequence, times[index], sequences[index]);
+        }
+
+        private static boolean before(long time, long sequence, long otherTime, long otherSequence) {
+            return time < otherTime || time == otherTime && sequence < otherSequence;
+        }
+
+        private void move(int from, int to) {
+            set(to, times[from], sequences[from], outlets[from]);
+        }
+
+        private void set(int index, long time, long sequence, int outlet) {
+            times[index] = time;
+            sequences[index] = sequence;
+            outlets[index] = outlet;
+        }
+    }
+
+    /**
+     * growable ring of the orders waiting for an outlet, in the order they arrived
+     */
+    private static final class OrderQueue {
+        private long[] arrivals = new long[16];
+        private int[] beverages = new int[16];
+        private int head;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(long arrivedAt, int beverage) {
+            if (size == arrivals.length) {
+                long[] grownArrivals = new long[size * 2];
+                int[] grownBeverages = new int[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grownArrivals[i] = arrivals[(head + i) % arrivals.length];
+                    grownBeverages[i] = beverages[(head + i) % beverages.length];
+                }
+                arrivals = grownArrivals;
+                beverages = grownBeverages;
+                head = 0;
+            }
+            int tail = (head + size++) % arrivals.length;
+            arrivals[tail] = arrivedAt;
+            beverages[tail] = beverage;
+        }
+
+        long peekArrival() {
+            return arrivals[head];
+        }
+
+        int poll() {
+            int beverage = beverages[head];
+            head = (head + 1) % arrivals.length;
+            size--;
+            return beverage;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Inventory and refill pack of a coffee machine which survive a restart
+ * <p>
+ * The state is kept in a directory as the latest InventorySnapshot plus the WriteAheadLog of the changes made
+ * since. Opening the directory loads the snapshot and replays the log on top of it; the initial quantities of the
+ * machine definition are only used when the directory holds no state yet. Every ration and refill is logged and
+ * the outlets hand out a beverage only once its ration is durable. The directory is locked while it is open, so a
+ * second machine, in this process or another one, can't open it until the first one is closed.
+ */
+public class DurableInventory implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DurableInventory.class);
+    public static final String SNAPSHOT_FILE_NAME = "inventory.snapshot";
+    public static final String LOG_FILE_NAME = "inventory.wal";
+    public static final String LOCK_FILE_NAME = "inventory.lock";
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+    private final WriteAheadLog writeAheadLog;
+    private final FileLock directoryLock;
+    private final boolean recovered;
+    private final long replayedRecords;
+
+    private DurableInventory(InventoryManager inventoryManager, RefillProvider refillProvider,
+                             WriteAheadLog writeAheadLog, FileLock directoryLock, boolean recovered,
+                             long replayedRecords) {
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+        this.writeAheadLog = writeAheadLog;
+        this.directoryLock = directoryLock;
+        this.recovered = recovered;
+        this.replayedRecords = replayedRecords;
+    }
+
+    /**
+     * Method to open the durable inventory of the given machine definition
+     * @param directory        directory holding the state, created if needed
+     * @param machineDefinition
+     * @param snapshotInterval number of logged changes after which a snapshot is taken
+     * @return
+     * @throws IOException if the directory is already open or its state can't be read
+     */
+    public static DurableInventory open(Path directory, MachineDefinition machineDefinition, int snapshotInterval)
+            throws IOException {
+        Files.createDirectories(directory);
+        FileLock directoryLock = lock(directory);
+        try {
+            return open(directory, machineDefinition, snapshotInterval, directoryLock);
+        } catch (IOException | RuntimeException e) {
+            release(directoryLock);
+            throw e;
+        }
+    }
+
+    /**
+     * Method to take the exclusive lock of the directory, a flusher left over by another instance would otherwise
+     * keep writing the snapshot and the log under the new one
+     */
+    private static FileLock lock(Path directory) throws IOException {
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock directoryLock;
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            //held by another instance in this process
+            directoryLock = null;
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IOException("Inventory state in " + directory + " is already open");
+        }
+        return directoryLock;
+    }
+
+    private static void release(FileLock directoryLock) throws IOException {
+        try {
+            directoryLock.release();
+        } finally {
+            directoryLock.channel().close();
+        }
+    }
+
+    private static DurableInventory open(Path directory, MachineDefinition machineDefinition, int snapshotInterval,
+                                         FileLock directoryLock) throws IOException {
+        IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE_NAME);
+        Path logPath = directory.resolve(LOG_FILE_NAME);
+        InventorySnapshot snapshot = InventorySnapshot.read(snapshotPath);
+        int[] itemsQuantity = machineDefinition.getItemsQuantity();
+        int[] refillPack = machineDefinition.getRefillPack();
+        long lsn = 0;
+        long replayedRecords = 0;
+        if (snapshot != null) {
+            Recovery recovery = new Recovery(ingredientRegistry, snapshot);
+            replayedRecords = WriteAheadLog.replay(logPath, snapshot.getLsn(), recovery);
+            itemsQuantity = recovery.itemsQuantity;
+            refillPack = recovery.refillPack;
+            lsn = recovery.lsn;
+            LOGGER.info("Recovered the inventory from {} at lsn {}, {} records replayed", directory, lsn, replayedRecords);
+        }
+        //the registry may have grown since the vectors were sized
+        itemsQuantity = Arrays.copyOf(itemsQuantity, ingredientRegistry.size());
+        refillPack = Arrays.copyOf(refillPack, ingredientRegistry.size());
+        String[] names = new String[ingredientRegistry.size()];
+        for (int id = 0; id < names.length; id++) {
+            names[id] = ingredientRegistry.nameOf(id);
+        }
+        WriteAheadLog writeAheadLog = new WriteAheadLog(logPath, snapshotPath, ingredientRegistry,
+                new InventorySnapshot(lsn, names, itemsQuantity.clone(), refillPack.clone()), snapshotInterval);
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, itemsQuantity);
+        inventoryManager.setInventoryLog(writeAheadLog);
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, refillPack);
+        return new DurableInventory(inventoryManager, refillProvider, writeAheadLog, directoryLock, snapshot != null,
+                replayedRecords);
+    }
+
+    public InventoryManager getInventoryManager() {
+        return inventoryManager;
+    }
+
+    public RefillProvider getRefillProvider() {
+        return refillProvider;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * @return true if the state was recovered from the directory rather than taken from the machine definition
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * @return number of log records replayed on top of the snapshot while recovering
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * Method to make every change durable, take a final snapshot and stop logging
+     * Meant to be called once the coffee machine is closed
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        try {
+            writeAheadLog.close();
+            inventoryManager.setInventoryLog(InventoryLog.NONE);
+        } finally {
+            release(directoryLock);
+        }
+    }
+
+    /**
+     * Method to stop logging as a crash of the process would, leaving the directory as it is on disk
+     * Changes not forced yet are lost and no final snapshot is taken, then the directory can be opened again
+     * Meant for recovery drills and tests, the inventory must not be used afterwards
+     */
+    public void crash() throws InterruptedException, IOException {
+        try {
+            writeAheadLog.crash();
+        } finally {
+            release(directoryLock);
+        }
+    }
+
+    /**
+     * rebuilds the vectors of the registry from the snapshot and the replayed records
+     */
+    private static final class Recovery implements WriteAheadLog.RecordVisitor {
+        private final IngredientRegistry ingredientRegistry;
+        private int[] logIdToRegistryId;
+        private int[] itemsQuantity;
+        private int[] refillPack;
+        private long lsn;
+
+        Recovery(IngredientRegistry ingredientRegistry, InventorySnapshot snapshot) {
+            this.ingredientRegistry = ingredientRegistry;
+            this.logIdToRegistryId = new int[snapshot.size()];
+            this.itemsQuantity = new int[ingredientRegistry.size()];
+            this.refillPack = new int[ingredientRegistry.size()];
+            this.lsn = snapshot.getLsn();
+            for (int i = 0; i < snapshot.size(); i++) {
+                name(i, snapshot.nameAt(i));
+                int id = logIdToRegistryId[i];
+                itemsQuantity[id] = snapshot.itemsQuantityAt(i);
+                refillPack[id] = snapshot.refillPackAt(i);
+            }
+        }
+
+        @Override
+        public void name(int ingredientId, String name) {
+            if (ingredientId >= logIdToRegistryId.length)
+                logIdToRegistryId = Arrays.copyOf(logIdToRegistryId, Math.max(ingredientId + 1, logIdToRegistryId.length * 2));
+            int id = ingredientRegistry.register(name);
+            logIdToRegistryId[ingredientId] = id;
+            if (id >= itemsQuantity.length) {
+                itemsQuantity = Arrays.copyOf(itemsQuantity, ingredientRegistry.size());
+                refillPack = Arrays.copyOf(refillPack, ingredientRegistry.size());
+            }
+        }
+
+        @Override
+        public void change(long lsn, int type, int ingredientId, int quantity) {
+            int id = logIdToRegistryId[ingredientId];
+            switch (type) {
+                case WriteAheadLog.RATION:
+                    itemsQuantity[id] -= quantity;
+                    break;
+                case WriteAheadLog.REFILL:
+                    itemsQuantity[id] += quantity;
+                    refillPack[id] -= quantity;
+                    break;
+                case WriteAheadLog.ADD:
+                    itemsQuantity[id] += quantity;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown inventory log record type " + type);
+            }
+            this.lsn = Math.max(this.lsn, lsn);
+        }
+    }
+}
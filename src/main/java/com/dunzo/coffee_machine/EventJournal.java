@@ -0,0 +1,233 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary journal of the order events of a coffee machine
+ * <p>
+ * Every event is a fixed size record written to a preallocated ring buffer: the outlet claims a slot with a single
+ * atomic increment, fills it in with primitives and publishes it, no string is formatted and no I/O is done on the
+ * outlet. A background thread drains the published records in order to a memory-mapped file. If the ring is full
+ * the outlet waits for the drainer, so the journal is complete.
+ * <p>
+ * File layout, little endian: a header of HEADER_SIZE bytes with the magic, version and number of records, followed
+ * by records of RECORD_SIZE bytes: epoch millis (long), order id (long), beverage or ingredient id (int), event (int),
+ * quantity or status (int), padding (int). Ingredient and beverage names are written to a .names file next to the
+ * journal when it is closed. Use EventJournalReader to decode the journal to text.
+ */
+public class EventJournal implements OrderJournal, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventJournal.class);
+    static final int MAGIC = 0x434d4a31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    static final int RECORD_COUNT_OFFSET = 8;
+    static final String NAMES_SUFFIX = ".names";
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int LONGS_PER_RECORD = RECORD_SIZE / Long.BYTES;
+    private static final long CHUNK_SIZE = 8L << 20;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path path;
+    private final IngredientRegistry ingredientRegistry;
+    private final IngredientRegistry beverageNames;
+    private final long[] ring;
+    //sequence + 1 of the record last published in every slot
+    private final AtomicLongArray published;
+    private final int mask;
+    //how often the drainer tells the outlets about its progress while it has records to write
+    private final int progressMask;
+    private final AtomicLong claimed;
+    private volatile long drained;
+    private final LongAdder fullWaits;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer chunk;
+    private long chunkOffset;
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    /**
+     * @param path               journal file, overwritten if present
+     * @param ingredientRegistry registry of the machine, to name the ingredients in the journal
+     * @param capacity           number of records the ring can hold, rounded up to a power of two
+     * @throws IOException
+     */
+    public EventJournal(Path path, IngredientRegistry ingredientRegistry, int capacity) throws IOException {
+        this.path = path;
+        this.ingredientRegistry = ingredientRegistry;
+        this.beverageNames = new IngredientRegistry();
+        int slots = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new long[slots * LONGS_PER_RECORD];
+        this.published = new AtomicLongArray(slots);
+        this.mask = slots - 1;
+        this.progressMask = Math.min(1023, mask >> 1);
+        this.claimed = new AtomicLong();
+        this.fullWaits = new LongAdder();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.header = map(channel, 0, HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(RECORD_COUNT_OFFSET, 0);
+        this.chunkOffset = HEADER_SIZE;
+        this.chunk = map(channel, chunkOffset, CHUNK_SIZE);
+        this.drainer = new Thread(this::drain, "event-journal-" + path.getFileName());
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    @Override
+    public void submitted(long orderId, Recipe recipe) {
+        append(OrderEvent.SUBMITTED, orderId, beverageIdOf(recipe), recipe.size());
+    }
+
+    @Override
+    public void rationed(long orderId, Recipe recipe) {
+        append(OrderEvent.RATIONED, orderId, beverageIdOf(recipe), recipe.size());
+        for (int i = 0; i < recipe.size(); i++) {
+            append(OrderEvent.INGREDIENT_DELTA, orderId, recipe.ingredientIdAt(i), -recipe.quantityAt(i));
+        }
+    }
+
+    @Override
+    public void refilled(long orderId, int ingredientId, int quantity) {
+        append(OrderEvent.REFILLED, orderId, ingredientId, quantity);
+    }
+
+    @Override
+    public void failed(long orderId, Recipe recipe, OrderStatus status) {
+        append(OrderEvent.FAILED, orderId, beverageIdOf(recipe), status.ordinal());
+    }
+
+    private int beverageIdOf(Recipe recipe) {
+        //recipes compiled by the map adapters have no name
+        return recipe.getBeverageName() == null ? IngredientRegistry.UNKNOWN : beverageNames.register(recipe.getBeverageName());
+    }
+
+    private void append(OrderEvent event, long orderId, int id, int quantity) {
+        if (closed)
+            return;
+        long sequence = claimed.getAndIncrement();
+        if (sequence - drained > mask) {
+            fullWaits.increment();
+            while (sequence - drained > mask) {
+                Thread.yield();
+            }
+        }
+        int slot = (int) (sequence & mask);
+        int base = slot * LONGS_PER_RECORD;
+        ring[base] = System.currentTimeMillis();
+        ring[base + 1] = orderId;
+        ring[base + 2] = ((long) event.ordinal() << 32) | (id & 0xffffffffL);
+        ring[base + 3] = quantity & 0xffffffffL;
+        //release the plain writes above to the drainer
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * @return number of times an outlet had to wait for the drainer because the ring was full
+     */
+    public long getFullWaits() {
+        return fullWaits.sum();
+    }
+
+    /**
+     * @return number of records written to the file so far
+     */
+    public long getRecordCount() {
+        return drained;
+    }
+
+    private void drain() {
+        long next = 0;
+        try {
+            while (true) {
+                int slot = (int) (next & mask);
+                if (published.get(slot) == next + 1) {
+                    write(slot);
+                    next++;
+                    if ((next & progressMask) == 0)
+                        drained = next;
+                    continue;
+                }
+                //caught up with the outlets
+                header.putLong(RECORD_COUNT_OFFSET, next);
+                drained = next;
+                if (closed && next == claimed.get())
+                    return;
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to write the event journal {}, no more events are recorded!", path, e);
+            //outlets must never wait for a drainer which is gone
+            drained = Long.MAX_VALUE / 2;
+        }
+    }
+
+    private void write(int slot) throws IOException {
+        if (chunk.remaining() < RECORD_SIZE) {
+            chunk.force();
+            chunkOffset += CHUNK_SIZE;
+            chunk = map(channel, chunkOffset, CHUNK_SIZE);
+        }
+        int base = slot * LONGS_PER_RECORD;
+        chunk.putLong(ring[base]);
+        chunk.putLong(ring[base + 1]);
+        chunk.putLong(ring[base + 2]);
+        chunk.putLong(ring[base + 3]);
+    }
+
+    /**
+     * Method to stop recording, wait for the drainer to write every recorded event and write the names file
+     * Meant to be called once the coffee machine is closed, events recorded concurrently may be dropped
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        closed = true;
+        LockSupport.unpark(drainer);
+        drainer.join();
+        chunk.force();
+        header.force();
+        channel.close();
+        Files.write(path.resolveSibling(path.getFileName() + NAMES_SUFFIX), names(), StandardCharsets.UTF_8);
+        LOGGER.info("Event journal {} closed with {} records", path, drained);
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < ingredientRegistry.size(); id++) {
+            names.add("ingredient\t" + id + "\t" + ingredientRegistry.nameOf(id));
+        }
+        for (int id = 0; id < beverageNames.size(); id++) {
+            names.add("beverage\t" + id + "\t" + beverageNames.nameOf(id));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,121 @@
+package com.dunzo.coffee_machine;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tool to decode an EventJournal to text, one line per record
+ * Names are taken from the .names file next to the journal if present, otherwise ids are printed
+ * <p>
+ * usage: EventJournalReader journal-file
+ */
+public class EventJournalReader {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0] == null || args[0].trim().isEmpty())
+            throw new IllegalArgumentException("Journal file name is required!");
+        decode(Paths.get(args[0]), System.out::println);
+    }
+
+    /**
+     * Method to decode every record of the journal
+     * @param path
+     * @param lines consumer of the decoded lines
+     * @return number of records decoded
+     * @throws IOException
+     */
+    public static long decode(Path path, Consumer<String> lines) throws IOException {
+        Map<String, String> names = readNames(path.resolveSibling(path.getFileName() + EventJournal.NAMES_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(EventJournal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != EventJournal.MAGIC)
+                throw new IOException(path + " is not an event journal");
+            if (header.getInt(4) != EventJournal.VERSION)
+                throw new IOException("Unsupported event journal version " + header.getInt(4));
+            long recordCount = header.getLong(EventJournal.RECORD_COUNT_OFFSET);
+            ByteBuffer records = ByteBuffer.allocate(EventJournal.RECORD_SIZE * 4096).order(ByteOrder.LITTLE_ENDIAN);
+            long position = EventJournal.HEADER_SIZE;
+            long decoded = 0;
+            while (decoded < recordCount) {
+                int batch = (int) Math.min(recordCount - decoded, records.capacity() / EventJournal.RECORD_SIZE);
+                //Buffer casts keep the class runnable on Java 8 when built with a newer JDK
+                ((Buffer) records).clear();
+                ((Buffer) records).limit(batch * EventJournal.RECORD_SIZE);
+                readFully(channel, records, position);
+                position += records.limit();
+                ((Buffer) records).flip();
+                for (int i = 0; i < batch; i++) {
+                    lines.accept(decodeRecord(records, names));
+                }
+                decoded += batch;
+            }
+            return decoded;
+        }
+    }
+
+    private static String decodeRecord(ByteBuffer records, Map<String, String> names) {
+        long epochMillis = records.getLong();
+        long orderId = records.getLong();
+        int eventOrdinal = records.getInt(records.position() + 4);
+        int id = records.getInt();
+        records.getInt();
+        int value = records.getInt();
+        records.getInt();
+        OrderEvent event = OrderEvent.of(eventOrdinal);
+        StringBuilder line = new StringBuilder(96)
+                .append(Instant.ofEpochMilli(epochMillis)).append(" order=").append(orderId).append(' ')
+                .append(event == null ? "UNKNOWN(" + eventOrdinal + ")" : event.name());
+        if (event == null)
+            return line.append(" id=").append(id).append(" value=").append(value).toString();
+        switch (event) {
+            case SUBMITTED:
+            case RATIONED:
+                return line.append(" beverage=").append(name(names, "beverage", id))
+                        .append(" ingredients=").append(value).toString();
+            case FAILED:
+                OrderStatus status = value >= 0 && value < OrderStatus.values().length ? OrderStatus.values()[value] : null;
+                return line.append(" beverage=").append(name(names, "beverage", id))
+                        .append(" status=").append(status == null ? String.valueOf(value) : status.name()).toString();
+            default:
+                return line.append(" ingredient=").append(name(names, "ingredient", id))
+                        .append(" quantity=").append(value).toString();
+        }
+    }
+
+    private static String name(Map<String, String> names, String kind, int id) {
+        String name = names.get(kind + "\t" + id);
+        return name == null ? "#" + id : name;
+    }
+
+    private static Map<String, String> readNames(Path namesFile) throws IOException {
+        Map<String, String> names = new HashMap<>();
+        if (!Files.isRegularFile(namesFile))
+            return names;
+        for (String line : Files.readAllLines(namesFile, StandardCharsets.UTF_8)) {
+            int separator = line.lastIndexOf('\t');
+            if (separator > 0)
+                names.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+        return names;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Event journal is truncated");
+        }
+    }
+}
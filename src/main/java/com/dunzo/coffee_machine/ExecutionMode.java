@@ -0,0 +1,15 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * How the outlets of a coffee machine run the beverage preparation tasks
+ */
+public enum ExecutionMode {
+    //a fixed pool of platform threads, one per outlet
+    PLATFORM,
+    //a virtual thread per order, at most count_n of them preparing at a time, needs Java 21
+    VIRTUAL;
+
+    public static ExecutionMode fromConfig(String value) {
+        return ExecutionMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,46 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+
+/**
+ * Class to decide at admission time whether an order can be satisfied at all
+ * A recipe is feasible only if every ingredient is available in the required quantity from the current stock plus
+ * what is left in the refill pack. Ingredients missing from both the inventory and the refill pack can never be
+ * provided. The check only reads the counters, so infeasible orders are turned away without contending for the
+ * inventory and without a pointless round trip to the RefillProvider.
+ */
+public class FeasibilityIndex {
+
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+
+    public FeasibilityIndex(InventoryManager inventoryManager, RefillProvider refillProvider) {
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+    }
+
+    /**
+     * Method to check the given recipe against the current stock and the remaining refill pack
+     * Does not allocate when the recipe is feasible
+     * @param recipe
+     * @return RationResult.SUCCESS if the recipe may be satisfied, an infeasible result otherwise
+     */
+    public RationResult check(Recipe recipe) {
+        int[] infeasibleIngredients = null;
+        int count = 0;
+        for (int i = 0; i < recipe.size(); i++) {
+            if (!isFeasible(recipe.ingredientIdAt(i), recipe.quantityAt(i))) {
+                if (infeasibleIngredients == null)
+                    infeasibleIngredients = new int[recipe.size()];
+                infeasibleIngredients[count++] = recipe.ingredientIdAt(i);
+            }
+        }
+        return infeasibleIngredients == null ? RationResult.SUCCESS :
+                RationResult.infeasible(Arrays.copyOf(infeasibleIngredients, count));
+    }
+
+    private boolean isFeasible(int ingredientId, int quantityRequired) {
+        long stock = inventoryManager.getQuantity(ingredientId);
+        return stock >= quantityRequired || stock + refillProvider.remainingQuantity(ingredientId) >= quantityRequired;
+    }
+}
@@ -0,0 +1,41 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a fleet run, per machine and for the whole fleet
+ */
+public class FleetReport {
+
+    private final List<MachineReport> machineReports;
+    private final long elapsedNanos;
+
+    FleetReport(List<MachineReport> machineReports, long elapsedNanos) {
+        this.machineReports = Collections.unmodifiableList(machineReports);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<MachineReport> getMachineReports() {
+        return machineReports;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getOrders(OrderStatus status) {
+        return machineReports.stream().mapToLong(machineReport -> machineReport.getOrders(status)).sum();
+    }
+
+    public long getTotalOrders() {
+        return machineReports.stream().mapToLong(MachineReport::getTotalOrders).sum();
+    }
+
+    /**
+     * @return orders served by the whole fleet per second of the run
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getTotalOrders() * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,95 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to simulate a fleet of coffee machines in a single JVM
+ * <p>
+ * Every machine is created from the same schema as a single machine input. Instead of a thread pool per machine, the
+ * outlets of all the machines run as logical slots on one shared work-stealing pool, so the number of threads depends
+ * on the number of cores and not on the number of configured outlets.
+ * <p>
+ * fleet input json needs to be of the following schema:
+ * {
+ * "fleet": JsonArray //each element is a single machine input, see Main
+ * }
+ */
+public class FleetRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetRunner.class);
+
+    public static void main(String[] args) {
+        if (args.length == 0 || args[0] == null || args[0].trim().isEmpty())
+            throw new IllegalArgumentException("Fleet input file name is required!");
+        FleetReport fleetReport = run(args[0]);
+        LOGGER.info("Fleet served {} orders in {} ms", fleetReport.getTotalOrders(),
+                TimeUnit.NANOSECONDS.toMillis(fleetReport.getElapsedNanos()));
+    }
+
+    /**
+     * Method to run the fleet described by the given input file from the resources
+     * @param inputFileName
+     * @return
+     */
+    public static FleetReport run(String inputFileName) {
+        List<MachineDefinition> machineDefinitions;
+        try (InputStream inputStream = FleetRunner.class.getClassLoader().getResourceAsStream(inputFileName)) {
+            if (inputStream == null) {
+                LOGGER.error("Resource {} not found!", inputFileName);
+                throw new RuntimeException("Resource " + inputFileName + " not found!");
+            }
+            machineDefinitions = MachineDefinitionLoader.loadFleet(inputStream);
+        } catch (IOException e) {
+            LOGGER.error("Unable to read the file!");
+            throw new RuntimeException("Unable to read the file!", e);
+        }
+        return run(machineDefinitions, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Method to create every machine, serve all of their beverage orders and report the outcome
+     *
+     * @param machineDefinitions
+     * @param parallelism   number of threads shared by all the outlets of the fleet
+     * @return
+     */
+    public static FleetReport run(List<MachineDefinition> machineDefinitions, int parallelism) {
+        LOGGER.info("Starting {} coffee machines on {} shared threads...", machineDefinitions.size(), parallelism);
+        long start = System.nanoTime();
+        ForkJoinPool sharedExecutor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null, true);
+        List<CoffeeMachine> coffeeMachines = new ArrayList<>(machineDefinitions.size());
+        List<MachineReport> machineReports = new ArrayList<>(machineDefinitions.size());
+        try {
+            for (int i = 0; i < machineDefinitions.size(); i++) {
+                MachineDefinition machineDefinition = machineDefinitions.get(i);
+                CoffeeMachine coffeeMachine = MachineFactory.create(machineDefinition, sharedExecutor);
+                MachineReport machineReport = new MachineReport(i);
+                coffeeMachines.add(coffeeMachine);
+                machineReports.add(machineReport);
+                for (Recipe beverageOrder : machineDefinition.getBeverages()) {
+                    coffeeMachine.submitOrder(beverageOrder).thenAccept(machineReport::record);
+                }
+            }
+            LOGGER.info("All beverage orders submitted, waiting for the fleet to serve them...");
+            for (CoffeeMachine coffeeMachine : coffeeMachines) {
+                coffeeMachine.close();
+            }
+        } finally {
+            sharedExecutor.shutdown();
+        }
+        FleetReport fleetReport = new FleetReport(machineReports, System.nanoTime() - start);
+        LOGGER.info("Fleet of {} machines: {} prepared, {} not prepared out of {} orders", machineReports.size(),
+                fleetReport.getOrders(OrderStatus.PREPARED),
+                fleetReport.getTotalOrders() - fleetReport.getOrders(OrderStatus.PREPARED), fleetReport.getTotalOrders());
+        return fleetReport;
+    }
+}
@@ -0,0 +1,37 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Storage of the quantity of every ingredient, indexed by the ingredient id of an IngredientRegistry
+ * The counters live on the heap by default, see AtomicIngredientCounters, or in a file mapped by several processes,
+ * see InventoryFile
+ */
+interface IngredientCounters {
+
+    /**
+     * @return number of ingredient ids which have a counter
+     */
+    int length();
+
+    /**
+     * @param ingredientId
+     * @return quantity of the ingredient, 0 if it has no counter
+     */
+    int get(int ingredientId);
+
+    /**
+     * Method to set the quantity of the ingredient only if it is still the expected one
+     * @param ingredientId id which has a counter
+     * @param expectedQuantity
+     * @param quantity
+     * @return true if the quantity was set
+     */
+    boolean compareAndSet(int ingredientId, int expectedQuantity, int quantity);
+
+    /**
+     * Method to add the given quantity to the ingredient, its counter is created if needed
+     * @param ingredientId
+     * @param quantity
+     * @return quantity of the ingredient after the addition
+     */
+    int addAndGet(int ingredientId, int quantity);
+}
@@ -0,0 +1,313 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped mode of the inventory, where every outlet serves its orders from a lease of its own
+ * <p>
+ * The inventory is split into as many stripes as there are outlets. A stripe holds a slice of every ingredient leased
+ * from the shared counters of the InventoryManager and is owned by one outlet at a time, so an order served from the
+ * lease writes nothing shared but the ownership flag of its stripe. Only when the lease is short of an ingredient does
+ * the outlet go back to the shared counters to top it up, and when they are short too it steals what it needs from
+ * the stripes no other outlet holds at the moment.
+ * <p>
+ * The leased quantities are still part of the inventory: the InventoryManager adds them to the quantities it reports,
+ * reading again when a quantity was on its way between the shared counters and a lease, every ration served from a
+ * lease is reported to its log and listeners, and a ration stays all-or-nothing as nothing is deducted until the
+ * lease covers the whole recipe. If the stripes can't be gathered in time, the leases of the
+ * recipe's ingredients are brought back to the shared counters and the recipe is rationed there. Other outlets may
+ * lease again in the meantime, so this is retried as long as the leases and the shared counters together still hold
+ * the recipe, and an order is never refused while its ingredients sit in another outlet's lease. Leases are returned
+ * once the outlets are drained.
+ */
+public class IngredientLeases implements Rationer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngredientLeases.class);
+    //ints on each side of the quantities of a stripe, so that two stripes never share a cache line
+    private static final int PAD = 16;
+    private static final int OWNER = PAD - 1;
+
+    private final InventoryManager inventoryManager;
+    private final int ingredients;
+    private final AtomicIntegerArray[] stripes;
+    //moves of every ingredient between the shared counter and the leases, started at 2 * id and finished at 2 * id + 1
+    private final AtomicIntegerArray moves;
+    private final AtomicInteger nextHome = new AtomicInteger();
+    private final ThreadLocal<Integer> home = ThreadLocal.withInitial(this::assignHome);
+    private final LongAdder topUps = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder reclaims = new LongAdder();
+
+    /**
+     * Leases cover the ingredients registered so far, recipes using ingredients registered later are rationed on the
+     * shared counters
+     * @param inventoryManager
+     * @param stripes number of stripes, usually the number of outlets
+     * @throws IllegalStateException if the inventory is already striped
+     */
+    public IngredientLeases(InventoryManager inventoryManager, int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("Number of stripes must be positive!");
+        this.inventoryManager = inventoryManager;
+        this.ingredients = inventoryManager.getIngredientRegistry().size();
+        this.stripes = new AtomicIntegerArray[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new AtomicIntegerArray(ingredients + 2 * PAD);
+        }
+        this.moves = new AtomicIntegerArray(2 * ingredients);
+        inventoryManager.setIngredientLeases(this);
+    }
+
+    private Integer assignHome() {
+        return nextHome.getAndIncrement() % stripes.length;
+    }
+
+    /**
+     * Method to ration the recipe from the lease of the calling outlet, topping the lease up if needed
+     * @param recipe
+     * @return same as {@link InventoryManager#tryRation(Recipe)}
+     */
+    @Override
+    public RationResult ration(Recipe recipe) {
+        for (int i = 0; i < recipe.size(); i++) {
+            if (recipe.ingredientIdAt(i) >= ingredients)
+                return inventoryManager.tryRation(recipe);
+        }
+        int index = acquire();
+        boolean rationed;
+        try {
+            rationed = rationFromLease(index, recipe);
+        } finally {
+            release(index);
+        }
+        if (rationed) {
+            inventoryManager.rationed(recipe);
+            return RationResult.SUCCESS;
+        }
+        //the slices couldn't be gathered, ration on the shared counters with every lease of the recipe given back
+        while (true) {
+            reclaims.increment();
+            reclaim(recipe);
+            RationResult rationResult = inventoryManager.tryRation(recipe);
+            //another outlet leased the ingredients again before the ration, they are gathered once more
+            if (rationResult.isSuccess() || !heldInTotal(recipe))
+                return rationResult;
+        }
+    }
+
+    /**
+     * @return true if the shared counters and the leases together hold every ingredient of the recipe
+     */
+    private boolean heldInTotal(Recipe recipe) {
+        for (int i = 0; i < recipe.size(); i++) {
+            int id = recipe.ingredientIdAt(i);
+            if (getTotalQuantity(id) < recipe.quantityAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to deduct the recipe from the lease of the stripe, which the caller owns
+     * @param index
+     * @param recipe
+     * @return true if the lease covered the whole recipe, false if nothing was deducted
+     */
+    private boolean rationFromLease(int index, Recipe recipe) {
+        AtomicIntegerArray stripe = stripes[index];
+        for (int i = 0; i < recipe.size(); i++) {
+            int slot = PAD + recipe.ingredientIdAt(i);
+            int shortfall = recipe.quantityAt(i) - stripe.get(slot);
+            if (shortfall > 0 && !topUp(index, recipe.ingredientIdAt(i), shortfall))
+                return false;
+        }
+        for (int i = 0; i < recipe.size(); i++) {
+            int slot = PAD + recipe.ingredientIdAt(i);
+            //only the owner writes the stripe, readers of the totals just need to see the value eventually
+            stripe.lazySet(slot, stripe.get(slot) - recipe.quantityAt(i));
+        }
+        return true;
+    }
+
+    /**
+     * Method to add at least the shortfall of the ingredient to the lease of the stripe, from the shared counter and
+     * then from the stripes which are free
+     * A top up takes a share of the shared counter beyond the shortfall, so that the next orders are served locally
+     * @param index
+     * @param ingredientId
+     * @param shortfall
+     * @return true if the shortfall was made up, whatever was gathered stays in the lease otherwise
+     */
+    private boolean topUp(int index, int ingredientId, int shortfall) {
+        AtomicIntegerArray stripe = stripes[index];
+        int slot = PAD + ingredientId;
+        topUps.increment();
+        //what is taken is in neither the shared counter nor any stripe until it lands in this one
+        moves.getAndIncrement(2 * ingredientId);
+        int share = Math.max(shortfall, inventoryManager.getSharedQuantity(ingredientId) / (2 * stripes.length));
+        int taken = inventoryManager.lease(ingredientId, share);
+        for (int i = 1; taken < shortfall && i < stripes.length; i++) {
+            int other = (index + i) % stripes.length;
+            if (stripes[other].get(PAD + ingredientId) > 0 && tryAcquire(other)) {
+                try {
+                    AtomicIntegerArray victim = stripes[other];
+                    int available = victim.get(slot);
+                    //rebalance: take half of the other lease, or what is missing if that is more
+                    int stolen = Math.min(available, Math.max(shortfall - taken, available / 2));
+                    victim.lazySet(slot, available - stolen);
+                    taken += stolen;
+                    steals.increment();
+                } finally {
+                    release(other);
+                }
+            }
+        }
+        if (taken > 0)
+            stripe.lazySet(slot, stripe.get(slot) + taken);
+        moves.getAndIncrement(2 * ingredientId + 1);
+        if (taken > 0)
+            inventoryManager.leaseSettled(ingredientId);
+        return taken >= shortfall;
+    }
+
+    /**
+     * Method to bring the leases of the recipe's ingredients back to the shared counters, one stripe at a time
+     * @param recipe
+     */
+    private void reclaim(Recipe recipe) {
+        for (int index = 0; index < stripes.length; index++) {
+            acquireStripe(index);
+            try {
+                for (int i = 0; i < recipe.size(); i++) {
+                    giveBack(index, recipe.ingredientIdAt(i));
+                }
+            } finally {
+                release(index);
+            }
+        }
+    }
+
+    /**
+     * Method to return every lease to the shared counters, called once the outlets are drained
+     * Outlets still serving orders simply lease again
+     */
+    public void returnAll() {
+        for (int index = 0; index < stripes.length; index++) {
+            acquireStripe(index);
+            try {
+                for (int id = 0; id < ingredients; id++) {
+                    giveBack(index, id);
+                }
+            } finally {
+                release(index);
+            }
+        }
+        LOGGER.debug("Returned the leases after {} top ups, {} steals and {} reclaims", getTopUps(), getSteals(),
+                getReclaims());
+    }
+
+    private void giveBack(int index, int ingredientId) {
+        AtomicIntegerArray stripe = stripes[index];
+        int quantity = stripe.get(PAD + ingredientId);
+        if (quantity > 0) {
+            moves.getAndIncrement(2 * ingredientId);
+            stripe.lazySet(PAD + ingredientId, 0);
+            inventoryManager.returnLease(ingredientId, quantity);
+            moves.getAndIncrement(2 * ingredientId + 1);
+            inventoryManager.leaseSettled(ingredientId);
+        }
+    }
+
+    /**
+     * Method to get how much of the ingredient the shared counter and the leases hold together
+     * The counters are read again if a move between them overlapped the reads, so a quantity in transit is never
+     * missed
+     * @param ingredientId
+     * @return
+     */
+    int getTotalQuantity(int ingredientId) {
+        if (ingredientId >= ingredients)
+            return inventoryManager.getSharedQuantity(ingredientId);
+        while (true) {
+            int finished = moves.get(2 * ingredientId + 1);
+            int quantity = inventoryManager.getSharedQuantity(ingredientId) + getLeasedQuantity(ingredientId);
+            //no move started before the last read that hadn't finished before the first one
+            if (moves.get(2 * ingredientId) == finished)
+                return quantity;
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Method to get how much of the ingredient is leased to the outlets
+     * @param ingredientId
+     * @return
+     */
+    public int getLeasedQuantity(int ingredientId) {
+        if (ingredientId >= ingredients)
+            return 0;
+        int leased = 0;
+        for (AtomicIntegerArray stripe : stripes) {
+            leased += stripe.get(PAD + ingredientId);
+        }
+        return leased;
+    }
+
+    /**
+     * @return number of times a lease went back to the shared counters for more
+     */
+    public long getTopUps() {
+        return topUps.sum();
+    }
+
+    /**
+     * @return number of times a lease was topped up from the lease of another outlet
+     */
+    public long getSteals() {
+        return steals.sum();
+    }
+
+    /**
+     * @return number of rations which had to gather the leases back to the shared counters
+     */
+    public long getReclaims() {
+        return reclaims.sum();
+    }
+
+    /**
+     * Method to take ownership of a stripe, the home stripe of the calling thread if it is free
+     * @return index of the owned stripe
+     */
+    private int acquire() {
+        int home = this.home.get();
+        while (true) {
+            for (int i = 0; i < stripes.length; i++) {
+                int index = (home + i) % stripes.length;
+                if (tryAcquire(index))
+                    return index;
+            }
+            //more threads than stripes, they take turns
+            Thread.yield();
+        }
+    }
+
+    private void acquireStripe(int index) {
+        while (!tryAcquire(index)) {
+            Thread.yield();
+        }
+    }
+
+    private boolean tryAcquire(int index) {
+        AtomicIntegerArray stripe = stripes[index];
+        return stripe.get(OWNER) == 0 && stripe.compareAndSet(OWNER, 0, 1);
+    }
+
+    private void release(int index) {
+        stripes[index].lazySet(OWNER, 0);
+    }
+}
@@ -0,0 +1,67 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to intern ingredient names into dense int ids
+ * Built by the MachineFactory at load time so that recipes and the inventory can work with primitive arrays
+ * indexed by ingredient instead of looking up a map per ingredient
+ */
+public class IngredientRegistry {
+
+    public static final int UNKNOWN = -1;
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private volatile int size;
+
+    public IngredientRegistry() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[16];
+    }
+
+    /**
+     * Method to register the given ingredient if it is seen for the first time
+     * @param ingredient
+     * @return id of the ingredient
+     */
+    public int register(String ingredient) {
+        Integer id = ids.get(ingredient);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = ids.get(ingredient);
+            if (id != null)
+                return id;
+            //capacity doubles so that registering many names stays linear
+            int newId = size;
+            if (newId == names.length)
+                names = Arrays.copyOf(names, newId * 2);
+            names[newId] = ingredient;
+            ids.put(ingredient, newId);
+            size = newId + 1;
+            return newId;
+        }
+    }
+
+    /**
+     * @param ingredient
+     * @return id of the given ingredient or UNKNOWN if it was never registered
+     */
+    public int idOf(String ingredient) {
+        Integer id = ids.get(ingredient);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return number of ingredients registered so far, ids are always in the range [0, size)
+     */
+    public int size() {
+        return size;
+    }
+}
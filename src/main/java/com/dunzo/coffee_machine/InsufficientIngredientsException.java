@@ -4,12 +4,15 @@ import java.util.List;
 
 /**
  * Exception to be thrown when the required quantities of ingredients are not present
+ * Only thrown by the Map based APIs, the outlets work with RationResult instead. The stack trace is not filled in
+ * since running out of an ingredient is an expected outcome.
  */
 public class InsufficientIngredientsException extends Throwable {
 
     private final List<String> insufficientIngredients; //list of ingredients that were not present in the desired quantity
 
     public InsufficientIngredientsException(List<String> insufficientIngredients) {
+        super("Insufficient ingredients: " + insufficientIngredients, null, false, false);
         this.insufficientIngredients = insufficientIngredients;
     }
 
@@ -0,0 +1,262 @@
+package com.dunzo.coffee_machine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Ingredient counters of a machine kept in a memory-mapped file, shared by every process which maps it
+ * <p>
+ * Layout of the file, in the native byte order of the host:
+ * <pre>
+ * header     64 bytes:  magic (long), version (int), capacity (int), number of ingredients (int)
+ * directory  capacity x 64 bytes: length of the name (int) followed by the name in UTF-8, at most 60 bytes
+ * counters   capacity x 64 bytes: stock (long) and refill pack (long) of the ingredient
+ * </pre>
+ * The counters of an ingredient sit on a cache line of their own and are only ever changed with atomic operations on
+ * the mapped memory, see MappedMemory, so processes ration and refill concurrently without any lock. Ingredients are
+ * matched by name, as every process has its own IngredientRegistry: the ids of a process are mapped to the slots of
+ * the directory when the file is opened or when the process registers a new ingredient. Changes to the directory are
+ * serialized by a lock on the file, across processes, and by the monitor of the InventoryFile within one.
+ */
+final class InventoryFile implements AutoCloseable {
+
+    static final long MAGIC = 0x444B4D494E563031L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 64;
+    static final int MAX_NAME_LENGTH = SLOT_SIZE - 4;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    static final int STOCK = 0;
+    static final int REFILL_PACK = 8;
+    private static final int UNMAPPED = -1;
+
+    private final IngredientRegistry ingredientRegistry;
+    private final FileChannel channel;
+    //kept to keep the mapping alive, the counters are accessed through its address
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+    //slot of every ingredient id of the registry
+    private volatile int[] slots;
+
+    private InventoryFile(IngredientRegistry ingredientRegistry, FileChannel channel, MappedByteBuffer buffer,
+                          int capacity) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.address = MappedMemory.addressOf(buffer);
+        this.capacity = capacity;
+        this.slots = new int[0];
+    }
+
+    /**
+     * Method to map the file, formatting it if it is new
+     * Every ingredient of the registry gets a slot, the ones which are new to the file start with the given quantities
+     * @param path
+     * @param ingredientRegistry
+     * @param capacity           maximum number of ingredients of a new file, an existing file keeps its own
+     * @param itemsQuantity      initial stock of every ingredient indexed by ingredient id
+     * @param refillPack         initial refill pack of every ingredient indexed by ingredient id
+     * @return
+     * @throws IOException
+     */
+    static InventoryFile open(Path path, IngredientRegistry ingredientRegistry, int capacity, int[] itemsQuantity,
+                              int[] refillPack) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.lock();
+            if (channel.size() >= HEADER_SIZE) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                header.order(ByteOrder.nativeOrder());
+                if (header.getLong(0) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+                    throw new IOException(path + " is not an inventory file of this version");
+                capacity = header.getInt(CAPACITY_OFFSET);
+            } else if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity of the inventory file must be positive!");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(capacity));
+            buffer.order(ByteOrder.nativeOrder());
+            if (buffer.getLong(0) != MAGIC) {
+                //new file, zeroed by the mapping which extended it
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putLong(0, MAGIC);
+            }
+            InventoryFile inventoryFile = new InventoryFile(ingredientRegistry, channel, buffer, capacity);
+            inventoryFile.mapRegistry(itemsQuantity, refillPack);
+            fileLock.release();
+            return inventoryFile;
+        } catch (IOException | RuntimeException e) {
+            //closing the channel releases the lock too
+            channel.close();
+            throw e;
+        }
+    }
+
+    static long size(int capacity) {
+        return HEADER_SIZE + 2L * capacity * SLOT_SIZE;
+    }
+
+    /**
+     * Method to map every ingredient id of the registry to its slot, called with the file locked
+     */
+    private void mapRegistry(int[] itemsQuantity, int[] refillPack) {
+        int[] slots = new int[ingredientRegistry.size()];
+        for (int id = 0; id < slots.length; id++) {
+            int slot = findSlot(ingredientRegistry.nameOf(id));
+            if (slot == UNMAPPED) {
+                slot = addSlot(ingredientRegistry.nameOf(id));
+                MappedMemory.putLongVolatile(counterAddress(slot, STOCK), id < itemsQuantity.length ? itemsQuantity[id] : 0);
+                MappedMemory.putLongVolatile(counterAddress(slot, REFILL_PACK), id < refillPack.length ? refillPack[id] : 0);
+            }
+            slots[id] = slot;
+        }
+        this.slots = slots;
+    }
+
+    /**
+     * Method to map the ingredient ids registered since the file was opened, found in the directory if another
+     * process added them already and added with no quantity otherwise
+     * @param ingredientId
+     * @return slot of the ingredient
+     */
+    private int mapSlot(int ingredientId) {
+        int[] slots = this.slots;
+        if (ingredientId < slots.length)
+            return slots[ingredientId];
+        return mapNewSlots(ingredientId);
+    }
+
+    private synchronized int mapNewSlots(int ingredientId) {
+        int[] slots = this.slots;
+        if (ingredientId < slots.length)
+            return slots[ingredientId];
+        FileLock fileLock;
+        try {
+            fileLock = channel.lock(0, HEADER_SIZE, false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to lock the inventory file", e);
+        }
+        try {
+            int length = Math.max(ingredientId + 1, ingredientRegistry.size());
+            int[] grown = Arrays.copyOf(slots, length);
+            for (int id = slots.length; id < length; id++) {
+                int slot = findSlot(ingredientRegistry.nameOf(id));
+                grown[id] = slot == UNMAPPED ? addSlot(ingredientRegistry.nameOf(id)) : slot;
+            }
+            this.slots = grown;
+            return grown[ingredientId];
+        } finally {
+            release(fileLock);
+        }
+    }
+
+    private static void release(FileLock fileLock) {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to unlock the inventory file", e);
+        }
+    }
+
+    private int findSlot(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int count = buffer.getInt(COUNT_OFFSET);
+        for (int slot = 0; slot < count; slot++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            if (buffer.getInt(offset) != bytes.length)
+                continue;
+            boolean matches = true;
+            for (int i = 0; i < bytes.length && matches; i++) {
+                matches = buffer.get(offset + 4 + i) == bytes[i];
+            }
+            if (matches)
+                return slot;
+        }
+        return UNMAPPED;
+    }
+
+    private int addSlot(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_LENGTH)
+            throw new IllegalArgumentException("Ingredient name " + name + " is too long for the inventory file");
+        int slot = buffer.getInt(COUNT_OFFSET);
+        if (slot >= capacity)
+            throw new IllegalStateException("Inventory file is full, it holds at most " + capacity + " ingredients");
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 4 + i, bytes[i]);
+        }
+        buffer.putInt(offset, bytes.length);
+        buffer.putInt(COUNT_OFFSET, slot + 1);
+        return slot;
+    }
+
+    private long counterAddress(int slot, int column) {
+        return address + HEADER_SIZE + (long) capacity * SLOT_SIZE + (long) slot * SLOT_SIZE + column;
+    }
+
+    /**
+     * @param column STOCK or REFILL_PACK
+     * @return counters of the given column, backed by the file
+     */
+    IngredientCounters counters(int column) {
+        return new Column(column);
+    }
+
+    /**
+     * Method to flush the counters to the file, they are visible to the other processes without it
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Counters of one column of the file
+     */
+    private final class Column implements IngredientCounters {
+
+        private final int column;
+
+        private Column(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public int length() {
+            return slots.length;
+        }
+
+        @Override
+        public int get(int ingredientId) {
+            int[] slots = InventoryFile.this.slots;
+            return ingredientId < slots.length ?
+                    (int) MappedMemory.getLongVolatile(counterAddress(slots[ingredientId], column)) : 0;
+        }
+
+        @Override
+        public boolean compareAndSet(int ingredientId, int expectedQuantity, int quantity) {
+            return MappedMemory.compareAndSetLong(counterAddress(slots[ingredientId], column), expectedQuantity, quantity);
+        }
+
+        @Override
+        public int addAndGet(int ingredientId, int quantity) {
+            long counterAddress = counterAddress(mapSlot(ingredientId), column);
+            return (int) (MappedMemory.getAndAddLong(counterAddress, quantity) + quantity);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Listener to the changes made to an inventory, see AvailabilityIndex
+ * Called by the InventoryManager on the thread which made the change, after it has been applied to the counters
+ */
+public interface InventoryListener {
+
+    /**
+     * listener which ignores every change
+     */
+    InventoryListener NONE = new InventoryListener() {
+        @Override
+        public void rationed(Recipe recipe) {
+        }
+
+        @Override
+        public void refilled(int ingredientId) {
+        }
+    };
+
+    /**
+     * the ingredients of the recipe were deducted from the inventory
+     */
+    void rationed(Recipe recipe);
+
+    /**
+     * some quantity of the ingredient was added to the inventory
+     */
+    void refilled(int ingredientId);
+}
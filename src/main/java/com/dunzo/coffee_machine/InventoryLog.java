@@ -0,0 +1,42 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Log of the changes made to an inventory, used to make the inventory durable
+ * Called by the InventoryManager after a ration has been applied to the counters, so the log never holds back the
+ * compare-and-set of the ration itself, and before a refill is, so no ration depending on it is logged ahead of it
+ */
+public interface InventoryLog {
+
+    /**
+     * log which records nothing
+     */
+    InventoryLog NONE = new InventoryLog() {
+        @Override
+        public void rationed(Recipe recipe) {
+        }
+
+        @Override
+        public void refilled(int ingredientId, int quantity, boolean fromRefillPack) {
+        }
+
+        @Override
+        public void sync() {
+        }
+    };
+
+    /**
+     * the ingredients of the recipe were deducted from the inventory
+     */
+    void rationed(Recipe recipe);
+
+    /**
+     * the given quantity was added to the inventory, taken from the refill pack of the machine or brought in from
+     * elsewhere
+     */
+    void refilled(int ingredientId, int quantity, boolean fromRefillPack);
+
+    /**
+     * Method to wait until every change logged so far by any thread is durable
+     */
+    void sync();
+}
@@ -1,90 +1,302 @@
 package com.dunzo.coffee_machine;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class to manage the inventory
  * Used by the CoffeeMachine to ration ingredients required for the beverages
+ * <p>
+ * Quantities are kept in atomic counters indexed by the ingredient id of the IngredientRegistry, so rationing never
+ * takes a global lock. The counters are on the heap unless the inventory is shared with other processes through a
+ * mapped file, see SharedInventory. A ration is an all-or-nothing reservation: every ingredient is deducted with a
+ * compare-and-set and, if any of them is short, the ones already deducted are rolled back. Beverages using unrelated
+ * ingredients never touch the same counter and hence are prepared in parallel.
+ * <p>
+ * As there is no lock to wait for, contention shows up as compare-and-set retries and rolled back rations, which are
+ * counted on the contended path only.
+ * <p>
+ * Every change is reported to the inventory log, see DurableInventory, and to the inventory listeners, see
+ * AvailabilityIndex. Quantities added to the inventory are logged before they can be rationed, quantities deducted
+ * once the ration succeeded, so any prefix of the log replays to a stock which is never below what was served.
+ * <p>
+ * In the striped mode part of every ingredient is leased to the outlets, see IngredientLeases. The leased quantities
+ * are no longer in the shared counters but are still counted in the quantities reported by the inventory.
  */
 public class InventoryManager {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(InventoryManager.class);
-    private final Map<String, Integer> itemsQuantityCache;
+    private final IngredientRegistry ingredientRegistry;
+    private final IngredientCounters itemsQuantity;
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private volatile InventoryLog inventoryLog = InventoryLog.NONE;
+    //copied on write, so notifying the listeners on the ration path neither locks nor allocates
+    private volatile InventoryListener[] inventoryListeners = new InventoryListener[0];
+    private volatile IngredientLeases ingredientLeases;
 
     public InventoryManager(Map<String, Integer> itemsQuantity) {
-        this.itemsQuantityCache = itemsQuantity;
+        this(new IngredientRegistry(), itemsQuantity);
+    }
+
+    public InventoryManager(IngredientRegistry ingredientRegistry, Map<String, Integer> itemsQuantity) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.itemsQuantity = new AtomicIngredientCounters(ingredientRegistry, new int[0]);
+        itemsQuantity.forEach((ingredient, quantity) -> this.itemsQuantity.addAndGet(ingredientRegistry.register(ingredient), quantity));
     }
 
     /**
-     * Method to check if the required ingredients are present
-     * If the ingredients are present then the ingredients are used up and the remaining quantities are updated
+     * @param ingredientRegistry
+     * @param itemsQuantity initial quantity of every ingredient indexed by ingredient id
+     */
+    public InventoryManager(IngredientRegistry ingredientRegistry, int[] itemsQuantity) {
+        this(ingredientRegistry, new AtomicIngredientCounters(ingredientRegistry, itemsQuantity));
+    }
+
+    /**
+     * @param ingredientRegistry
+     * @param itemsQuantity counters holding the quantity of every ingredient
+     */
+    InventoryManager(IngredientRegistry ingredientRegistry, IngredientCounters itemsQuantity) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.itemsQuantity = itemsQuantity;
+    }
+
+    public IngredientRegistry getIngredientRegistry() {
+        return ingredientRegistry;
+    }
+
+    /**
+     * Method to report every change made to the inventory from now on to the given log
+     * @param inventoryLog
+     */
+    public void setInventoryLog(InventoryLog inventoryLog) {
+        this.inventoryLog = inventoryLog == null ? InventoryLog.NONE : inventoryLog;
+    }
+
+    /**
+     * Method to notify the given listener of every change made to the inventory from now on, along with the
+     * listeners added before it
+     * @param inventoryListener
+     */
+    public synchronized void addInventoryListener(InventoryListener inventoryListener) {
+        InventoryListener[] listeners = Arrays.copyOf(inventoryListeners, inventoryListeners.length + 1);
+        listeners[listeners.length - 1] = inventoryListener;
+        inventoryListeners = listeners;
+    }
+
+    /**
+     * Method to stop notifying the given listener, does nothing if it was not added
+     * @param inventoryListener
+     */
+    public synchronized void removeInventoryListener(InventoryListener inventoryListener) {
+        InventoryListener[] listeners = inventoryListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == inventoryListener) {
+                InventoryListener[] remaining = new InventoryListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                inventoryListeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method to stripe the inventory with the given leases, done once by the IngredientLeases themselves
+     * @param ingredientLeases
+     */
+    synchronized void setIngredientLeases(IngredientLeases ingredientLeases) {
+        if (this.ingredientLeases != null)
+            throw new IllegalStateException("Inventory is already leased to the outlets");
+        this.ingredientLeases = ingredientLeases;
+    }
+
+    /**
+     * Method to make room in the inventory for the ingredients of the recipe which were registered after it was
+     * created, e.g. by a new menu, they start with no stock
+     * @param recipe
+     */
+    public void registerIngredients(Recipe recipe) {
+        IngredientCounters counters = this.itemsQuantity;
+        for (int i = 0; i < recipe.size(); i++) {
+            if (recipe.ingredientIdAt(i) >= counters.length())
+                counters.addAndGet(recipe.ingredientIdAt(i), 0);
+        }
+    }
+
+    /**
+     * Method to wait until every change made to the inventory so far is durable, returns right away if the
+     * inventory has no log
+     */
+    public void awaitDurable() {
+        inventoryLog.sync();
+    }
+
+    /**
+     * Map based adapter over {@link #ration(Recipe)}
      * @param ingredientsRequired
      * @throws InsufficientIngredientsException
      */
     public void ration(Map<String, Integer> ingredientsRequired) throws InsufficientIngredientsException {
-        LOGGER.debug("Started rationing...");
+        ration(Recipe.compile(null, ingredientsRequired, ingredientRegistry));
+    }
+
+    /**
+     * Exception based adapter over {@link #tryRation(Recipe)}
+     * @param recipe
+     * @throws InsufficientIngredientsException
+     */
+    public void ration(Recipe recipe) throws InsufficientIngredientsException {
+        RationResult rationResult = tryRation(recipe);
+        if (!rationResult.isSuccess())
+            throw new InsufficientIngredientsException(rationResult.getInsufficientIngredients(ingredientRegistry));
+    }
 
+    /**
+     * Method to check if the required ingredients are present
+     * If the ingredients are present then the ingredients are used up and the remaining quantities are updated
+     * If any of the ingredients is not present in the required quantity then nothing is used up
+     * Does not allocate when the ration succeeds
+     * @param recipe
+     * @return RationResult.SUCCESS or the ingredients which were insufficient
+     */
+    public RationResult tryRation(Recipe recipe) {
+        IngredientCounters counters = this.itemsQuantity;
+        int size = recipe.size();
         /*
-        check if all the ingredients are present so that they can be used up
-        if not present then throw an exception
+        read-only pass first so that an order which is bound to fail never holds a temporary reservation
+        that could make a concurrent order fail spuriously
          */
-        LOGGER.debug("Checking if all items are present...");
-        checkAllItemsPresent(ingredientsRequired);
-        LOGGER.debug("All ingredients are present in sufficient quantity!");
+        for (int i = 0; i < size; i++) {
+            int id = recipe.ingredientIdAt(i);
+            if (id >= counters.length() || counters.get(id) < recipe.quantityAt(i))
+                return RationResult.insufficient(insufficientIngredients(recipe));
+        }
+        for (int i = 0; i < size; i++) {
+            if (!tryDeduct(counters, recipe.ingredientIdAt(i), recipe.quantityAt(i))) {
+                //lost a race to another outlet, roll back whatever was already deducted so that the ration is all-or-nothing
+                rollbacks.increment();
+                for (int j = 0; j < i; j++) {
+                    counters.addAndGet(recipe.ingredientIdAt(j), recipe.quantityAt(j));
+                }
+                return RationResult.insufficient(insufficientIngredients(recipe));
+            }
+        }
+        inventoryLog.rationed(recipe);
+        notifyRationed(recipe);
+        return RationResult.SUCCESS;
+    }
 
-        //ration the ingredients i.e. use up the ingredients and update the remaining quantities
-        updateQuantities(ingredientsRequired);
-        LOGGER.debug("Rationed ingredients!");
+    /**
+     * Method to deduct the aggregated quantities of a batch of rations, all or nothing
+     * Used by the BatchRationer, which reports the rations of the batch with {@link #rationed(Recipe)} on success
+     * @param ingredientIds
+     * @param quantities
+     * @param count number of ingredients to deduct
+     * @return true if every quantity was deducted, false if nothing was
+     */
+    boolean tryDeductAll(int[] ingredientIds, int[] quantities, int count) {
+        IngredientCounters counters = this.itemsQuantity;
+        for (int i = 0; i < count; i++) {
+            if (ingredientIds[i] >= counters.length() || !tryDeduct(counters, ingredientIds[i], quantities[i])) {
+                rollbacks.increment();
+                for (int j = 0; j < i; j++) {
+                    counters.addAndGet(ingredientIds[j], quantities[j]);
+                }
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Method to update the ingredients quantities after using to make any beverage
-     * @param ingredientsRequired
+     * Method to report a ration made through {@link #tryDeductAll(int[], int[], int)} or served from a lease to the
+     * inventory log
+     * @param recipe
      */
-    private void updateQuantities(Map<String, Integer> ingredientsRequired) {
-        for (Map.Entry<String, Integer> entry : ingredientsRequired.entrySet()) {
-            String ingredient = entry.getKey();
-            LOGGER.debug("updating for {}", ingredient);
-            Integer quantityRequired = entry.getValue();
-            itemsQuantityCache.compute(ingredient, (item, availableQuantity) -> {
-                LOGGER.debug("Available quantity = {}", availableQuantity);
-                LOGGER.debug("Required quantity = {}", quantityRequired);
-                int remainingQuantity = Math.subtractExact(availableQuantity, quantityRequired);
-                LOGGER.debug("Remaining quantity = {}", remainingQuantity);
-                return remainingQuantity;
-            });
+    void rationed(Recipe recipe) {
+        inventoryLog.rationed(recipe);
+        notifyRationed(recipe);
+    }
+
+    private void notifyRationed(Recipe recipe) {
+        for (InventoryListener listener : inventoryListeners) {
+            listener.rationed(recipe);
+        }
+    }
+
+    private void notifyRefilled(int ingredientId) {
+        for (InventoryListener listener : inventoryListeners) {
+            listener.refilled(ingredientId);
         }
     }
 
     /**
-     * Method to check if all the required ingredients are present
-     * If not present then throw an exception with the list of all the missing ingredients
-     *
-     * @param ingredientsRequired
-     * @throws InsufficientIngredientsException
+     * Method to list the ingredients of the recipe which are not present in the required quantity
+     * Only used on the failure path
+     * @param recipe
+     * @return ids of the insufficient ingredients
      */
-    private void checkAllItemsPresent(Map<String, Integer> ingredientsRequired) throws InsufficientIngredientsException {
-        List<String> insufficientIngredients = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : ingredientsRequired.entrySet()) {
-            String ingredient = entry.getKey();
-            LOGGER.debug("Checking for {}", ingredient);
-            Integer quantityRequired = entry.getValue();
-            LOGGER.debug("Required quantity = {}", quantityRequired);
-            if (itemsQuantityCache.containsKey(ingredient) && itemsQuantityCache.get(ingredient) != null &&
-                    quantityRequired.compareTo(itemsQuantityCache.get(ingredient)) <= 0) {
-                LOGGER.debug("Available Quantity = {}", itemsQuantityCache.get(ingredient));
-            } else {
-                insufficientIngredients.add(ingredient);
+    private int[] insufficientIngredients(Recipe recipe) {
+        int[] insufficientIngredients = new int[recipe.size()];
+        int count = 0;
+        for (int i = 0; i < recipe.size(); i++) {
+            if (itemsQuantity.get(recipe.ingredientIdAt(i)) < recipe.quantityAt(i))
+                insufficientIngredients[count++] = recipe.ingredientIdAt(i);
+        }
+        if (count == 0) {
+            //the race was lost but the stock is back by now, report the whole recipe so that it is retried
+            for (int i = 0; i < recipe.size(); i++) {
+                insufficientIngredients[count++] = recipe.ingredientIdAt(i);
             }
         }
-        if (insufficientIngredients.size() > 0) {
-            throw new InsufficientIngredientsException(insufficientIngredients);
+        return Arrays.copyOf(insufficientIngredients, count);
+    }
+
+    /**
+     * Method to deduct the given quantity from the counter only if enough quantity is available
+     * @param counters
+     * @param ingredientId
+     * @param quantityRequired
+     * @return true if the quantity was deducted
+     */
+    private boolean tryDeduct(IngredientCounters counters, int ingredientId, int quantityRequired) {
+        while (true) {
+            int availableQuantity = counters.get(ingredientId);
+            if (availableQuantity < quantityRequired)
+                return false;
+            if (counters.compareAndSet(ingredientId, availableQuantity, availableQuantity - quantityRequired))
+                return true;
+            casRetries.increment();
+        }
+    }
+
+    /**
+     * @return number of times a deduction had to be retried because another outlet changed the counter first
+     */
+    public long getCasRetries() {
+        return casRetries.sum();
+    }
+
+    /**
+     * @return number of rations rolled back after losing a race for one of their ingredients
+     */
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    /**
+     * Method to get the quantity currently available of every registered ingredient
+     * @return ingredient name to available quantity, in the order of the ingredient ids
+     */
+    public Map<String, Integer> getQuantities() {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (int id = 0; id < ingredientRegistry.size(); id++) {
+            quantities.put(ingredientRegistry.nameOf(id), getQuantity(id));
         }
+        return quantities;
     }
 
     /**
@@ -93,7 +305,105 @@ public class InventoryManager {
      * @param quantity
      */
     public void refill(String ingredient, Integer quantity) {
-        itemsQuantityCache.computeIfPresent(ingredient, (item, availableQuantity) -> availableQuantity + quantity);
-        itemsQuantityCache.computeIfAbsent(ingredient, item -> quantity);
+        refill(ingredientRegistry.register(ingredient), quantity);
+    }
+
+    /**
+     * Replenish the cache for the given ingredient id with the given quantity
+     * @param ingredientId
+     * @param quantity
+     */
+    public void refill(int ingredientId, int quantity) {
+        //logged ahead of the change, a ration relying on the added quantity is then always logged after it
+        inventoryLog.refilled(ingredientId, quantity, false);
+        itemsQuantity.addAndGet(ingredientId, quantity);
+        notifyRefilled(ingredientId);
+    }
+
+    /**
+     * Method to add the given quantity taken from the refill pack of the machine
+     * @param ingredientId
+     * @param quantity
+     */
+    void refillFromPack(int ingredientId, int quantity) {
+        inventoryLog.refilled(ingredientId, quantity, true);
+        itemsQuantity.addAndGet(ingredientId, quantity);
+        notifyRefilled(ingredientId);
+    }
+
+    /**
+     * Method to tell the listeners that a quantity reserved from the refill pack went back to it unused
+     * @param ingredientId
+     */
+    void refillPackRestored(int ingredientId) {
+        notifyRefilled(ingredientId);
+    }
+
+    /**
+     * Method to take up to the given quantity of the ingredient from the shared counter into a lease
+     * The quantity stays in the inventory, so nothing is logged
+     * @param ingredientId
+     * @param quantity
+     * @return quantity actually leased, less than asked for if the shared counter is running out
+     */
+    int lease(int ingredientId, int quantity) {
+        if (ingredientId >= itemsQuantity.length())
+            return 0;
+        while (true) {
+            int availableQuantity = itemsQuantity.get(ingredientId);
+            int leased = Math.min(availableQuantity, quantity);
+            if (leased <= 0 || itemsQuantity.compareAndSet(ingredientId, availableQuantity, availableQuantity - leased))
+                return Math.max(leased, 0);
+            casRetries.increment();
+        }
+    }
+
+    /**
+     * Method to put back into the shared counter a quantity which was leased
+     * The leases tell the listeners with {@link #leaseSettled(int)} once the move is over
+     * @param ingredientId
+     * @param quantity
+     */
+    void returnLease(int ingredientId, int quantity) {
+        itemsQuantity.addAndGet(ingredientId, quantity);
+    }
+
+    /**
+     * Method to tell the listeners that a quantity moved between the shared counter and a lease
+     * Readers of the quantity may have caught it in transit
+     * @param ingredientId
+     */
+    void leaseSettled(int ingredientId) {
+        notifyRefilled(ingredientId);
+    }
+
+    /**
+     * Method to get the quantity of the ingredient in the shared counter, without the leased quantity
+     * @param ingredientId
+     * @return
+     */
+    int getSharedQuantity(int ingredientId) {
+        return itemsQuantity.get(ingredientId);
+    }
+
+    /**
+     * Method to get the quantity currently available for the given ingredient
+     * @param ingredient
+     * @return available quantity, 0 if the ingredient is unknown
+     */
+    public int getQuantity(String ingredient) {
+        int id = ingredientRegistry.idOf(ingredient);
+        return id == IngredientRegistry.UNKNOWN ? 0 : getQuantity(id);
+    }
+
+    /**
+     * Method to get the quantity currently available for the given ingredient id, leased quantities included, also
+     * while they move between the shared counter and a lease
+     * @param ingredientId
+     * @return
+     */
+    public int getQuantity(int ingredientId) {
+        IngredientLeases ingredientLeases = this.ingredientLeases;
+        return ingredientLeases == null ? itemsQuantity.get(ingredientId) : ingredientLeases.getTotalQuantity(ingredientId);
     }
 }
@@ -0,0 +1,115 @@
+package com.dunzo.coffee_machine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact image of the inventory and the refill pack as of a log sequence number of the WriteAheadLog
+ * <p>
+ * File layout, little endian: magic (int), version (int), lsn (long), ingredient count (int), followed by one entry
+ * per ingredient id: inventory quantity (int), refill pack quantity (int), name length (int), utf-8 name. The file is
+ * written through a memory mapping to a temporary file which then atomically replaces the previous snapshot, so a
+ * crash while snapshotting leaves the previous snapshot intact.
+ */
+class InventorySnapshot {
+
+    private static final int MAGIC = 0x434d5331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    private final long lsn;
+    private final String[] names;
+    private final int[] itemsQuantity;
+    private final int[] refillPack;
+
+    InventorySnapshot(long lsn, String[] names, int[] itemsQuantity, int[] refillPack) {
+        this.lsn = lsn;
+        this.names = names;
+        this.itemsQuantity = itemsQuantity;
+        this.refillPack = refillPack;
+    }
+
+    long getLsn() {
+        return lsn;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String nameAt(int index) {
+        return names[index];
+    }
+
+    int itemsQuantityAt(int index) {
+        return itemsQuantity[index];
+    }
+
+    int refillPackAt(int index) {
+        return refillPack[index];
+    }
+
+    /**
+     * Method to write the snapshot durably, replacing the one at the given path
+     * @param path
+     * @throws IOException
+     */
+    void write(Path path) throws IOException {
+        byte[][] encodedNames = new byte[names.length][];
+        long size = HEADER_SIZE;
+        for (int i = 0; i < names.length; i++) {
+            encodedNames[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += 12 + encodedNames[i].length;
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(lsn).putInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                buffer.putInt(itemsQuantity[i]).putInt(refillPack[i]).putInt(encodedNames[i].length).put(encodedNames[i]);
+            }
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param path
+     * @return the snapshot at the given path, null if there is none
+     * @throws IOException if the snapshot is corrupt
+     */
+    static InventorySnapshot read(Path path) throws IOException {
+        if (!Files.isRegularFile(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException(path + " is not an inventory snapshot");
+            long lsn = buffer.getLong();
+            int count = buffer.getInt();
+            String[] names = new String[count];
+            int[] itemsQuantity = new int[count];
+            int[] refillPack = new int[count];
+            for (int i = 0; i < count; i++) {
+                itemsQuantity[i] = buffer.getInt();
+                refillPack[i] = buffer.getInt();
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            return new InventorySnapshot(lsn, names, itemsQuantity, refillPack);
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is corrupt", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time summary of a LatencyHistogram, all latencies are in nanoseconds
+ */
+public class LatencySummary {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long max;
+
+    public LatencySummary(long count, double mean, long p50, long p90, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + count + ", p50=" + micros(p50) + "us, p90=" + micros(p90) + "us, p99=" + micros(p99)
+                + "us, max=" + micros(max) + "us}";
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,144 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tool to load test a coffee machine with a synthetic or a recorded order stream
+ * <p>
+ * The orders of the trace are submitted open loop: each one at the time it is meant to arrive, whether or not the
+ * machine has answered the previous ones. If the machine holds the generator up, e.g. with a blocking queue, the
+ * orders behind are submitted as soon as it lets go, and their latency still runs from the time they were meant to
+ * arrive, so a stall shows up in the percentiles instead of silently slowing the load down.
+ * <p>
+ * The input is a machine input file, or synthetic:beverages:ingredients:outlets for a SyntheticMenu of that scale.
+ * The generated trace is written to the trace file if one is given, and a trace recorded with the system property
+ * coffee_machine.trace, see Main, or written by an earlier run can be replayed as is.
+ * <p>
+ * usage: LoadGenerator input orders-per-second orders [poisson|uniform|bursty [zipf-exponent [seed [trace-file]]]]
+ * <br>
+ * usage: LoadGenerator input replay trace-file
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+    static final String SYNTHETIC_PREFIX = "synthetic:";
+    static final String REPLAY = "replay";
+    private static final int SYNTHETIC_MAX_INGREDIENTS_PER_BEVERAGE = 4;
+    private static final int SYNTHETIC_QUANTITY = 1_000_000_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3)
+            throw new IllegalArgumentException("usage: LoadGenerator input orders-per-second orders " +
+                    "[arrival-process [zipf-exponent [seed [trace-file]]]] | LoadGenerator input replay trace-file");
+        MachineDefinition machineDefinition = args[0].startsWith(SYNTHETIC_PREFIX) ?
+                synthetic(args[0]) : CoffeeMachineSimulation.load(args[0]);
+        OrderTrace orderTrace;
+        if (REPLAY.equals(args[1])) {
+            orderTrace = OrderTrace.read(Paths.get(args[2]));
+        } else {
+            LoadProfile loadProfile = LoadProfile.of(Double.parseDouble(args[1]), Long.parseLong(args[2]));
+            if (args.length > 3)
+                loadProfile = loadProfile.withArrivalProcess(ArrivalProcess.fromConfig(args[3]));
+            if (args.length > 4)
+                loadProfile = loadProfile.withZipfExponent(Double.parseDouble(args[4]));
+            if (args.length > 5)
+                loadProfile = loadProfile.withSeed(Long.parseLong(args[5]));
+            List<String> beverageNames = new ArrayList<>();
+            machineDefinition.getBeverages().forEach(beverage -> beverageNames.add(beverage.getBeverageName()));
+            orderTrace = OrderTrace.generate(beverageNames, loadProfile);
+            if (args.length > 6)
+                orderTrace.write(Paths.get(args[6]));
+        }
+        LOGGER.info("Running {} orders over {} ms...", orderTrace.size(),
+                TimeUnit.NANOSECONDS.toMillis(orderTrace.getDurationNanos()));
+        try (CoffeeMachine coffeeMachine = MachineFactory.create(machineDefinition, null)) {
+            LOGGER.info("Load test finished: {}", run(coffeeMachine, orderTrace));
+        }
+    }
+
+    /**
+     * Method to build the machine definition of a synthetic:beverages:ingredients:outlets input
+     * @param input
+     * @return
+     */
+    static MachineDefinition synthetic(String input) {
+        String[] scale = input.substring(SYNTHETIC_PREFIX.length()).split(":");
+        if (scale.length != 3)
+            throw new IllegalArgumentException("Synthetic input must be synthetic:beverages:ingredients:outlets!");
+        return SyntheticMenu.generate(Integer.parseInt(scale[0]), Integer.parseInt(scale[1]),
+                SYNTHETIC_MAX_INGREDIENTS_PER_BEVERAGE, SYNTHETIC_QUANTITY, 0, 0)
+                .toDefinition(Integer.parseInt(scale[2]));
+    }
+
+    /**
+     * Method to submit the orders of the trace to the machine at the times they arrive and wait for the answers
+     * The beverages are looked up on the menu of the machine when the run starts
+     * @param coffeeMachine
+     * @param orderTrace
+     * @return
+     * @throws InterruptedException
+     * @throws IllegalArgumentException if a beverage of the trace is not on the menu
+     */
+    public static LoadReport run(CoffeeMachine coffeeMachine, OrderTrace orderTrace) throws InterruptedException {
+        Menu menu = coffeeMachine.getMenu();
+        Recipe[] recipes = new Recipe[orderTrace.size()];
+        for (int i = 0; i < recipes.length; i++) {
+            recipes[i] = menu.getRecipe(orderTrace.beverageNameAt(i));
+            if (recipes[i] == null)
+                throw new IllegalArgumentException(orderTrace.beverageNameAt(i) + " is not on the menu!");
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        AtomicLongArray ordersByStatus = new AtomicLongArray(OrderStatus.values().length);
+        LongAdder errors = new LongAdder();
+        AtomicLong lastAnswerNanos = new AtomicLong();
+        CountDownLatch answered = new CountDownLatch(recipes.length);
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < recipes.length; i++) {
+            long intendedNanos = startNanos + orderTrace.arrivalNanosAt(i);
+            long delay;
+            while ((delay = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            long submittedNanos = System.nanoTime();
+            CompletableFuture<OutletResponse> response;
+            try {
+                response = coffeeMachine.submitOrder(recipes[i]);
+            } catch (IllegalStateException e) {
+                errors.increment();
+                answered.countDown();
+                continue;
+            }
+            response.whenComplete((outletResponse, throwable) -> {
+                long now = System.nanoTime();
+                //measured from the intended arrival so that a stalled submission is not omitted
+                latency.record(now - intendedNanos);
+                serviceTime.record(now - submittedNanos);
+                if (throwable == null)
+                    ordersByStatus.incrementAndGet(outletResponse.getStatus().ordinal());
+                else
+                    errors.increment();
+                lastAnswerNanos.accumulateAndGet(now, Math::max);
+                answered.countDown();
+            });
+        }
+        answered.await();
+        long endNanos = Math.max(lastAnswerNanos.get(), startNanos);
+        return new LoadReport(orderTrace.getDurationNanos(), endNanos - startNanos, ordersByStatus, errors.sum(),
+                latency.summarize(), serviceTime.summarize());
+    }
+}
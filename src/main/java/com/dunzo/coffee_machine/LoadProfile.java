@@ -0,0 +1,74 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Shape of the synthetic order stream of the load generator
+ * Orders arrive open loop at the given mean rate, whatever the machine does with them, and the beverages are picked
+ * with a Zipf popularity: the beverage of rank k in the menu is ordered in proportion to 1 / k^zipfExponent, so an
+ * exponent of 0 gives a uniform mix and an exponent around 1 a few best sellers and a long tail.
+ */
+public final class LoadProfile {
+
+    public static final double DEFAULT_ZIPF_EXPONENT = 1;
+
+    private final double ordersPerSecond;
+    private final long orders;
+    private final ArrivalProcess arrivalProcess;
+    private final double zipfExponent;
+    private final long seed;
+
+    private LoadProfile(double ordersPerSecond, long orders, ArrivalProcess arrivalProcess, double zipfExponent,
+                        long seed) {
+        if (ordersPerSecond <= 0 || orders < 0 || zipfExponent < 0)
+            throw new IllegalArgumentException("Order rate must be positive, orders and Zipf exponent can't be negative!");
+        this.ordersPerSecond = ordersPerSecond;
+        this.orders = orders;
+        this.arrivalProcess = arrivalProcess;
+        this.zipfExponent = zipfExponent;
+        this.seed = seed;
+    }
+
+    /**
+     * @param ordersPerSecond mean arrival rate of the orders
+     * @param orders          number of orders
+     * @return profile of Poisson arrivals with the default Zipf popularity
+     */
+    public static LoadProfile of(double ordersPerSecond, long orders) {
+        return new LoadProfile(ordersPerSecond, orders, ArrivalProcess.POISSON, DEFAULT_ZIPF_EXPONENT, 0);
+    }
+
+    public LoadProfile withArrivalProcess(ArrivalProcess arrivalProcess) {
+        return new LoadProfile(ordersPerSecond, orders, arrivalProcess, zipfExponent, seed);
+    }
+
+    public LoadProfile withZipfExponent(double zipfExponent) {
+        return new LoadProfile(ordersPerSecond, orders, arrivalProcess, zipfExponent, seed);
+    }
+
+    /**
+     * @param seed the same seed gives the same order stream
+     * @return
+     */
+    public LoadProfile withSeed(long seed) {
+        return new LoadProfile(ordersPerSecond, orders, arrivalProcess, zipfExponent, seed);
+    }
+
+    public double getOrdersPerSecond() {
+        return ordersPerSecond;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public ArrivalProcess getArrivalProcess() {
+        return arrivalProcess;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
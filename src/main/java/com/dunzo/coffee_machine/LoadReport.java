@@ -0,0 +1,106 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Results of a load generator run
+ * The latency of an order runs from the time it was meant to arrive, so it includes any delay in submitting it while
+ * the machine held up the generator. The service time runs from the time it was actually submitted, the gap between
+ * the two is the error a closed loop measurement would have made.
+ */
+public class LoadReport {
+
+    private final long intendedNanos;
+    private final long elapsedNanos;
+    private final long[] ordersByStatus;
+    private final long errors;
+    private final LatencySummary latency;
+    private final LatencySummary serviceTime;
+
+    LoadReport(long intendedNanos, long elapsedNanos, AtomicLongArray ordersByStatus, long errors,
+               LatencySummary latency, LatencySummary serviceTime) {
+        this.intendedNanos = intendedNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.ordersByStatus = new long[ordersByStatus.length()];
+        for (int i = 0; i < this.ordersByStatus.length; i++) {
+            this.ordersByStatus[i] = ordersByStatus.get(i);
+        }
+        this.errors = errors;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    /**
+     * @return time from the start of the run until the last order of the trace was meant to arrive
+     */
+    public long getIntendedNanos() {
+        return intendedNanos;
+    }
+
+    /**
+     * @return time from the start of the run until the last order was answered
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getOrders(OrderStatus status) {
+        return ordersByStatus[status.ordinal()];
+    }
+
+    /**
+     * @return number of orders answered by the machine, whatever their status
+     */
+    public long getAnsweredOrders() {
+        long total = 0;
+        for (long orders : ordersByStatus) {
+            total += orders;
+        }
+        return total;
+    }
+
+    /**
+     * @return number of orders which were not answered, e.g. because the machine was closed
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return orders answered per second of the run
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getAnsweredOrders() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return latency of the orders from the time they were meant to arrive
+     */
+    public LatencySummary getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return latency of the orders from the time they were submitted
+     */
+    public LatencySummary getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder orders = new StringBuilder();
+        for (OrderStatus status : OrderStatus.values()) {
+            orders.append(status).append('=').append(getOrders(status)).append(", ");
+        }
+        return "LoadReport{" +
+                "elapsed=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms" +
+                ", intended=" + TimeUnit.NANOSECONDS.toMillis(intendedNanos) + "ms" +
+                ", throughput=" + String.format("%.1f", getThroughput()) + "/s" +
+                ", " + orders + "errors=" + errors +
+                ", latency=" + latency +
+                ", serviceTime=" + serviceTime +
+                '}';
+    }
+}
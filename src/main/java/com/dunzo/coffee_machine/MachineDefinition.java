@@ -0,0 +1,85 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything needed to build a coffee machine, as read from a single machine input
+ * Ingredient quantities are kept as vectors indexed by the ingredient id of the registry and the beverages are
+ * already compiled, so building the machine doesn't go through any intermediate map
+ */
+public class MachineDefinition {
+
+    private final IngredientRegistry ingredientRegistry;
+    private final OutletConfig outletConfig;
+    private final int[] itemsQuantity;
+    private final int[] refillPack;
+    private final List<Recipe> beverages;
+    private final SimulationConfig simulationConfig;
+    private final ReplenishmentConfig replenishmentConfig;
+
+    public MachineDefinition(IngredientRegistry ingredientRegistry, OutletConfig outletConfig, int[] itemsQuantity,
+                             int[] refillPack, List<Recipe> beverages) {
+        this(ingredientRegistry, outletConfig, itemsQuantity, refillPack, beverages, SimulationConfig.defaults());
+    }
+
+    public MachineDefinition(IngredientRegistry ingredientRegistry, OutletConfig outletConfig, int[] itemsQuantity,
+                             int[] refillPack, List<Recipe> beverages, SimulationConfig simulationConfig) {
+        this(ingredientRegistry, outletConfig, itemsQuantity, refillPack, beverages, simulationConfig, null);
+    }
+
+    /**
+     * @param replenishmentConfig configuration of the predictive replenishment, null to refill only on demand
+     */
+    public MachineDefinition(IngredientRegistry ingredientRegistry, OutletConfig outletConfig, int[] itemsQuantity,
+                             int[] refillPack, List<Recipe> beverages, SimulationConfig simulationConfig,
+                             ReplenishmentConfig replenishmentConfig) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.outletConfig = outletConfig;
+        this.itemsQuantity = itemsQuantity;
+        this.refillPack = refillPack;
+        this.beverages = Collections.unmodifiableList(beverages);
+        this.simulationConfig = simulationConfig;
+        this.replenishmentConfig = replenishmentConfig;
+    }
+
+    public IngredientRegistry getIngredientRegistry() {
+        return ingredientRegistry;
+    }
+
+    public OutletConfig getOutletConfig() {
+        return outletConfig;
+    }
+
+    /**
+     * @return initial quantity of every ingredient indexed by ingredient id
+     */
+    public int[] getItemsQuantity() {
+        return itemsQuantity.clone();
+    }
+
+    /**
+     * @return refill pack quantity of every ingredient indexed by ingredient id
+     */
+    public int[] getRefillPack() {
+        return refillPack.clone();
+    }
+
+    public List<Recipe> getBeverages() {
+        return beverages;
+    }
+
+    /**
+     * @return configuration of the discrete-event simulation of the machine, the defaults if the input has none
+     */
+    public SimulationConfig getSimulationConfig() {
+        return simulationConfig;
+    }
+
+    /**
+     * @return configuration of the predictive replenishment, null if the refill pack is used only on demand
+     */
+    public ReplenishmentConfig getReplenishmentConfig() {
+        return replenishmentConfig;
+    }
+}
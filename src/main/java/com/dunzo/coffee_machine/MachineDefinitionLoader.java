@@ -0,0 +1,437 @@
+package com.dunzo.coffee_machine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to load machine definitions from their json input in a single streaming pass
+ * <p>
+ * The input is read token by token with a JsonParser: ingredient names are interned into the registry as they are
+ * seen, quantities go straight into id indexed vectors and every beverage is compiled into a Recipe as soon as its
+ * closing brace is read. No tree or intermediate map of the document is ever built, so very large menus load in time
+ * and memory linear in the size of the input. The sections may appear in any order.
+ */
+public class MachineDefinitionLoader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Method to load a single machine input from the filesystem
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MachineDefinition load(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return load(inputStream);
+        }
+    }
+
+    /**
+     * Method to load a single machine input from the given stream, the stream is not closed
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public static MachineDefinition load(InputStream inputStream) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return load(parser);
+        }
+    }
+
+    /**
+     * Method to load a single machine input from an already parsed tree
+     * @param input
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    public static MachineDefinition load(JsonNode input, ObjectMapper objectMapper) throws IOException {
+        try (JsonParser parser = objectMapper.treeAsTokens(input)) {
+            return load(parser);
+        }
+    }
+
+    /**
+     * Method to load a single machine input, the parser must be positioned before the root object
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    public static MachineDefinition load(JsonParser parser) throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+        MachineDefinition machineDefinition = readInput(parser);
+        if (machineDefinition == null)
+            throw new JsonParseException(parser, "machine is missing from the input!");
+        return machineDefinition;
+    }
+
+    /**
+     * Method to load the beverages of a machine input from the filesystem, e.g. to reload the menu of a running machine
+     * Only the beverages section of the machine is read, ingredients new to the registry are registered
+     * @param path
+     * @param ingredientRegistry registry of the machine the beverages are compiled for
+     * @return
+     * @throws IOException
+     */
+    public static List<Recipe> loadBeverages(Path path, IngredientRegistry ingredientRegistry) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return loadBeverages(inputStream, ingredientRegistry);
+        }
+    }
+
+    /**
+     * Method to load the beverages of a machine input from the given stream, the stream is not closed
+     * @param inputStream
+     * @param ingredientRegistry registry of the machine the beverages are compiled for
+     * @return
+     * @throws IOException
+     */
+    public static List<Recipe> loadBeverages(InputStream inputStream, IngredientRegistry ingredientRegistry)
+            throws IOException {
+        List<Recipe> beverages = new ArrayList<>();
+        boolean machineFound = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!ApplicationConstants.MACHINE.equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(token, JsonToken.START_OBJECT, parser);
+                machineFound = true;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean isBeverages = ApplicationConstants.BEVERAGES.equals(parser.getCurrentName());
+                    token = parser.nextToken();
+                    if (isBeverages) {
+                        expect(token, JsonToken.START_OBJECT, parser);
+                        readBeverages(parser, ingredientRegistry, beverages);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            if (!machineFound)
+                throw new JsonParseException(parser, "machine is missing from the input!");
+        }
+        return beverages;
+    }
+
+    /**
+     * Method to load every machine of a fleet input, see FleetRunner for the schema
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public static List<MachineDefinition> loadFleet(InputStream inputStream) throws IOException {
+        List<MachineDefinition> machineDefinitions = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!ApplicationConstants.FLEET.equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(token, JsonToken.START_ARRAY, parser);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    expect(parser.currentToken(), JsonToken.START_OBJECT, parser);
+                    MachineDefinition machineDefinition = readInput(parser);
+                    if (machineDefinition == null)
+                        throw new JsonParseException(parser, "machine is missing from a fleet input!");
+                    machineDefinitions.add(machineDefinition);
+                }
+            }
+        }
+        return machineDefinitions;
+    }
+
+    /**
+     * reads the fields of the root object of a single machine input, the opening brace is already consumed
+     */
+    private static MachineDefinition readInput(JsonParser parser) throws IOException {
+        MachineDefinition machineDefinition = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (ApplicationConstants.MACHINE.equals(field)) {
+                expect(token, JsonToken.START_OBJECT, parser);
+                machineDefinition = readMachine(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return machineDefinition;
+    }
+
+    private static MachineDefinition readMachine(JsonParser parser) throws IOException {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        OutletConfig outletConfig = null;
+        IntVector itemsQuantity = new IntVector();
+        IntVector refillPack = new IntVector();
+        List<Recipe> beverages = new ArrayList<>();
+        SimulationConfig simulationConfig = SimulationConfig.defaults();
+        ReplenishmentConfig replenishmentConfig = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case ApplicationConstants.SIMULATION:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    simulationConfig = readSimulationConfig(parser);
+                    break;
+                case ApplicationConstants.REPLENISHMENT:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    replenishmentConfig = readReplenishmentConfig(parser);
+                    break;
+                case ApplicationConstants.OUTLETS:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    outletConfig = readOutletConfig(parser);
+                    break;
+                case ApplicationConstants.TOTAL_ITEMS_QUANTITY:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    readQuantities(parser, ingredientRegistry, itemsQuantity);
+                    break;
+                case ApplicationConstants.REFILL_PACK:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    readQuantities(parser, ingredientRegistry, refillPack);
+                    break;
+                case ApplicationConstants.BEVERAGES:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    readBeverages(parser, ingredientRegistry, beverages);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (outletConfig == null)
+            throw new JsonParseException(parser, "outlets are missing from the machine!");
+        return new MachineDefinition(ingredientRegistry, outletConfig, itemsQuantity.toArray(ingredientRegistry.size()),
+                refillPack.toArray(ingredientRegistry.size()), beverages, simulationConfig,
+                replenishmentConfig);
+    }
+
+    /**
+     * Method to read the outlets section, the order queue is unbounded unless queue_capacity is given
+     * and the outlets are platform threads unless execution_mode says otherwise, every order is rationed on its own
+     * unless ration_batch_size is given, the orders are queued in the order of submission unless scheduling_policy
+     * says otherwise, the outlets share the inventory unless striped_inventory is true and serve the orders in the
+     * order they were queued unless priority_aging_ms is given
+     */
+    private static OutletConfig readOutletConfig(JsonParser parser) throws IOException {
+        int count = 0;
+        Integer queueCapacity = null;
+        OverflowPolicy overflowPolicy = null;
+        ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        int rationBatchSize = 0;
+        long rationBatchWindowMicros = 0;
+        SchedulingPolicy schedulingPolicy = SchedulingPolicy.FIFO;
+        boolean stripedInventory = false;
+        long priorityAgingMillis = OutletConfig.FIFO_DISPATCH;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case ApplicationConstants.COUNT_N:
+                    count = parser.getIntValue();
+                    break;
+                case ApplicationConstants.QUEUE_CAPACITY:
+                    queueCapacity = parser.getIntValue();
+                    break;
+                case ApplicationConstants.OVERFLOW_POLICY:
+                    overflowPolicy = OverflowPolicy.fromConfig(parser.getText());
+                    break;
+                case ApplicationConstants.EXECUTION_MODE:
+                    executionMode = ExecutionMode.fromConfig(parser.getText());
+                    break;
+                case ApplicationConstants.RATION_BATCH_SIZE:
+                    rationBatchSize = parser.getIntValue();
+                    break;
+                case ApplicationConstants.RATION_BATCH_WINDOW_US:
+                    rationBatchWindowMicros = parser.getLongValue();
+                    break;
+                case ApplicationConstants.SCHEDULING_POLICY:
+                    schedulingPolicy = SchedulingPolicy.fromConfig(parser.getText());
+                    break;
+                case ApplicationConstants.STRIPED_INVENTORY:
+                    stripedInventory = parser.getBooleanValue();
+                    break;
+                case ApplicationConstants.PRIORITY_AGING_MS:
+                    priorityAgingMillis = parser.getLongValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (count <= 0)
+            throw new JsonParseException(parser, "count_n of the outlets must be a positive number!");
+        if (overflowPolicy != null && queueCapacity == null)
+            throw new JsonParseException(parser, "overflow_policy of the outlets needs a queue_capacity!");
+        OutletConfig outletConfig = OutletConfig.of(count).withExecutionMode(executionMode)
+                .withRationBatching(rationBatchSize, TimeUnit.MICROSECONDS.toNanos(rationBatchWindowMicros))
+                .withSchedulingPolicy(schedulingPolicy).withStripedInventory(stripedInventory)
+                .withPriorityDispatch(TimeUnit.MILLISECONDS.toNanos(priorityAgingMillis));
+        return queueCapacity == null ? outletConfig : outletConfig.withOrderQueue(queueCapacity,
+                overflowPolicy == null ? OverflowPolicy.REJECT : overflowPolicy);
+    }
+
+    /**
+     * Method to read the simulation section, every field is optional and brew times are in seconds
+     */
+    private static SimulationConfig readSimulationConfig(JsonParser parser) throws IOException {
+        long orders = SimulationConfig.DEFAULT_ORDERS;
+        ArrivalProcess arrivalProcess = ArrivalProcess.POISSON;
+        double arrivalsPerHour = SimulationConfig.DEFAULT_ARRIVALS_PER_HOUR;
+        long seed = 0;
+        long defaultBrewNanos = SimulationConfig.DEFAULT_BREW_NANOS;
+        Map<String, Long> brewNanos = new HashMap<>();
+        Map<String, Integer> mix = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case ApplicationConstants.ORDERS:
+                    orders = parser.getLongValue();
+                    break;
+                case ApplicationConstants.ARRIVAL_PROCESS:
+                    arrivalProcess = ArrivalProcess.fromConfig(parser.getText());
+                    break;
+                case ApplicationConstants.ARRIVALS_PER_HOUR:
+                    arrivalsPerHour = parser.getDoubleValue();
+                    break;
+                case ApplicationConstants.SEED:
+                    seed = parser.getLongValue();
+                    break;
+                case ApplicationConstants.DEFAULT_BREW_TIME_S:
+                    defaultBrewNanos = secondsToNanos(parser.getDoubleValue());
+                    break;
+                case ApplicationConstants.BREW_TIME_S:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String beverageName = parser.getCurrentName();
+                        parser.nextToken();
+                        brewNanos.put(beverageName, secondsToNanos(parser.getDoubleValue()));
+                    }
+                    break;
+                case ApplicationConstants.MIX:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String beverageName = parser.getCurrentName();
+                        parser.nextToken();
+                        mix.put(beverageName, parser.getIntValue());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new SimulationConfig(orders, arrivalProcess, arrivalsPerHour, seed, defaultBrewNanos, brewNanos, mix);
+    }
+
+    /**
+     * Method to read the replenishment section, every field is optional
+     */
+    private static ReplenishmentConfig readReplenishmentConfig(JsonParser parser) throws IOException {
+        long intervalNanos = ReplenishmentConfig.DEFAULT_INTERVAL_NANOS;
+        long horizonNanos = ReplenishmentConfig.DEFAULT_HORIZON_NANOS;
+        double smoothing = ReplenishmentConfig.DEFAULT_SMOOTHING;
+        Map<String, Integer> lowWaterMarks = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case ApplicationConstants.INTERVAL_MS:
+                    intervalNanos = TimeUnit.MILLISECONDS.toNanos(parser.getLongValue());
+                    break;
+                case ApplicationConstants.HORIZON_MS:
+                    horizonNanos = TimeUnit.MILLISECONDS.toNanos(parser.getLongValue());
+                    break;
+                case ApplicationConstants.SMOOTHING:
+                    smoothing = parser.getDoubleValue();
+                    break;
+                case ApplicationConstants.LOW_WATER_MARKS:
+                    expect(token, JsonToken.START_OBJECT, parser);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String ingredient = parser.getCurrentName();
+                        parser.nextToken();
+                        lowWaterMarks.put(ingredient, parser.getIntValue());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new ReplenishmentConfig(intervalNanos, horizonNanos, smoothing, lowWaterMarks);
+    }
+
+    private static long secondsToNanos(double seconds) {
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static void readQuantities(JsonParser parser, IngredientRegistry ingredientRegistry, IntVector quantities) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            int ingredientId = ingredientRegistry.register(parser.getCurrentName());
+            parser.nextToken();
+            quantities.set(ingredientId, parser.getIntValue());
+        }
+    }
+
+    private static void readBeverages(JsonParser parser, IngredientRegistry ingredientRegistry, List<Recipe> beverages) throws IOException {
+        IntVector ingredientIds = new IntVector();
+        IntVector quantities = new IntVector();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String beverageName = parser.getCurrentName();
+            expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+            int size = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                ingredientIds.set(size, ingredientRegistry.register(parser.getCurrentName()));
+                parser.nextToken();
+                quantities.set(size++, parser.getIntValue());
+            }
+            beverages.add(Recipe.fromVectors(beverageName, ingredientIds.values, quantities.values, size));
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws JsonParseException {
+        if (actual != expected)
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+    }
+
+    /**
+     * growable vector of ints indexed by ingredient id, unset entries are 0
+     */
+    private static final class IntVector {
+        private int[] values = new int[16];
+
+        void set(int index, int value) {
+            if (index >= values.length)
+                values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+            values[index] = value;
+        }
+
+        int[] toArray(int length) {
+            return Arrays.copyOf(values, length);
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.dunzo.coffee_machine;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.io.IOException;
+import java.util.concurrent.Executor;
 
 /**
  * Class to create and initialize a coffee machine from the given input json
@@ -16,26 +16,95 @@ public class MachineFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(MachineFactory.class);
 
     public static CoffeeMachine create(String inputJson, ObjectMapper objectMapper) {
-
         //reading the json input
-        JsonNode input = null;
-        try {
-            input = objectMapper.readTree(inputJson);
-        } catch (JsonProcessingException e) {
+        MachineDefinition machineDefinition;
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputJson)) {
+            machineDefinition = MachineDefinitionLoader.load(parser);
+        } catch (IOException e) {
             LOGGER.error("Unable to parse json!");
             throw new RuntimeException("Unable to parse json!", e);
         }
-        JsonNode machine = input.get(ApplicationConstants.MACHINE);
-        Integer outlets = machine.get(ApplicationConstants.OUTLETS).get(ApplicationConstants.COUNT_N).intValue();
-        LOGGER.debug("Total number of outlets to be added to the coffee machine = {}", outlets);
-        Map<String, Integer> itemsQuantity = objectMapper.convertValue(machine.get(ApplicationConstants.TOTAL_ITEMS_QUANTITY),
-                new TypeReference<Map<String, Integer>>() {});
-        itemsQuantity.forEach((item, quantity) -> LOGGER.debug("Adding {} quantity of {} to the inventory manager",
-                quantity, item));
+        return create(machineDefinition, null);
+    }
+
+    /**
+     * Method to create a coffee machine from an already parsed input
+     * @param input
+     * @param objectMapper
+     * @param sharedExecutor executor to run the outlets on as logical slots, null for a dedicated pool of outlet threads
+     * @return
+     */
+    public static CoffeeMachine create(JsonNode input, ObjectMapper objectMapper, Executor sharedExecutor) {
+        try {
+            return create(MachineDefinitionLoader.load(input, objectMapper), sharedExecutor);
+        } catch (IOException e) {
+            LOGGER.error("Unable to read the machine input!");
+            throw new RuntimeException("Unable to read the machine input!", e);
+        }
+    }
+
+    /**
+     * Method to create a coffee machine from a loaded machine definition
+     * @param machineDefinition
+     * @param sharedExecutor executor to run the outlets on as logical slots, null for a dedicated pool of outlet threads
+     * @return
+     */
+    public static CoffeeMachine create(MachineDefinition machineDefinition, Executor sharedExecutor) {
+        OutletConfig outletConfig = machineDefinition.getOutletConfig();
+        IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        LOGGER.debug("Total number of outlets to be added to the coffee machine = {}", outletConfig.getCount());
+        LOGGER.debug("Total number of ingredients registered = {}", ingredientRegistry.size());
         //initializing the inventory manager
-        InventoryManager inventoryManager = new InventoryManager(itemsQuantity);
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, machineDefinition.getItemsQuantity());
+        //every machine gets its own refill provider
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, machineDefinition.getRefillPack());
         //creating the coffee machine with the given number of outlets and inventory manager
+        CoffeeMachine coffeeMachine = new CoffeeMachine(outletConfig, inventoryManager, refillProvider, sharedExecutor);
+        return start(coffeeMachine, machineDefinition);
+    }
+
+    /**
+     * Method to create a coffee machine whose inventory and refill pack survive a restart
+     * @param machineDefinition
+     * @param durableInventory  inventory opened from the same machine definition
+     * @param sharedExecutor    executor to run the outlets on as logical slots, null for a dedicated pool of outlet threads
+     * @return
+     */
+    public static CoffeeMachine create(MachineDefinition machineDefinition, DurableInventory durableInventory,
+                                       Executor sharedExecutor) {
+        LOGGER.debug("Total number of outlets to be added to the coffee machine = {}",
+                machineDefinition.getOutletConfig().getCount());
+        CoffeeMachine coffeeMachine = new CoffeeMachine(machineDefinition.getOutletConfig(),
+                durableInventory.getInventoryManager(), durableInventory.getRefillProvider(), sharedExecutor);
+        return start(coffeeMachine, machineDefinition);
+    }
 
-        return new CoffeeMachine(outlets, inventoryManager);
+    /**
+     * Method to create a coffee machine whose inventory and refill pack are shared with the other processes which
+     * opened the same file
+     * @param machineDefinition
+     * @param sharedInventory   inventory opened from the same machine definition
+     * @param sharedExecutor    executor to run the outlets on as logical slots, null for a dedicated pool of outlet threads
+     * @return
+     */
+    public static CoffeeMachine create(MachineDefinition machineDefinition, SharedInventory sharedInventory,
+                                       Executor sharedExecutor) {
+        LOGGER.debug("Total number of outlets to be added to the coffee machine = {}",
+                machineDefinition.getOutletConfig().getCount());
+        CoffeeMachine coffeeMachine = new CoffeeMachine(machineDefinition.getOutletConfig(),
+                sharedInventory.getInventoryManager(), sharedInventory.getRefillProvider(), sharedExecutor);
+        return start(coffeeMachine, machineDefinition);
+    }
+
+    /**
+     * Method to publish the beverages of the input as the first menu of the machine and start the replenishment
+     */
+    private static CoffeeMachine start(CoffeeMachine coffeeMachine, MachineDefinition machineDefinition) {
+        coffeeMachine.publishMenu(machineDefinition.getBeverages());
+        if (machineDefinition.getReplenishmentConfig() != null) {
+            LOGGER.debug("Starting the predictive replenishment");
+            coffeeMachine.startReplenishment(machineDefinition.getReplenishmentConfig());
+        }
+        return coffeeMachine;
     }
 }
@@ -0,0 +1,203 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics recorded on the hot path of a coffee machine
+ * <p>
+ * Every order is counted by its outcome. A sample of the orders, one in timingSampleRate picked at random, also
+ * records how long it waited in the order queue and how long the inventory took to ration it, including any refill,
+ * and its whole latency per priority class. Reading the clock costs more than the ration itself, so the other orders
+ * don't read it at all and the histograms hold the distribution of the sample. Latencies go to lock-free histograms
+ * and counts to striped adders. The disabled instance records nothing and is used where no machine owns the task,
+ * e.g. tasks created on their own.
+ */
+public class MachineMetrics {
+
+    public static final int DEFAULT_TIMING_SAMPLE_RATE = 32;
+    private static final MachineMetrics DISABLED = new MachineMetrics(false, 1);
+
+    private final boolean enabled;
+    private final int timingSampleRate;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram ration;
+    private final AtomicLongArray ordersByStatus;
+    private final LongAdder refillAttempts;
+    private final LongAdder refillsInfeasible;
+    private final LongAdder refillsServed;
+    private final LongAdder refillsLost;
+    private final LongAdder plannedOut;
+    private final LatencyHistogram[] latencyByClass;
+    private final AtomicLongArray expiredByClass;
+
+    public MachineMetrics() {
+        this(DEFAULT_TIMING_SAMPLE_RATE);
+    }
+
+    /**
+     * @param timingSampleRate one in that many orders is timed, 1 to time every order
+     */
+    public MachineMetrics(int timingSampleRate) {
+        this(true, timingSampleRate);
+    }
+
+    private MachineMetrics(boolean enabled, int timingSampleRate) {
+        if (timingSampleRate <= 0)
+            throw new IllegalArgumentException("Timing sample rate must be positive!");
+        this.enabled = enabled;
+        this.timingSampleRate = timingSampleRate;
+        this.queueWait = new LatencyHistogram();
+        this.ration = new LatencyHistogram();
+        this.ordersByStatus = new AtomicLongArray(OrderStatus.values().length);
+        this.refillAttempts = new LongAdder();
+        this.refillsInfeasible = new LongAdder();
+        this.refillsServed = new LongAdder();
+        this.refillsLost = new LongAdder();
+        this.plannedOut = new LongAdder();
+        this.latencyByClass = new LatencyHistogram[PriorityClass.values().length];
+        for (int i = 0; i < latencyByClass.length; i++) {
+            latencyByClass[i] = new LatencyHistogram();
+        }
+        this.expiredByClass = new AtomicLongArray(PriorityClass.values().length);
+    }
+
+    public static MachineMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getTimingSampleRate() {
+        return timingSampleRate;
+    }
+
+    /**
+     * Method to decide whether an order is part of the timed sample, called once when the order is submitted
+     * @return System.nanoTime() if the order is timed, 0 otherwise so that the other orders don't read the clock
+     */
+    long startTiming() {
+        if (!enabled || timingSampleRate > 1 && ThreadLocalRandom.current().nextInt(timingSampleRate) != 0)
+            return 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Method to record an order answered by an outlet along with its timings
+     * @param outletResponse
+     * @param timed          whether the order is part of the timed sample, see startTiming
+     */
+    void recordServed(OutletResponse outletResponse, boolean timed) {
+        if (!enabled)
+            return;
+        ordersByStatus.incrementAndGet(outletResponse.getStatus().ordinal());
+        if (timed) {
+            queueWait.record(outletResponse.getQueueWaitNanos());
+            ration.record(outletResponse.getRationNanos());
+        }
+    }
+
+    /**
+     * Method to record an order answered without reaching an outlet, it has no timings
+     * @param outletResponse
+     */
+    void recordRefused(OutletResponse outletResponse) {
+        if (enabled)
+            ordersByStatus.incrementAndGet(outletResponse.getStatus().ordinal());
+    }
+
+    /**
+     * Method to record the whole latency of a timed order answered by an outlet, from its submission to its response
+     * @param priorityClass
+     * @param outletResponse
+     */
+    void recordLatency(PriorityClass priorityClass, OutletResponse outletResponse) {
+        if (enabled)
+            latencyByClass[priorityClass.ordinal()].record(outletResponse.getQueueWaitNanos() + outletResponse.getRationNanos());
+    }
+
+    /**
+     * an order of the class was picked up after its deadline and dropped
+     */
+    void recordExpired(PriorityClass priorityClass) {
+        if (enabled)
+            expiredByClass.incrementAndGet(priorityClass.ordinal());
+    }
+
+    void recordRefillAttempt() {
+        if (enabled)
+            refillAttempts.increment();
+    }
+
+    /**
+     * the refill pack couldn't make up for the shortfall, nothing was refilled
+     */
+    void recordRefillInfeasible() {
+        if (enabled)
+            refillsInfeasible.increment();
+    }
+
+    /**
+     * @param served whether the order was prepared after the refill or another outlet took the refill first
+     */
+    void recordRefillOutcome(boolean served) {
+        if (enabled)
+            (served ? refillsServed : refillsLost).increment();
+    }
+
+    /**
+     * an order was refused without reaching an outlet because it did not fit in the schedule plan, it is counted as
+     * insufficient as well
+     */
+    void recordPlannedOut() {
+        if (enabled)
+            plannedOut.increment();
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getRation() {
+        return ration;
+    }
+
+    /**
+     * @param priorityClass
+     * @return latency from submission to response of the orders of the class answered by an outlet
+     */
+    public LatencyHistogram getLatency(PriorityClass priorityClass) {
+        return latencyByClass[priorityClass.ordinal()];
+    }
+
+    public long getExpired(PriorityClass priorityClass) {
+        return expiredByClass.get(priorityClass.ordinal());
+    }
+
+    public long getOrders(OrderStatus status) {
+        return ordersByStatus.get(status.ordinal());
+    }
+
+    public long getRefillAttempts() {
+        return refillAttempts.sum();
+    }
+
+    public long getRefillsInfeasible() {
+        return refillsInfeasible.sum();
+    }
+
+    public long getRefillsServed() {
+        return refillsServed.sum();
+    }
+
+    public long getRefillsLost() {
+        return refillsLost.sum();
+    }
+
+    public long getPlannedOut() {
+        return plannedOut.sum();
+    }
+}
@@ -0,0 +1,42 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count of the orders of a single machine of a fleet by outcome
+ * Only counts are kept so that the report stays small no matter how many orders the machine serves
+ */
+public class MachineReport {
+
+    private final int machineIndex;
+    private final AtomicLongArray ordersByStatus;
+
+    MachineReport(int machineIndex) {
+        this.machineIndex = machineIndex;
+        this.ordersByStatus = new AtomicLongArray(OrderStatus.values().length);
+    }
+
+    void record(OutletResponse outletResponse) {
+        ordersByStatus.incrementAndGet(outletResponse.getStatus().ordinal());
+    }
+
+    public int getMachineIndex() {
+        return machineIndex;
+    }
+
+    public long getOrders(OrderStatus status) {
+        return ordersByStatus.get(status.ordinal());
+    }
+
+    public long getPrepared() {
+        return getOrders(OrderStatus.PREPARED);
+    }
+
+    public long getTotalOrders() {
+        long total = 0;
+        for (int i = 0; i < ordersByStatus.length(); i++) {
+            total += ordersByStatus.get(i);
+        }
+        return total;
+    }
+}
@@ -6,17 +6,52 @@ import org.slf4j.LoggerFactory;
 /**
  * Class to start the execution of the coffee machine simulation application
  * <p>
- * Reads an input json file from the resources directory
+ * Reads an input json file from the resources directory, or from the filesystem if there is no such resource
+ * <p>
+ * The machine is registered as a JMX MBean while it runs. Setting the system property
+ * coffee_machine.metrics.interval_ms dumps its metrics to the log at that interval, setting
+ * coffee_machine.metrics.enabled to false turns them off. Setting coffee_machine.journal to a file records every
+ * order event to that binary journal, see EventJournalReader to decode it. Setting coffee_machine.trace to a file
+ * records the orders and their arrival times to that trace, which LoadGenerator can replay. Setting
+ * coffee_machine.state_dir to a directory keeps the inventory there across restarts, with a snapshot every
+ * coffee_machine.snapshot_interval changes. Setting coffee_machine.shared_inventory to a file instead shares the
+ * inventory with every process on the host which opens the same file, see SharedInventory. Setting
+ * coffee_machine.discrete_event to true simulates the machine in virtual time instead of running it, see
+ * DiscreteEventSimulation.
  * <p>
  * input json needs to be of the following schema:
  * {
  * "machine": {
  * "outlets": {
- * "count_n": Integer
+ * "count_n": Integer,
+ * "queue_capacity": Integer (optional), //maximum orders waiting for an outlet, unbounded if absent
+ * "overflow_policy": String (optional), //reject, block or shed_oldest when the queue is full, reject by default, needs queue_capacity
+ * "execution_mode": String (optional), //platform or virtual (Java 21+) threads for the outlets, platform by default
+ * "ration_batch_size": Integer (optional), //orders rationed together in one pass over the inventory, 0 (off) by default
+ * "ration_batch_window_us": Integer (optional), //how long a batch waits for more orders, 0 by default
+ * "scheduling_policy": String (optional), //fifo, or yield to plan the beverages to serve the most of them, fifo by default
+ * "striped_inventory": Boolean (optional), //every outlet serves from its own lease of the inventory, false by default
+ * "priority_aging_ms": Integer (optional) //dispatch by priority class and deadline, an order moving up a class every
+ * priority_aging_ms it waits, in the order of arrival if absent
  * },
  * "total_items_quantity": JsonData, //String, Integer Pairs of the initial ingredients and quantity
  * "beverages": JsonArray, //each jsondata will contain name and String, Integer pair of the required ingredients and quantities
- * "refill_pack": JsonData (optional) ////String, Integer Pairs of the ingredients and quantity available for refill
+ * "refill_pack": JsonData (optional), ////String, Integer Pairs of the ingredients and quantity available for refill
+ * "replenishment": { (optional) //tops up the stock from the refill pack ahead of demand, only on demand if absent
+ * "interval_ms": Integer, //how often the stock is checked, 10 by default
+ * "horizon_ms": Integer, //how far ahead the demand is forecast, 1000 by default
+ * "smoothing": Number, //weight of the latest interval in the consumption rate, 0.3 by default
+ * "low_water_marks": JsonData //String, Integer Pairs of the ingredients and the stock always kept when possible
+ * },
+ * "simulation": { (optional) //only used by the discrete-event simulation
+ * "orders": Integer, //number of simulated orders, 1000 by default
+ * "arrival_process": String, //poisson, uniform or bursty, poisson by default
+ * "arrivals_per_hour": Number, //mean arrival rate, 400 by default
+ * "seed": Integer, //the same seed gives the same simulation, 0 by default
+ * "default_brew_time_s": Number, //brew time of the beverages without one of their own, 60 by default
+ * "brew_time_s": JsonData, //String, Number Pairs of the beverages and their brew time in seconds
+ * "mix": JsonData //String, Integer Pairs of the beverages and their relative weight in the orders, uniform by default
+ * }
  * }
  * }
  */
@@ -32,7 +67,10 @@ public class Main {
             inputFileName = args[0];
         LOGGER.debug("Input File name = {}", inputFileName);
 
-        CoffeeMachineSimulation.run(inputFileName);
+        if (Boolean.getBoolean(ApplicationConstants.DISCRETE_EVENT_PROPERTY))
+            CoffeeMachineSimulation.simulate(inputFileName);
+        else
+            CoffeeMachineSimulation.run(inputFileName);
 
         LOGGER.info("Application finished!");
     }
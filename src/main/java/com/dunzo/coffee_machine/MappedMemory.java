@@ -0,0 +1,58 @@
+package com.dunzo.coffee_machine;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Atomic operations on the longs of a memory-mapped file, shared with other processes
+ * <p>
+ * Java 8 has no atomic access to the memory of a MappedByteBuffer, so this is the one class of the machine which uses
+ * sun.misc.Unsafe. The pom silences the proprietary API warnings of the whole build for it, so keep any other use of
+ * internal APIs out.
+ */
+final class MappedMemory {
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        try {
+            Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            UNSAFE = (Unsafe) theUnsafe.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MappedMemory() {
+    }
+
+    /**
+     * @param buffer
+     * @return address of the first byte of the mapping, valid as long as the buffer is reachable
+     */
+    static long addressOf(MappedByteBuffer buffer) {
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    static void putLongVolatile(long address, long value) {
+        UNSAFE.putLongVolatile(null, address, value);
+    }
+
+    static boolean compareAndSetLong(long address, long expected, long value) {
+        return UNSAFE.compareAndSwapLong(null, address, expected, value);
+    }
+
+    static long getAndAddLong(long address, long delta) {
+        return UNSAFE.getAndAddLong(null, address, delta);
+    }
+}
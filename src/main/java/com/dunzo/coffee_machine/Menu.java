@@ -0,0 +1,69 @@
+package com.dunzo.coffee_machine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the beverages a coffee machine serves, identified by its version
+ * A coffee machine publishes its menu through a single atomic reference: an order looks its recipe up in whichever
+ * snapshot it reads and keeps that recipe until it is served, so replacing the menu never waits for the outlets and
+ * the orders already submitted finish on the version they started with.
+ */
+public final class Menu {
+
+    public static final Menu EMPTY = new Menu(0, Collections.<Recipe>emptyList());
+
+    private final long version;
+    private final List<Recipe> beverages;
+    private final Map<String, Recipe> recipesByName;
+
+    private Menu(long version, List<Recipe> beverages) {
+        this.version = version;
+        this.beverages = Collections.unmodifiableList(new ArrayList<>(beverages));
+        Map<String, Recipe> recipesByName = new HashMap<>();
+        //a beverage listed twice is served with its last recipe, like it would be in the json input
+        for (Recipe beverage : beverages) {
+            recipesByName.put(beverage.getBeverageName(), beverage);
+        }
+        this.recipesByName = Collections.unmodifiableMap(recipesByName);
+    }
+
+    /**
+     * Method to create the menu which replaces this one
+     * @param beverages
+     * @return menu of the given beverages, one version after this one
+     */
+    public Menu next(List<Recipe> beverages) {
+        return new Menu(version + 1, beverages);
+    }
+
+    /**
+     * @return version of the menu, 0 for the empty menu a machine starts with and one more for every replacement
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Recipe> getBeverages() {
+        return beverages;
+    }
+
+    /**
+     * @param beverageName
+     * @return recipe of the beverage, null if it is not on the menu
+     */
+    public Recipe getRecipe(String beverageName) {
+        return recipesByName.get(beverageName);
+    }
+
+    @Override
+    public String toString() {
+        return "Menu{" +
+                "version=" + version +
+                ", beverages=" + recipesByName.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to periodically dump the metrics snapshot of a coffee machine to the log
+ * A final snapshot is dumped when the reporter is closed
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsReporter.class);
+    private final CoffeeMachineMXBean coffeeMachine;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param coffeeMachine
+     * @param interval
+     * @param unit
+     */
+    public MetricsReporter(CoffeeMachineMXBean coffeeMachine, long interval, TimeUnit unit) {
+        this.coffeeMachine = coffeeMachine;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, interval, interval, unit);
+    }
+
+    private void report() {
+        LOGGER.info("Coffee machine metrics: {}", coffeeMachine.getMetricsSnapshot());
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        report();
+    }
+}
@@ -0,0 +1,140 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point in time view of the metrics of a coffee machine, exposed over JMX and dumped by the MetricsReporter
+ */
+public class MetricsSnapshot {
+
+    private final int queueDepth;
+    private final long ordersPrepared;
+    private final long ordersInsufficient;
+    private final long ordersPlannedOut;
+    private final long ordersRejected;
+    private final long ordersShed;
+    private final long ordersExpired;
+    private final LatencySummary queueWait;
+    private final LatencySummary ration;
+    private final long casRetries;
+    private final long rollbacks;
+    private final long refillAttempts;
+    private final long refillsInfeasible;
+    private final long refillsServed;
+    private final long refillsLost;
+    private final Map<String, Integer> ingredientLevels;
+    private final Map<String, LatencySummary> latencyByClass;
+
+    MetricsSnapshot(int queueDepth, MachineMetrics metrics, InventoryManager inventoryManager) {
+        this.queueDepth = queueDepth;
+        this.ordersPrepared = metrics.getOrders(OrderStatus.PREPARED);
+        this.ordersInsufficient = metrics.getOrders(OrderStatus.INSUFFICIENT_INGREDIENTS);
+        this.ordersPlannedOut = metrics.getPlannedOut();
+        this.ordersRejected = metrics.getOrders(OrderStatus.REJECTED);
+        this.ordersShed = metrics.getOrders(OrderStatus.SHED);
+        this.ordersExpired = metrics.getOrders(OrderStatus.EXPIRED);
+        this.queueWait = metrics.getQueueWait().summarize();
+        this.ration = metrics.getRation().summarize();
+        this.casRetries = inventoryManager.getCasRetries();
+        this.rollbacks = inventoryManager.getRollbacks();
+        this.refillAttempts = metrics.getRefillAttempts();
+        this.refillsInfeasible = metrics.getRefillsInfeasible();
+        this.refillsServed = metrics.getRefillsServed();
+        this.refillsLost = metrics.getRefillsLost();
+        this.ingredientLevels = Collections.unmodifiableMap(inventoryManager.getQuantities());
+        Map<String, LatencySummary> latencyByClass = new LinkedHashMap<>();
+        for (PriorityClass priorityClass : PriorityClass.values()) {
+            latencyByClass.put(priorityClass.name().toLowerCase(), metrics.getLatency(priorityClass).summarize());
+        }
+        this.latencyByClass = Collections.unmodifiableMap(latencyByClass);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getOrdersPrepared() {
+        return ordersPrepared;
+    }
+
+    public long getOrdersInsufficient() {
+        return ordersInsufficient;
+    }
+
+    /**
+     * @return orders left out by the schedule plan, included in the insufficient ones
+     */
+    public long getOrdersPlannedOut() {
+        return ordersPlannedOut;
+    }
+
+    public long getOrdersRejected() {
+        return ordersRejected;
+    }
+
+    public long getOrdersShed() {
+        return ordersShed;
+    }
+
+    public long getOrdersExpired() {
+        return ordersExpired;
+    }
+
+    public LatencySummary getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencySummary getRation() {
+        return ration;
+    }
+
+    /**
+     * @return latency from submission to response of every priority class, by the lower case name of the class
+     */
+    public Map<String, LatencySummary> getLatencyByClass() {
+        return latencyByClass;
+    }
+
+    public long getCasRetries() {
+        return casRetries;
+    }
+
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    public long getRefillAttempts() {
+        return refillAttempts;
+    }
+
+    public long getRefillsInfeasible() {
+        return refillsInfeasible;
+    }
+
+    public long getRefillsServed() {
+        return refillsServed;
+    }
+
+    public long getRefillsLost() {
+        return refillsLost;
+    }
+
+    public Map<String, Integer> getIngredientLevels() {
+        return ingredientLevels;
+    }
+
+    @Override
+    public String toString() {
+        return "queueDepth=" + queueDepth +
+                ", orders={prepared=" + ordersPrepared + ", insufficient=" + ordersInsufficient +
+                ", plannedOut=" + ordersPlannedOut +
+                ", rejected=" + ordersRejected + ", shed=" + ordersShed + ", expired=" + ordersExpired + "}" +
+                ", queueWait=" + queueWait + ", ration=" + ration + ", latencyByClass=" + latencyByClass +
+                ", casRetries=" + casRetries + ", rollbacks=" + rollbacks +
+                ", refills={attempts=" + refillAttempts + ", infeasible=" + refillsInfeasible +
+                ", served=" + refillsServed + ", lost=" + refillsLost + "}" +
+                ", ingredientLevels=" + ingredientLevels;
+    }
+}
@@ -0,0 +1,81 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An order queued at the outlets of a coffee machine
+ * Couples the preparation task with the future handed out to the caller, the future is the only reference kept
+ * to the order once it is prepared
+ * <p>
+ * An order has a priority class, used when the outlets dispatch by priority, and optionally a deadline by which an
+ * outlet must pick it up. An order picked up after its deadline is answered EXPIRED without touching the inventory.
+ */
+class Order implements Runnable {
+
+    static final long NO_DEADLINE = 0;
+
+    private final BeveragePreparationTask task;
+    private final CompletableFuture<OutletResponse> response;
+    //System.nanoTime() at the submission, 0 if the order isn't part of the timed sample
+    private final long submittedAt;
+    private final PriorityClass priorityClass;
+    private final long deadline;
+
+    Order(BeveragePreparationTask task) {
+        this(task, PriorityClass.STANDARD, NO_DEADLINE);
+    }
+
+    /**
+     * @param task
+     * @param priorityClass
+     * @param deadline      System.nanoTime() by which an outlet must pick the order up, NO_DEADLINE for none
+     */
+    Order(BeveragePreparationTask task, PriorityClass priorityClass, long deadline) {
+        this.task = task;
+        this.response = new CompletableFuture<>();
+        this.submittedAt = task.getMetrics().startTiming();
+        this.priorityClass = priorityClass;
+        this.deadline = deadline;
+    }
+
+    CompletableFuture<OutletResponse> getResponse() {
+        return response;
+    }
+
+    PriorityClass getPriorityClass() {
+        return priorityClass;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    boolean hasDeadline() {
+        return deadline != NO_DEADLINE;
+    }
+
+    /**
+     * Method to answer the order without preparing it
+     * @param status
+     */
+    void refuse(OrderStatus status) {
+        response.complete(task.refuse(status));
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (hasDeadline() && System.nanoTime() - deadline > 0) {
+                task.getMetrics().recordExpired(priorityClass);
+                refuse(OrderStatus.EXPIRED);
+                return;
+            }
+            OutletResponse outletResponse = task.prepare(submittedAt);
+            if (submittedAt != 0)
+                task.getMetrics().recordLatency(priorityClass, outletResponse);
+            response.complete(outletResponse);
+        } catch (Throwable t) {
+            response.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Type of a record of the EventJournal
+ */
+public enum OrderEvent {
+    SUBMITTED,
+    RATIONED,
+    INGREDIENT_DELTA,
+    REFILLED,
+    FAILED;
+
+    private static final OrderEvent[] VALUES = values();
+
+    static OrderEvent of(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Audit trail of the orders of a coffee machine
+ * Called by the outlets outside of any inventory update, implementations must not block for long
+ */
+public interface OrderJournal {
+
+    /**
+     * journal which records nothing
+     */
+    OrderJournal NONE = new OrderJournal() {
+        @Override
+        public void submitted(long orderId, Recipe recipe) {
+        }
+
+        @Override
+        public void rationed(long orderId, Recipe recipe) {
+        }
+
+        @Override
+        public void refilled(long orderId, int ingredientId, int quantity) {
+        }
+
+        @Override
+        public void failed(long orderId, Recipe recipe, OrderStatus status) {
+        }
+    };
+
+    void submitted(long orderId, Recipe recipe);
+
+    /**
+     * the ingredients of the recipe were deducted from the inventory
+     */
+    void rationed(long orderId, Recipe recipe);
+
+    /**
+     * the given quantity of the ingredient was moved from the refill pack to the inventory for the order
+     */
+    void refilled(long orderId, int ingredientId, int quantity);
+
+    /**
+     * the order was answered without being prepared
+     */
+    void failed(long orderId, Recipe recipe, OrderStatus status);
+}
@@ -0,0 +1,195 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class to plan which orders of a window to admit, and in which order, so that as many beverages as possible are
+ * served from the current stock plus what is left in the refill pack
+ * <p>
+ * Picking the largest set of orders that fits is a multi-dimensional knapsack, so the plan is a heuristic:
+ * <ul>
+ * <li>only ingredients whose total demand in the window exceeds their budget are scarce, an order costs the share of
+ * every scarce ingredient it takes weighted by how oversubscribed that ingredient is</li>
+ * <li>orders are admitted greedily from the cheapest one as long as they fit</li>
+ * <li>a bounded local search then tries to swap each of the most expensive admitted orders for two or more rejected
+ * ones</li>
+ * </ul>
+ * Sorting by cost is the only superlinear step, so windows of thousands of orders are planned in a few milliseconds.
+ * The plan is never worse than admitting the orders in the order of submission: if that serves more, it is kept.
+ */
+public class OrderScheduler {
+
+    //number of admitted orders the local search tries to swap out
+    private static final int MAX_SWAP_ATTEMPTS = 64;
+
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+
+    public OrderScheduler(InventoryManager inventoryManager, RefillProvider refillProvider) {
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+    }
+
+    /**
+     * Method to plan the given window of orders against the current stock and refill pack
+     * @param window orders in the order of submission
+     * @return plan referring to the orders by their position in the window
+     */
+    public SchedulePlan plan(List<Recipe> window) {
+        Recipe[] orders = window.toArray(new Recipe[0]);
+        long[] budget = budget(orders);
+
+        int[] fifo = admit(orders, identity(orders.length), budget.clone());
+        int[] order = byScarcityCost(orders, budget);
+        long[] residual = budget.clone();
+        int[] admitted = admit(orders, order, residual);
+        admitted = swap(orders, order, admitted, residual);
+        return new SchedulePlan(admitted.length > fifo.length ? admitted : fifo, orders.length, fifo.length);
+    }
+
+    /**
+     * Method to read the quantity of every ingredient which can be used: the stock plus the remaining refill pack
+     */
+    private long[] budget(Recipe[] orders) {
+        int ingredients = inventoryManager.getIngredientRegistry().size();
+        for (Recipe recipe : orders) {
+            //the last id of a recipe is its highest
+            if (recipe.size() > 0)
+                ingredients = Math.max(ingredients, recipe.ingredientIdAt(recipe.size() - 1) + 1);
+        }
+        long[] budget = new long[ingredients];
+        for (int id = 0; id < ingredients; id++) {
+            budget[id] = (long) inventoryManager.getQuantity(id) + refillProvider.remainingQuantity(id);
+        }
+        return budget;
+    }
+
+    /**
+     * Method to sort the orders from the cheapest to the most expensive in scarce ingredients, orders which can't
+     * be served at all come last
+     * @return positions of the orders in the window, sorted
+     */
+    private static int[] byScarcityCost(Recipe[] orders, long[] budget) {
+        double[] pressure = new double[budget.length];
+        for (Recipe recipe : orders) {
+            for (int i = 0; i < recipe.size(); i++) {
+                pressure[recipe.ingredientIdAt(i)] += recipe.quantityAt(i);
+            }
+        }
+        for (int id = 0; id < budget.length; id++) {
+            //an ingredient which covers the whole window never limits the plan
+            pressure[id] = pressure[id] <= budget[id] ? 0 : pressure[id] / budget[id];
+        }
+        /*
+        non negative floats sort the same as their bits, so the cost and the position are packed in a long and
+        sorted without boxing, equal costs keep the order of submission
+         */
+        long[] keys = new long[orders.length];
+        for (int index = 0; index < orders.length; index++) {
+            Recipe recipe = orders[index];
+            float cost = 0;
+            for (int i = 0; i < recipe.size(); i++) {
+                int id = recipe.ingredientIdAt(i);
+                if (recipe.quantityAt(i) > budget[id]) {
+                    cost = Float.MAX_VALUE;
+                    break;
+                }
+                if (pressure[id] > 0)
+                    cost += (float) (recipe.quantityAt(i) * pressure[id] / budget[id]);
+            }
+            keys[index] = (long) Float.floatToIntBits(cost) << 32 | index;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[orders.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Method to admit the orders in the given order as long as they fit in the residual quantities
+     * @param residual quantities left, updated with every admitted order
+     * @return positions of the admitted orders in the order they were admitted
+     */
+    private static int[] admit(Recipe[] orders, int[] order, long[] residual) {
+        int[] admitted = new int[order.length];
+        int count = 0;
+        for (int index : order) {
+            if (take(orders[index], residual))
+                admitted[count++] = index;
+        }
+        return Arrays.copyOf(admitted, count);
+    }
+
+    /**
+     * Method to improve the greedy plan by swapping an admitted order for two or more rejected ones which fit in its
+     * place, trying the most expensive admitted orders first
+     * @param order     positions of the orders sorted by cost
+     * @param admitted  positions of the admitted orders, sorted by cost
+     * @param residual  quantities left by the admitted orders, updated with every swap
+     * @return positions of the admitted orders after the swaps, sorted by cost
+     */
+    private static int[] swap(Recipe[] orders, int[] order, int[] admitted, long[] residual) {
+        boolean[] isAdmitted = new boolean[orders.length];
+        for (int index : admitted) {
+            isAdmitted[index] = true;
+        }
+        int[] candidates = new int[orders.length];
+        int attempts = Math.min(MAX_SWAP_ATTEMPTS, admitted.length);
+        for (int a = admitted.length - 1; a >= admitted.length - attempts; a--) {
+            int out = admitted[a];
+            give(orders[out], residual);
+            int taken = 0;
+            for (int index : order) {
+                if (!isAdmitted[index] && take(orders[index], residual))
+                    candidates[taken++] = index;
+            }
+            if (taken >= 2) {
+                isAdmitted[out] = false;
+                for (int i = 0; i < taken; i++) {
+                    isAdmitted[candidates[i]] = true;
+                }
+            } else {
+                //not worth it, back to the plan as it was
+                for (int i = 0; i < taken; i++) {
+                    give(orders[candidates[i]], residual);
+                }
+                take(orders[out], residual);
+            }
+        }
+        int[] swapped = new int[orders.length];
+        int count = 0;
+        for (int index : order) {
+            if (isAdmitted[index])
+                swapped[count++] = index;
+        }
+        return Arrays.copyOf(swapped, count);
+    }
+
+    private static boolean take(Recipe recipe, long[] residual) {
+        for (int i = 0; i < recipe.size(); i++) {
+            if (residual[recipe.ingredientIdAt(i)] < recipe.quantityAt(i))
+                return false;
+        }
+        for (int i = 0; i < recipe.size(); i++) {
+            residual[recipe.ingredientIdAt(i)] -= recipe.quantityAt(i);
+        }
+        return true;
+    }
+
+    private static void give(Recipe recipe, long[] residual) {
+        for (int i = 0; i < recipe.size(); i++) {
+            residual[recipe.ingredientIdAt(i)] += recipe.quantityAt(i);
+        }
+    }
+
+    private static int[] identity(int size) {
+        int[] identity = new int[size];
+        for (int i = 0; i < size; i++) {
+            identity[i] = i;
+        }
+        return identity;
+    }
+}
@@ -0,0 +1,15 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Outcome of an order at the outlets
+ */
+public enum OrderStatus {
+    PREPARED,
+    INSUFFICIENT_INGREDIENTS,
+    //refused at admission because the order queue was full
+    REJECTED,
+    //dropped from the order queue to make room for a newer order
+    SHED,
+    //dropped without touching the inventory because its deadline passed before an outlet picked it up
+    EXPIRED
+}
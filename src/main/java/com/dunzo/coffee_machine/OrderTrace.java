@@ -0,0 +1,247 @@
+package com.dunzo.coffee_machine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stream of orders with the time each one arrives at, generated from a LoadProfile or recorded from a machine
+ * <p>
+ * File layout, big endian: magic (int), version (int), number of beverages (int) and their names (modified UTF-8),
+ * number of orders (int), then every order as the nanoseconds since the previous one followed by the index of its
+ * beverage, both as unsigned varints. An order usually takes two to four bytes.
+ */
+public final class OrderTrace {
+
+    static final int MAGIC = 0x434d5431;
+    static final int VERSION = 1;
+
+    private final List<String> beverageNames;
+    //nanoseconds since the start of the trace, never decreasing
+    private final long[] arrivalNanos;
+    private final int[] beverages;
+
+    OrderTrace(List<String> beverageNames, long[] arrivalNanos, int[] beverages) {
+        this.beverageNames = Collections.unmodifiableList(new ArrayList<>(beverageNames));
+        this.arrivalNanos = arrivalNanos;
+        this.beverages = beverages;
+    }
+
+    /**
+     * Method to generate the orders of the profile for a menu of the given beverages, ranked by popularity
+     * @param beverageNames
+     * @param loadProfile
+     * @return
+     */
+    public static OrderTrace generate(List<String> beverageNames, LoadProfile loadProfile) {
+        if (beverageNames.isEmpty())
+            throw new IllegalArgumentException("A trace needs at least one beverage!");
+        if (loadProfile.getOrders() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A trace holds at most " + Integer.MAX_VALUE + " orders!");
+        Random random = new Random(loadProfile.getSeed());
+        double[] cumulativeWeights = new double[beverageNames.size()];
+        double totalWeight = 0;
+        for (int rank = 0; rank < cumulativeWeights.length; rank++) {
+            totalWeight += 1 / Math.pow(rank + 1, loadProfile.getZipfExponent());
+            cumulativeWeights[rank] = totalWeight;
+        }
+        int orders = (int) loadProfile.getOrders();
+        long[] arrivalNanos = new long[orders];
+        int[] beverages = new int[orders];
+        double meanInterArrivalNanos = 1e9 / loadProfile.getOrdersPerSecond();
+        long now = 0;
+        for (int i = 0; i < orders; i++) {
+            now += loadProfile.getArrivalProcess().nextInterArrivalNanos(random, meanInterArrivalNanos);
+            arrivalNanos[i] = now;
+            int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+            beverages[i] = Math.min(index < 0 ? -index - 1 : index, cumulativeWeights.length - 1);
+        }
+        return new OrderTrace(beverageNames, arrivalNanos, beverages);
+    }
+
+    /**
+     * Method to read a trace written by {@link #write(Path)}
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static OrderTrace read(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException(path + " is not an order trace");
+            int version = input.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported order trace version " + version);
+            List<String> beverageNames = new ArrayList<>();
+            for (int i = input.readInt(); i > 0; i--) {
+                beverageNames.add(input.readUTF());
+            }
+            int orders = input.readInt();
+            if (orders < 0)
+                throw new IOException(path + " has a negative number of orders");
+            long[] arrivalNanos = new long[orders];
+            int[] beverages = new int[orders];
+            long now = 0;
+            for (int i = 0; i < orders; i++) {
+                now += readVarLong(input);
+                arrivalNanos[i] = now;
+                //checked before the cast, an index too large for an int must not wrap into the menu
+                long beverage = readVarLong(input);
+                if (beverage < 0 || beverage >= beverageNames.size())
+                    throw new IOException("Order " + i + " of " + path + " is for an unknown beverage");
+                beverages[i] = (int) beverage;
+            }
+            return new OrderTrace(beverageNames, arrivalNanos, beverages);
+        }
+    }
+
+    /**
+     * Method to write the trace to the given file, overwritten if present
+     * @param path
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(beverageNames.size());
+            for (String beverageName : beverageNames) {
+                output.writeUTF(beverageName);
+            }
+            output.writeInt(arrivalNanos.length);
+            long previous = 0;
+            for (int i = 0; i < arrivalNanos.length; i++) {
+                writeVarLong(output, arrivalNanos[i] - previous);
+                writeVarLong(output, beverages[i]);
+                previous = arrivalNanos[i];
+            }
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint in the order trace");
+    }
+
+    public List<String> getBeverageNames() {
+        return beverageNames;
+    }
+
+    /**
+     * @return number of orders in the trace
+     */
+    public int size() {
+        return arrivalNanos.length;
+    }
+
+    /**
+     * @param index
+     * @return nanoseconds from the start of the trace until the order arrives
+     */
+    public long arrivalNanosAt(int index) {
+        return arrivalNanos[index];
+    }
+
+    public String beverageNameAt(int index) {
+        return beverageNames.get(beverages[index]);
+    }
+
+    /**
+     * @return nanoseconds from the start of the trace until the last order arrives
+     */
+    public long getDurationNanos() {
+        return arrivalNanos.length == 0 ? 0 : arrivalNanos[arrivalNanos.length - 1];
+    }
+
+    /**
+     * Journal recording the orders submitted to a machine as a trace, to be replayed later by the load generator
+     * Every other event is passed on to the journal it wraps
+     */
+    public static final class Recorder implements OrderJournal {
+
+        private final OrderJournal orderJournal;
+        private final IngredientRegistry beverageNames;
+        private long startNanos;
+        private long[] arrivalNanos;
+        private int[] beverages;
+        private int size;
+
+        /**
+         * @param orderJournal journal to pass the events on to, OrderJournal.NONE if there is none
+         */
+        public Recorder(OrderJournal orderJournal) {
+            this.orderJournal = orderJournal;
+            //interns the beverage names the same way ingredients are
+            this.beverageNames = new IngredientRegistry();
+            this.arrivalNanos = new long[1024];
+            this.beverages = new int[1024];
+        }
+
+        @Override
+        public void submitted(long orderId, Recipe recipe) {
+            int beverage = beverageNames.register(recipe.getBeverageName());
+            synchronized (this) {
+                //read under the lock so that the arrivals are recorded in order
+                long now = System.nanoTime();
+                if (size == 0)
+                    startNanos = now;
+                if (size == arrivalNanos.length) {
+                    arrivalNanos = Arrays.copyOf(arrivalNanos, size * 2);
+                    beverages = Arrays.copyOf(beverages, size * 2);
+                }
+                arrivalNanos[size] = now - startNanos;
+                beverages[size++] = beverage;
+            }
+            orderJournal.submitted(orderId, recipe);
+        }
+
+        @Override
+        public void rationed(long orderId, Recipe recipe) {
+            orderJournal.rationed(orderId, recipe);
+        }
+
+        @Override
+        public void refilled(long orderId, int ingredientId, int quantity) {
+            orderJournal.refilled(orderId, ingredientId, quantity);
+        }
+
+        @Override
+        public void failed(long orderId, Recipe recipe, OrderStatus status) {
+            orderJournal.failed(orderId, recipe, status);
+        }
+
+        /**
+         * @return the orders recorded so far
+         */
+        public synchronized OrderTrace toTrace() {
+            List<String> names = new ArrayList<>(beverageNames.size());
+            for (int id = 0; id < beverageNames.size(); id++) {
+                names.add(beverageNames.nameOf(id));
+            }
+            return new OrderTrace(names, Arrays.copyOf(arrivalNanos, size), Arrays.copyOf(beverages, size));
+        }
+    }
+}
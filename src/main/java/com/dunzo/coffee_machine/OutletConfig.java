@@ -0,0 +1,165 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Configuration of the outlets of a coffee machine, read from the outlets section of the input
+ */
+public final class OutletConfig {
+
+    public static final int UNBOUNDED = 0;
+    public static final long FIFO_DISPATCH = 0;
+    private final int count;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ExecutionMode executionMode;
+    private final int rationBatchSize;
+    private final long rationBatchWindowNanos;
+    private final SchedulingPolicy schedulingPolicy;
+    private final boolean inventoryStriped;
+    private final long priorityAgingNanos;
+
+    private OutletConfig(int count, int queueCapacity, OverflowPolicy overflowPolicy, ExecutionMode executionMode,
+                         int rationBatchSize, long rationBatchWindowNanos, SchedulingPolicy schedulingPolicy,
+                         boolean inventoryStriped, long priorityAgingNanos) {
+        if (count <= 0)
+            throw new IllegalArgumentException("Number of outlets must be positive!");
+        if (rationBatchSize < 0 || rationBatchWindowNanos < 0)
+            throw new IllegalArgumentException("Ration batch size and window can't be negative!");
+        if (inventoryStriped && rationBatchSize > 1)
+            throw new IllegalArgumentException("Rations can't be batched when the inventory is striped!");
+        if (priorityAgingNanos < 0)
+            throw new IllegalArgumentException("Priority aging period can't be negative!");
+        this.count = count;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.executionMode = executionMode;
+        this.rationBatchSize = rationBatchSize;
+        this.rationBatchWindowNanos = rationBatchWindowNanos;
+        this.schedulingPolicy = schedulingPolicy;
+        this.inventoryStriped = inventoryStriped;
+        this.priorityAgingNanos = priorityAgingNanos;
+    }
+
+    /**
+     * @param count number of outlets
+     * @return configuration with an unbounded order queue
+     */
+    public static OutletConfig of(int count) {
+        return new OutletConfig(count, UNBOUNDED, OverflowPolicy.REJECT, ExecutionMode.PLATFORM, 0, 0, SchedulingPolicy.FIFO,
+                false, FIFO_DISPATCH);
+    }
+
+    /**
+     * @param count number of outlets
+     * @return same configuration with another number of outlets
+     */
+    public OutletConfig withCount(int count) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param queueCapacity  maximum number of orders waiting for an outlet, UNBOUNDED for no limit
+     * @param overflowPolicy what to do with an order when the queue is full
+     * @return
+     */
+    public OutletConfig withOrderQueue(int queueCapacity, OverflowPolicy overflowPolicy) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param executionMode how the outlets run the orders
+     * @return
+     */
+    public OutletConfig withExecutionMode(ExecutionMode executionMode) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param rationBatchSize        maximum number of orders rationed together, 0 or 1 to ration every order on its own
+     * @param rationBatchWindowNanos how long a batch waits for more orders before it is rationed
+     * @return
+     */
+    public OutletConfig withRationBatching(int rationBatchSize, long rationBatchWindowNanos) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param schedulingPolicy how a window of orders submitted together is ordered before it is queued
+     * @return
+     */
+    public OutletConfig withSchedulingPolicy(SchedulingPolicy schedulingPolicy) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param inventoryStriped true for every outlet to serve its orders from its own lease of the inventory, see
+     *                         IngredientLeases
+     * @return
+     */
+    public OutletConfig withStripedInventory(boolean inventoryStriped) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    /**
+     * @param priorityAgingNanos time after which a queued order is served as if it were one priority class higher,
+     *                           FIFO_DISPATCH to serve the orders in the order they were queued
+     * @return
+     */
+    public OutletConfig withPriorityDispatch(long priorityAgingNanos) {
+        return new OutletConfig(count, queueCapacity, overflowPolicy, executionMode, rationBatchSize,
+                rationBatchWindowNanos, schedulingPolicy, inventoryStriped, priorityAgingNanos);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public boolean isQueueBounded() {
+        return queueCapacity > UNBOUNDED;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getRationBatchSize() {
+        return rationBatchSize;
+    }
+
+    public long getRationBatchWindowNanos() {
+        return rationBatchWindowNanos;
+    }
+
+    public boolean isRationBatched() {
+        return rationBatchSize > 1;
+    }
+
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    public boolean isInventoryStriped() {
+        return inventoryStriped;
+    }
+
+    public boolean isPriorityDispatched() {
+        return priorityAgingNanos != FIFO_DISPATCH;
+    }
+
+    public long getPriorityAgingNanos() {
+        return priorityAgingNanos;
+    }
+}
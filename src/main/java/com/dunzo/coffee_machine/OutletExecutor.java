@@ -0,0 +1,102 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base of the outlets which don't own a pool of platform threads
+ * Orders wait in the machine's order queue, which is subject to the overflow policy like the one of the dedicated
+ * pool, and subclasses decide how the queued orders are dispatched. Termination is reached once the executor is shut
+ * down, the queue is empty and no dispatched work is left.
+ */
+abstract class OutletExecutor extends AbstractExecutorService {
+
+    protected final BlockingQueue<Runnable> orderQueue;
+    private final OverflowPolicy overflowPolicy;
+    //dispatched units of work which may still take orders from the queue
+    protected final AtomicInteger activeWork;
+    private final Object terminationLock;
+    private volatile boolean shutdown;
+
+    OutletExecutor(BlockingQueue<Runnable> orderQueue, OverflowPolicy overflowPolicy) {
+        this.orderQueue = orderQueue;
+        this.overflowPolicy = overflowPolicy;
+        this.activeWork = new AtomicInteger();
+        this.terminationLock = new Object();
+    }
+
+    @Override
+    public void execute(Runnable order) {
+        if (shutdown)
+            throw new RejectedExecutionException("Coffee machine is closed");
+        if (orderQueue.offer(order)) {
+            dispatch();
+        } else {
+            overflowPolicy.overflow((Order) order, orderQueue, this);
+            //the policy may have put the order in the queue itself
+            dispatch();
+        }
+    }
+
+    /**
+     * Method to make sure the queued orders will be served, called after every order is queued
+     */
+    protected abstract void dispatch();
+
+    /**
+     * Method to be called by a unit of work once it no longer takes orders from the queue
+     */
+    protected void workDone() {
+        activeWork.decrementAndGet();
+        if (isTerminated()) {
+            synchronized (terminationLock) {
+                terminationLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (isTerminated()) {
+            synchronized (terminationLock) {
+                terminationLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && activeWork.get() == 0 && orderQueue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    return false;
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a single outlet did during a discrete-event simulation
+ */
+public class OutletReport {
+
+    private final int outletIndex;
+    private final long served;
+    private final long refused;
+    private final long busyNanos;
+    private final double utilization;
+    private final LatencySummary waitSummary;
+    private final List<StockOut> stockOuts;
+
+    public OutletReport(int outletIndex, long served, long refused, long busyNanos, double utilization,
+                        LatencySummary waitSummary, List<StockOut> stockOuts) {
+        this.outletIndex = outletIndex;
+        this.served = served;
+        this.refused = refused;
+        this.busyNanos = busyNanos;
+        this.utilization = utilization;
+        this.waitSummary = waitSummary;
+        this.stockOuts = Collections.unmodifiableList(stockOuts);
+    }
+
+    public int getOutletIndex() {
+        return outletIndex;
+    }
+
+    public long getServed() {
+        return served;
+    }
+
+    /**
+     * @return orders which took this outlet but found an ingredient out of stock
+     */
+    public long getRefused() {
+        return refused;
+    }
+
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * @return share of the simulated time the outlet spent brewing, between 0 and 1
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * @return time the orders served by this outlet waited for it
+     */
+    public LatencySummary getWaitSummary() {
+        return waitSummary;
+    }
+
+    /**
+     * @return first refusal of an order for every ingredient at this outlet, in simulated time order
+     */
+    public List<StockOut> getStockOuts() {
+        return stockOuts;
+    }
+
+    @Override
+    public String toString() {
+        return "outlet " + outletIndex + ": served=" + served + ", refused=" + refused
+                + String.format(", utilization=%.1f%%", utilization * 100) + ", wait=" + waitSummary
+                + ", stockOuts=" + stockOuts;
+    }
+}
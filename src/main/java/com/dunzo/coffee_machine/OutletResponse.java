@@ -2,14 +2,34 @@ package com.dunzo.coffee_machine;
 
 /**
  * Class to collect the Response of whether the outlet was able to prepare the beverage or not
+ * Orders served by an outlet also carry their timings in nanoseconds, orders refused before reaching an outlet have
+ * all timings 0
  */
 public class OutletResponse {
     private final String beverageName;
-    private final boolean wasPrepared;
+    private final OrderStatus status;
+    private final long queueWaitNanos;
+    private final long rationNanos;
 
     public OutletResponse(String beverageName, boolean wasPrepared) {
+        this(beverageName, wasPrepared ? OrderStatus.PREPARED : OrderStatus.INSUFFICIENT_INGREDIENTS);
+    }
+
+    public OutletResponse(String beverageName, OrderStatus status) {
+        this(beverageName, status, 0, 0);
+    }
+
+    /**
+     * @param beverageName
+     * @param status
+     * @param queueWaitNanos time from the submission of the order until an outlet picked it up
+     * @param rationNanos    time taken by the inventory to ration the ingredients, including any refill
+     */
+    public OutletResponse(String beverageName, OrderStatus status, long queueWaitNanos, long rationNanos) {
         this.beverageName = beverageName;
-        this.wasPrepared = wasPrepared;
+        this.status = status;
+        this.queueWaitNanos = queueWaitNanos;
+        this.rationNanos = rationNanos;
     }
 
     public String getBeverageName() {
@@ -17,6 +37,18 @@ public class OutletResponse {
     }
 
     public boolean wasBeveragePrepared() {
-        return wasPrepared;
+        return status == OrderStatus.PREPARED;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public long getQueueWaitNanos() {
+        return queueWaitNanos;
+    }
+
+    public long getRationNanos() {
+        return rationNanos;
     }
 }
@@ -0,0 +1,55 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Outlets of a coffee machine run as logical slots on an executor shared with other machines
+ * <p>
+ * The machine owns no thread: orders wait in its order queue and at most as many slots as there are outlets are
+ * scheduled on the shared executor to serve them. A slot serves a few orders and then yields the shared thread, so
+ * that thousands of machines can share a small work-stealing pool fairly. An idle machine costs just its empty queue.
+ */
+class OutletSlotExecutor extends OutletExecutor {
+
+    //orders served by a slot before it yields the shared thread to other machines
+    private static final int ORDERS_PER_TURN = 16;
+
+    private final Executor sharedExecutor;
+    private final int slots;
+
+    OutletSlotExecutor(Executor sharedExecutor, int slots, BlockingQueue<Runnable> orderQueue, OverflowPolicy overflowPolicy) {
+        super(orderQueue, overflowPolicy);
+        this.sharedExecutor = sharedExecutor;
+        this.slots = slots;
+    }
+
+    /**
+     * Method to put idle slots to work as long as there are queued orders
+     */
+    @Override
+    protected void dispatch() {
+        while (!orderQueue.isEmpty()) {
+            int active = activeWork.get();
+            if (active >= slots)
+                return;
+            if (activeWork.compareAndSet(active, active + 1))
+                sharedExecutor.execute(this::serve);
+        }
+    }
+
+    private void serve() {
+        try {
+            for (int served = 0; served < ORDERS_PER_TURN; served++) {
+                Runnable order = orderQueue.poll();
+                if (order == null)
+                    break;
+                order.run();
+            }
+        } finally {
+            workDone();
+            //orders may have arrived after the last poll, or the turn ended with orders left
+            dispatch();
+        }
+    }
+}
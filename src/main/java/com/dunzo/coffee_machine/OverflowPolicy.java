@@ -0,0 +1,79 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+
+/**
+ * What the coffee machine does with an order when its bounded order queue is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * refuse the new order right away with a REJECTED response
+     */
+    REJECT {
+        @Override
+        void overflow(Order order, BlockingQueue<Runnable> orderQueue, ExecutorService outlets) {
+            order.refuse(OrderStatus.REJECTED);
+        }
+    },
+
+    /**
+     * make the caller wait until there is room in the queue
+     */
+    BLOCK {
+        @Override
+        void overflow(Order order, BlockingQueue<Runnable> orderQueue, ExecutorService outlets) {
+            try {
+                orderQueue.put(order);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                order.refuse(OrderStatus.REJECTED);
+                return;
+            }
+            //closed while waiting, the order may never be picked up
+            if (outlets.isShutdown() && orderQueue.remove(order))
+                throw new RejectedExecutionException("Coffee machine closed while waiting for room in the order queue");
+        }
+    },
+
+    /**
+     * drop the oldest queued order with a SHED response to make room for the new one, or the least urgent one when
+     * the outlets dispatch by priority
+     */
+    SHED_OLDEST {
+        @Override
+        void overflow(Order order, BlockingQueue<Runnable> orderQueue, ExecutorService outlets) {
+            Runnable oldest = orderQueue instanceof PriorityOrderQueue ?
+                    ((PriorityOrderQueue) orderQueue).pollLeastUrgent() : orderQueue.poll();
+            if (oldest instanceof Order)
+                ((Order) oldest).refuse(OrderStatus.SHED);
+            outlets.execute(order);
+        }
+    };
+
+    public static OverflowPolicy fromConfig(String value) {
+        return OverflowPolicy.valueOf(value.trim().toUpperCase());
+    }
+
+    /**
+     * Method to deal with an order which didn't fit in the full order queue of the outlets
+     * @param order
+     * @param orderQueue
+     * @param outlets
+     */
+    abstract void overflow(Order order, BlockingQueue<Runnable> orderQueue, ExecutorService outlets);
+
+    /**
+     * @return handler applying this policy to the orders rejected by a ThreadPoolExecutor
+     */
+    RejectedExecutionHandler asRejectedExecutionHandler() {
+        return (runnable, executor) -> {
+            if (executor.isShutdown())
+                throw new RejectedExecutionException("Coffee machine is closed");
+            overflow((Order) runnable, executor.getQueue(), executor);
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Priority class of an order, the outlets serve the classes in this order when dispatching by priority
+ */
+public enum PriorityClass {
+    //walk-in customers, served ahead of everything else
+    EXPRESS,
+    //orders submitted without a class
+    STANDARD,
+    //large batches, e.g. an office order, served when nothing more urgent is waiting
+    BULK;
+
+    public static PriorityClass fromConfig(String value) {
+        return PriorityClass.valueOf(value.trim().toUpperCase());
+    }
+}
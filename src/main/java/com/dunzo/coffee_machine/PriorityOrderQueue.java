@@ -0,0 +1,400 @@
+package com.dunzo.coffee_machine;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Order queue of the outlets dispatching by priority class and deadline instead of by arrival
+ * <p>
+ * Every priority class has its own queue ordered earliest deadline first, an order without a deadline counting as
+ * due one aging period after it was queued. An outlet takes the most urgent order of the highest class, except that
+ * a class moves up one class for every aging period its oldest queued order has waited, so a bulk backlog can't
+ * starve under a steady stream of express orders and the other way round an express order is never stuck behind it.
+ * Aging goes by the oldest order rather than the most urgent one, newer orders with earlier deadlines don't reset it.
+ * <p>
+ * The queue is bounded like the FIFO one if given a capacity, and on overflow the least urgent order of the lowest
+ * class is the one to shed. Only Orders are expected, anything else is treated as a STANDARD order with no deadline.
+ */
+class PriorityOrderQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final int capacity;
+    private final long agingNanos;
+    private final ClassQueue[] classes;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private long sequence;
+    private int count;
+
+    /**
+     * @param capacity   maximum number of queued orders, OutletConfig.UNBOUNDED for no limit
+     * @param agingNanos time after which a waiting order is served as if it were one class higher
+     */
+    PriorityOrderQueue(int capacity, long agingNanos) {
+        if (agingNanos <= 0)
+            throw new IllegalArgumentException("Aging period must be positive!");
+        this.capacity = capacity > OutletConfig.UNBOUNDED ? capacity : Integer.MAX_VALUE;
+        this.agingNanos = agingNanos;
+        this.classes = new ClassQueue[PriorityClass.values().length];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ClassQueue();
+        }
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    @Override
+    public boolean offer(Runnable order) {
+        if (order == null)
+            throw new NullPointerException();
+        lock.lock();
+        try {
+            if (count == capacity)
+                return false;
+            enqueue(order);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable order, long timeout, TimeUnit unit) throws InterruptedException {
+        if (order == null)
+            throw new NullPointerException();
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                if (remaining <= 0)
+                    return false;
+                remaining = notFull.awaitNanos(remaining);
+            }
+            enqueue(order);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable order) throws InterruptedException {
+        if (order == null)
+            throw new NullPointerException();
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                notFull.await();
+            }
+            enqueue(order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Runnable runnable) {
+        long now = System.nanoTime();
+        PriorityClass priorityClass = PriorityClass.STANDARD;
+        long due = now + agingNanos;
+        if (runnable instanceof Order) {
+            Order order = (Order) runnable;
+            priorityClass = order.getPriorityClass();
+            if (order.hasDeadline())
+                due = order.getDeadline();
+        }
+        classes[priorityClass.ordinal()].add(new Entry(runnable, due, now, sequence++));
+        count++;
+        notEmpty.signal();
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (remaining <= 0)
+                    return null;
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to take the most urgent order of the class which is the highest once aged, called with the lock held on a
+     * non-empty queue
+     * @return
+     */
+    private Runnable dequeue() {
+        Entry entry = classes[mostUrgentClass()].pollDue();
+        count--;
+        notFull.signal();
+        return entry.order;
+    }
+
+    /**
+     * Method to find the class an outlet takes its next order from, called with the lock held on a non-empty queue
+     * @return index of the class which is the highest once aged by its oldest order
+     */
+    private int mostUrgentClass() {
+        long now = System.nanoTime();
+        int chosen = -1;
+        long chosenRank = Long.MAX_VALUE;
+        for (int i = 0; i < classes.length; i++) {
+            Entry oldest = classes[i].oldest();
+            if (oldest == null)
+                continue;
+            long rank = i - (now - oldest.queuedAt) / agingNanos;
+            //ties go to the higher class, which comes first
+            if (rank < chosenRank) {
+                chosen = i;
+                chosenRank = rank;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Method to take the order to shed when the queue is full: the least urgent one of the lowest class
+     * @return the removed order, null if the queue is empty
+     */
+    Runnable pollLeastUrgent() {
+        lock.lock();
+        try {
+            for (int i = classes.length - 1; i >= 0; i--) {
+                if (!classes[i].byDue.isEmpty()) {
+                    Entry leastUrgent = classes[i].byDue.last();
+                    classes[i].remove(leastUrgent);
+                    count--;
+                    notFull.signal();
+                    return leastUrgent.order;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the order the next poll would take if nothing changes in the meantime, null if the queue is empty
+     */
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : classes[mostUrgentClass()].byDue.first().order;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object order) {
+        lock.lock();
+        try {
+            for (ClassQueue queue : classes) {
+                for (Entry entry : queue.byDue) {
+                    if (entry.order == order) {
+                        queue.remove(entry);
+                        count--;
+                        notFull.signal();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                collection.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over a copy of the queued orders, by class and not in dispatch order
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> orders = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ClassQueue queue : classes) {
+                for (Entry entry : queue.byDue) {
+                    orders.add(entry.order);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> copy = orders.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return copy.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = copy.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                PriorityOrderQueue.this.remove(last);
+            }
+        };
+    }
+
+    /**
+     * Orders of one class, by due time for the outlets and by arrival for the aging of the class
+     * Taking the most or the least urgent entry and removing a given entry are logarithmic in the due times. Entries
+     * taken out are only marked in the arrivals and dropped once they reach the head, or all at once when they
+     * outnumber the queued ones, which is constant amortized. Removing an order by itself, see remove(Object), first
+     * has to find its entry and is linear.
+     */
+    private static final class ClassQueue {
+
+        private final TreeSet<Entry> byDue = new TreeSet<>();
+        private final ArrayDeque<Entry> byArrival = new ArrayDeque<>();
+
+        void add(Entry entry) {
+            byDue.add(entry);
+            byArrival.addLast(entry);
+        }
+
+        /**
+         * @return the order queued first among the ones still queued, null if the class is empty
+         */
+        Entry oldest() {
+            Entry oldest;
+            while ((oldest = byArrival.peekFirst()) != null && oldest.removed) {
+                byArrival.pollFirst();
+            }
+            return oldest;
+        }
+
+        Entry pollDue() {
+            Entry entry = byDue.pollFirst();
+            removed(entry);
+            return entry;
+        }
+
+        void remove(Entry entry) {
+            byDue.remove(entry);
+            removed(entry);
+        }
+
+        private void removed(Entry entry) {
+            entry.removed = true;
+            if (byArrival.size() > 2 * byDue.size() + 16)
+                byArrival.removeIf(queued -> queued.removed);
+        }
+    }
+
+    /**
+     * A queued order, ordered by due time and then by arrival within its class, the sequence makes every entry unique
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final Runnable order;
+        private final long due;
+        private final long queuedAt;
+        private final long sequence;
+        //taken out of the queue, guarded by the lock of the queue
+        private boolean removed;
+
+        private Entry(Runnable order, long due, long queuedAt, long sequence) {
+            this.order = order;
+            this.due = due;
+            this.queuedAt = queuedAt;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            //nanoTime values are compared by their difference, they may overflow
+            long difference = due - other.due;
+            if (difference != 0)
+                return difference < 0 ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
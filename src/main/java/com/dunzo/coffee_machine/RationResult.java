@@ -0,0 +1,67 @@
+package com.dunzo.coffee_machine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of rationing a recipe from the inventory
+ * Used instead of throwing an exception on the failure path: a failed ration is an expected outcome, not an error,
+ * and building a result is far cheaper than filling in a stack trace. A successful ration always returns the shared
+ * SUCCESS instance, so the success path does not allocate.
+ */
+public final class RationResult {
+
+    public static final RationResult SUCCESS = new RationResult(new int[0], false);
+
+    private final int[] insufficientIngredientIds;
+    private final boolean infeasible;
+
+    private RationResult(int[] insufficientIngredientIds, boolean infeasible) {
+        this.insufficientIngredientIds = insufficientIngredientIds;
+        this.infeasible = infeasible;
+    }
+
+    /**
+     * @param insufficientIngredientIds ingredients which are not present in the required quantity right now
+     * @return
+     */
+    static RationResult insufficient(int[] insufficientIngredientIds) {
+        return new RationResult(insufficientIngredientIds, false);
+    }
+
+    /**
+     * @param insufficientIngredientIds ingredients which can't be provided even after using up the refill pack
+     * @return
+     */
+    static RationResult infeasible(int[] insufficientIngredientIds) {
+        return new RationResult(insufficientIngredientIds, true);
+    }
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    /**
+     * @return true if the recipe can't be made with the current stock and the remaining refill pack, so a refill
+     * is pointless
+     */
+    public boolean isInfeasible() {
+        return infeasible;
+    }
+
+    public int[] getInsufficientIngredientIds() {
+        return insufficientIngredientIds.clone();
+    }
+
+    /**
+     * @param ingredientRegistry
+     * @return names of the insufficient ingredients
+     */
+    public List<String> getInsufficientIngredients(IngredientRegistry ingredientRegistry) {
+        List<String> insufficientIngredients = new ArrayList<>(insufficientIngredientIds.length);
+        for (int id : insufficientIngredientIds) {
+            insufficientIngredients.add(ingredientRegistry.nameOf(id));
+        }
+        return insufficientIngredients;
+    }
+}
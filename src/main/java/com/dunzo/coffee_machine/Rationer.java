@@ -0,0 +1,14 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Stage the outlets go through to ration a recipe instead of calling the InventoryManager directly, see
+ * BatchRationer and IngredientLeases
+ */
+interface Rationer {
+
+    /**
+     * @param recipe
+     * @return same as {@link InventoryManager#tryRation(Recipe)}
+     */
+    RationResult ration(Recipe recipe);
+}
@@ -0,0 +1,110 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable compiled form of a beverage recipe
+ * Ingredients are kept as parallel id/quantity vectors sorted by ingredient id, so that the inventory manager can
+ * check and deduct them with plain primitive loops and always visits ingredients in the same order
+ */
+public final class Recipe {
+
+    private final String beverageName;
+    private final int[] ingredientIds;
+    private final int[] quantities;
+
+    private Recipe(String beverageName, int[] ingredientIds, int[] quantities) {
+        this.beverageName = beverageName;
+        this.ingredientIds = ingredientIds;
+        this.quantities = quantities;
+    }
+
+    /**
+     * Method to compile the ingredients of a beverage against the given registry
+     * Ingredients not known to the registry yet are registered, they may become available through a refill
+     *
+     * @param beverageName
+     * @param ingredientsRequired
+     * @param ingredientRegistry
+     * @return
+     */
+    public static Recipe compile(String beverageName, Map<String, Integer> ingredientsRequired, IngredientRegistry ingredientRegistry) {
+        int[] ingredientIds = new int[ingredientsRequired.size()];
+        int[] quantities = new int[ingredientsRequired.size()];
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : ingredientsRequired.entrySet()) {
+            ingredientIds[size] = ingredientRegistry.register(entry.getKey());
+            quantities[size++] = entry.getValue();
+        }
+        return fromVectors(beverageName, ingredientIds, quantities, size);
+    }
+
+    /**
+     * Method to build a recipe from the first size entries of parallel id/quantity vectors, which are not retained
+     * If an ingredient appears more than once the last quantity wins, like it would in a map
+     *
+     * @param beverageName
+     * @param ingredientIds
+     * @param quantities
+     * @param size
+     * @return
+     */
+    static Recipe fromVectors(String beverageName, int[] ingredientIds, int[] quantities, int size) {
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            if (quantities[i] < 0)
+                throw new IllegalArgumentException("Quantity of ingredient " + ingredientIds[i] + " in " + beverageName + " can't be negative!");
+            packed[i] = ((long) ingredientIds[i] << 32) | i;
+        }
+        //sorted by ingredient id, then by position in the input
+        Arrays.sort(packed);
+        int[] sortedIds = new int[size];
+        int[] sortedQuantities = new int[size];
+        int count = 0;
+        for (long entry : packed) {
+            int ingredientId = (int) (entry >>> 32);
+            int quantity = quantities[(int) entry];
+            if (count > 0 && sortedIds[count - 1] == ingredientId) {
+                sortedQuantities[count - 1] = quantity;
+            } else {
+                sortedIds[count] = ingredientId;
+                sortedQuantities[count++] = quantity;
+            }
+        }
+        return new Recipe(beverageName, Arrays.copyOf(sortedIds, count), Arrays.copyOf(sortedQuantities, count));
+    }
+
+    public String getBeverageName() {
+        return beverageName;
+    }
+
+    /**
+     * @return number of ingredients in the recipe
+     */
+    public int size() {
+        return ingredientIds.length;
+    }
+
+    public int ingredientIdAt(int index) {
+        return ingredientIds[index];
+    }
+
+    public int quantityAt(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Method to get the ingredients back as a map, used for logging and by the Map based APIs
+     * @param ingredientRegistry
+     * @return
+     */
+    public Map<String, Integer> toMap(IngredientRegistry ingredientRegistry) {
+        Map<String, Integer> ingredients = new LinkedHashMap<>();
+        for (int i = 0; i < ingredientIds.length; i++) {
+            ingredients.put(ingredientRegistry.nameOf(ingredientIds[i]), quantities[i]);
+        }
+        return ingredients;
+    }
+}
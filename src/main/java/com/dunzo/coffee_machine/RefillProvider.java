@@ -1,39 +1,50 @@
 package com.dunzo.coffee_machine;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class to provide refill items if available in the input
+ * <p>
+ * Every coffee machine has its own RefillProvider. The refill stock is kept in atomic counters indexed by the
+ * ingredient id of the machine's IngredientRegistry, so outlets refill concurrently without any lock. A refill hands
+ * out only the shortfall a recipe needs: the shortfall of every ingredient is first reserved from the refill stock,
+ * all-or-nothing, and only then committed to the inventory.
  */
 public class RefillProvider {
-    private static Map<String, Integer> refillStore;
 
-    public static RefillProvider createEmpty() {
-        return new RefillProvider();
+    private final IngredientRegistry ingredientRegistry;
+    private final IngredientCounters refillStore;
+    private final LongAdder shortfallRefills = new LongAdder();
+
+    public RefillProvider(IngredientRegistry ingredientRegistry, Map<String, Integer> refillPack) {
+        refillPack.keySet().forEach(ingredientRegistry::register);
+        this.ingredientRegistry = ingredientRegistry;
+        int[] quantities = new int[ingredientRegistry.size()];
+        refillPack.forEach((ingredient, quantity) -> quantities[ingredientRegistry.idOf(ingredient)] = quantity);
+        this.refillStore = new AtomicIngredientCounters(ingredientRegistry, quantities);
     }
 
     /**
-     * initializes the refillStore from the refill_pack of the input
-     * @param inputJson
-     * @param objectMapper
-     * @throws JsonProcessingException
+     * @param ingredientRegistry
+     * @param refillPack refill quantity of every ingredient indexed by ingredient id
      */
-    public static void initRefillProvider(String inputJson, ObjectMapper objectMapper) throws JsonProcessingException {
-        JsonNode refillPackNode = objectMapper.readTree(inputJson).get(ApplicationConstants.MACHINE).get(ApplicationConstants.REFILL_PACK);
-        refillStore = new HashMap<>();
-        if (refillPackNode != null) {
-            objectMapper.convertValue(refillPackNode, new TypeReference<Map<String, Integer>>() {}).forEach(
-                    (ingredient, quantity) -> {
-                        refillStore.put(ingredient, quantity);
-                    }
-            );
-        }
+    public RefillProvider(IngredientRegistry ingredientRegistry, int[] refillPack) {
+        this(ingredientRegistry, new AtomicIngredientCounters(ingredientRegistry, refillPack));
+    }
+
+    /**
+     * @param ingredientRegistry
+     * @param refillStore counters holding the refill quantity of every ingredient
+     */
+    RefillProvider(IngredientRegistry ingredientRegistry, IngredientCounters refillStore) {
+        this.ingredientRegistry = ingredientRegistry;
+        this.refillStore = refillStore;
+    }
+
+    public static RefillProvider createEmpty(IngredientRegistry ingredientRegistry) {
+        return new RefillProvider(ingredientRegistry, new int[0]);
     }
 
     /**
@@ -41,19 +52,125 @@ public class RefillProvider {
      * @param ingredient
      * @return
      */
-    public static boolean ingredientAvailable(String ingredient) {
-        return refillStore.containsKey(ingredient) && refillStore.get(ingredient).compareTo(0) > 0;
+    public boolean ingredientAvailable(String ingredient) {
+        int id = ingredientRegistry.idOf(ingredient);
+        return id != IngredientRegistry.UNKNOWN && remainingQuantity(id) > 0;
     }
 
     /**
-     * Method to get ingredient from the refill store
-     * Used by the inventory manager to replenish the inventory
-     * @param ingredient
+     * Method to check how much of the ingredient is left in the refill store, without taking it
+     * @param ingredientId
+     * @return remaining quantity, 0 if the ingredient is not part of the refill pack
+     */
+    public int remainingQuantity(int ingredientId) {
+        return refillStore.get(ingredientId);
+    }
+
+    /**
+     * Method to take up to the given quantity of the ingredient from the refill store
+     * @param ingredientId
+     * @param quantity
+     * @return quantity actually taken, less than asked for if the refill store is running out
+     */
+    public int take(int ingredientId, int quantity) {
+        if (ingredientId >= refillStore.length() || quantity <= 0)
+            return 0;
+        while (true) {
+            int remainingQuantity = refillStore.get(ingredientId);
+            int taken = Math.min(remainingQuantity, quantity);
+            if (taken == 0 || refillStore.compareAndSet(ingredientId, remainingQuantity, remainingQuantity - taken))
+                return taken;
+        }
+    }
+
+    /**
+     * Method to refill the inventory with just enough of every ingredient for the recipe to be rationed
+     * The shortfall of every ingredient is reserved first and committed to the inventory only if the whole
+     * shortfall could be reserved, otherwise the reservations are released and nothing is refilled
+     *
+     * @param recipe
+     * @param inventoryManager
+     * @return RationResult.SUCCESS if the shortfall was refilled, an infeasible result with the ingredients the
+     * refill store can't make up for otherwise
+     */
+    public RationResult refillShortfall(Recipe recipe, InventoryManager inventoryManager) {
+        return refillShortfall(recipe, inventoryManager, OrderJournal.NONE, 0);
+    }
+
+    /**
+     * Method to refill the shortfall of the recipe for the given order, every committed refill is recorded in the
+     * journal
+     *
+     * @param recipe
+     * @param inventoryManager
+     * @param orderJournal
+     * @param orderId
      * @return
      */
-    public static Integer getIngredient(String ingredient) {
-        Integer foundQuantity = refillStore.get(ingredient);
-        refillStore.compute(ingredient, (item, availableQuantity) -> 0);
-        return foundQuantity;
+    public RationResult refillShortfall(Recipe recipe, InventoryManager inventoryManager, OrderJournal orderJournal,
+                                        long orderId) {
+        shortfallRefills.increment();
+        int[] reserved = new int[recipe.size()];
+        for (int i = 0; i < recipe.size(); i++) {
+            int ingredientId = recipe.ingredientIdAt(i);
+            int shortfall = recipe.quantityAt(i) - inventoryManager.getQuantity(ingredientId);
+            if (shortfall > 0 && !reserve(ingredientId, shortfall)) {
+                release(recipe, reserved, i, inventoryManager);
+                return shortIngredients(recipe, inventoryManager);
+            }
+            reserved[i] = Math.max(shortfall, 0);
+        }
+        //commit
+        for (int i = 0; i < recipe.size(); i++) {
+            if (reserved[i] > 0) {
+                inventoryManager.refillFromPack(recipe.ingredientIdAt(i), reserved[i]);
+                orderJournal.refilled(orderId, recipe.ingredientIdAt(i), reserved[i]);
+            }
+        }
+        return RationResult.SUCCESS;
+    }
+
+    /**
+     * @return number of times a recipe asked for its shortfall to be refilled
+     */
+    public long getShortfallRefills() {
+        return shortfallRefills.sum();
+    }
+
+    private boolean reserve(int ingredientId, int quantity) {
+        if (ingredientId >= refillStore.length())
+            return false;
+        while (true) {
+            int remainingQuantity = refillStore.get(ingredientId);
+            if (remainingQuantity < quantity)
+                return false;
+            if (refillStore.compareAndSet(ingredientId, remainingQuantity, remainingQuantity - quantity))
+                return true;
+        }
+    }
+
+    private void release(Recipe recipe, int[] reserved, int count, InventoryManager inventoryManager) {
+        for (int i = 0; i < count; i++) {
+            if (reserved[i] > 0) {
+                refillStore.addAndGet(recipe.ingredientIdAt(i), reserved[i]);
+                //the quantity was out of the refill pack for a moment, listeners may have seen it missing
+                inventoryManager.refillPackRestored(recipe.ingredientIdAt(i));
+            }
+        }
+    }
+
+    private RationResult shortIngredients(Recipe recipe, InventoryManager inventoryManager) {
+        int[] shortIngredients = new int[recipe.size()];
+        int count = 0;
+        for (int i = 0; i < recipe.size(); i++) {
+            int ingredientId = recipe.ingredientIdAt(i);
+            if ((long) inventoryManager.getQuantity(ingredientId) + remainingQuantity(ingredientId) < recipe.quantityAt(i))
+                shortIngredients[count++] = ingredientId;
+        }
+        if (count == 0) {
+            //another outlet refilled or consumed concurrently, nothing is short for good
+            return RationResult.insufficient(new int[0]);
+        }
+        return RationResult.infeasible(Arrays.copyOf(shortIngredients, count));
     }
-}
\ No newline at end of file
+}
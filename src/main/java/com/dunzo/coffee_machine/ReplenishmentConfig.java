@@ -0,0 +1,53 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the predictive replenishment, read from the replenishment section of the input
+ */
+public final class ReplenishmentConfig {
+
+    public static final long DEFAULT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    public static final long DEFAULT_HORIZON_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final double DEFAULT_SMOOTHING = 0.3;
+
+    private final long intervalNanos;
+    private final long horizonNanos;
+    private final double smoothing;
+    private final Map<String, Integer> lowWaterMarks;
+
+    /**
+     * @param intervalNanos how often the stock is checked
+     * @param horizonNanos  how far ahead the demand is forecast
+     * @param smoothing     weight of the latest interval in the consumption rate, between 0 and 1
+     * @param lowWaterMarks stock below which an ingredient is replenished whatever its forecast, by ingredient name
+     */
+    public ReplenishmentConfig(long intervalNanos, long horizonNanos, double smoothing, Map<String, Integer> lowWaterMarks) {
+        if (intervalNanos <= 0 || horizonNanos < 0)
+            throw new IllegalArgumentException("Replenishment interval must be positive and horizon can't be negative!");
+        if (smoothing <= 0 || smoothing > 1)
+            throw new IllegalArgumentException("Replenishment smoothing must be in (0, 1]!");
+        this.intervalNanos = intervalNanos;
+        this.horizonNanos = horizonNanos;
+        this.smoothing = smoothing;
+        this.lowWaterMarks = Collections.unmodifiableMap(lowWaterMarks);
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    public long getHorizonNanos() {
+        return horizonNanos;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public Map<String, Integer> getLowWaterMarks() {
+        return lowWaterMarks;
+    }
+}
@@ -0,0 +1,150 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background service to move stock from the refill pack into the inventory ahead of demand, so that outlets rarely
+ * have to fail a ration, refill the shortfall and retry
+ * <p>
+ * Every interval the service reads the stock and the remaining refill pack of every ingredient. Whatever left both
+ * since the previous check was consumed, and the consumption rate is smoothed with an exponentially weighted moving
+ * average. An ingredient whose stock is below its low-water mark, the larger of the configured mark and the demand
+ * forecast over the horizon, is topped up to the mark plus another horizon of demand, as far as the refill pack
+ * allows. Refills are plain additions to the lock-free counters, so they go on concurrently with rationing.
+ * <p>
+ * Orders which still had to refill their shortfall themselves are reported as too late.
+ */
+public class ReplenishmentService implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplenishmentService.class);
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+    private final ReplenishmentConfig replenishmentConfig;
+    private final long shortfallRefillsAtStart;
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder refilledQuantity = new LongAdder();
+    //state of the checks, only touched by the thread running them
+    private boolean checked;
+    private long lastCheckedAt;
+    private long[] lastStock = new long[0];
+    private double[] ratePerNano = new double[0];
+    private int[] lowWaterMarks = new int[0];
+    private volatile ScheduledExecutorService scheduler;
+
+    public ReplenishmentService(InventoryManager inventoryManager, RefillProvider refillProvider,
+                                ReplenishmentConfig replenishmentConfig) {
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+        this.replenishmentConfig = replenishmentConfig;
+        this.shortfallRefillsAtStart = refillProvider.getShortfallRefills();
+    }
+
+    /**
+     * Method to start checking the stock at the configured interval on a daemon thread
+     * @return this service
+     */
+    public ReplenishmentService start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replenishment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replenish(System.nanoTime());
+        scheduler.scheduleAtFixedRate(() -> replenish(System.nanoTime()), replenishmentConfig.getIntervalNanos(),
+                replenishmentConfig.getIntervalNanos(), TimeUnit.NANOSECONDS);
+        return this;
+    }
+
+    /**
+     * Method to update the consumption rates and top up the ingredients running low, called at every interval
+     * The first call only records the stock
+     * @param now System.nanoTime() of the check
+     */
+    public synchronized void replenish(long now) {
+        IngredientRegistry ingredientRegistry = inventoryManager.getIngredientRegistry();
+        int ingredients = ingredientRegistry.size();
+        if (lastStock.length < ingredients)
+            grow(ingredients, ingredientRegistry);
+        long elapsed = Math.max(1, now - lastCheckedAt);
+        double smoothing = replenishmentConfig.getSmoothing();
+        long horizon = replenishmentConfig.getHorizonNanos();
+        for (int id = 0; id < ingredients; id++) {
+            //stock moved from the refill pack into the inventory shows up in neither
+            long stock = (long) inventoryManager.getQuantity(id) + refillProvider.remainingQuantity(id);
+            if (checked) {
+                double rate = (double) Math.max(0, lastStock[id] - stock) / elapsed;
+                ratePerNano[id] = smoothing * rate + (1 - smoothing) * ratePerNano[id];
+            }
+            lastStock[id] = stock;
+            long forecast = (long) Math.ceil(ratePerNano[id] * horizon);
+            long lowWaterMark = Math.max(lowWaterMarks[id], forecast);
+            int quantity = inventoryManager.getQuantity(id);
+            if (quantity < lowWaterMark)
+                topUp(id, lowWaterMark + forecast - quantity);
+        }
+        lastCheckedAt = now;
+        checked = true;
+    }
+
+    private void topUp(int ingredientId, long quantity) {
+        int taken = refillProvider.take(ingredientId, (int) Math.min(Integer.MAX_VALUE, quantity));
+        if (taken > 0) {
+            inventoryManager.refillFromPack(ingredientId, taken);
+            refills.increment();
+            refilledQuantity.add(taken);
+        }
+    }
+
+    private void grow(int ingredients, IngredientRegistry ingredientRegistry) {
+        int known = lastStock.length;
+        lastStock = Arrays.copyOf(lastStock, ingredients);
+        ratePerNano = Arrays.copyOf(ratePerNano, ingredients);
+        lowWaterMarks = Arrays.copyOf(lowWaterMarks, ingredients);
+        for (int id = known; id < ingredients; id++) {
+            lastStock[id] = (long) inventoryManager.getQuantity(id) + refillProvider.remainingQuantity(id);
+            Integer lowWaterMark = replenishmentConfig.getLowWaterMarks().get(ingredientRegistry.nameOf(id));
+            lowWaterMarks[id] = lowWaterMark == null ? 0 : lowWaterMark;
+        }
+    }
+
+    /**
+     * @return consumption rate of the ingredient per second as last estimated
+     */
+    public synchronized double getConsumptionRate(int ingredientId) {
+        return ingredientId < ratePerNano.length ? ratePerNano[ingredientId] * TimeUnit.SECONDS.toNanos(1) : 0;
+    }
+
+    /**
+     * @return number of times an ingredient was topped up ahead of demand
+     */
+    public long getRefills() {
+        return refills.sum();
+    }
+
+    public long getRefilledQuantity() {
+        return refilledQuantity.sum();
+    }
+
+    /**
+     * @return number of orders which still had to refill their shortfall themselves since the service was created
+     */
+    public long getTooLate() {
+        return refillProvider.getShortfallRefills() - shortfallRefillsAtStart;
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService runningScheduler = scheduler;
+        if (runningScheduler != null)
+            runningScheduler.shutdownNow();
+        LOGGER.info("Replenished {} ahead of demand in {} refills, {} orders were still too late",
+                getRefilledQuantity(), getRefills(), getTooLate());
+    }
+}
@@ -0,0 +1,59 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Outcome of planning a window of orders with the OrderScheduler
+ * Orders are referred to by their position in the window
+ */
+public final class SchedulePlan {
+
+    private final int[] admissionOrder;
+    private final boolean[] admitted;
+    private final int fifoServed;
+
+    SchedulePlan(int[] admissionOrder, int windowSize, int fifoServed) {
+        this.admissionOrder = admissionOrder;
+        this.admitted = new boolean[windowSize];
+        for (int index : admissionOrder) {
+            admitted[index] = true;
+        }
+        this.fifoServed = fifoServed;
+    }
+
+    /**
+     * @return positions of the admitted orders in the order they should be queued
+     */
+    public int[] getAdmissionOrder() {
+        return admissionOrder.clone();
+    }
+
+    /**
+     * @param index position of the order in the window
+     * @return true if the order is part of the plan
+     */
+    public boolean isAdmitted(int index) {
+        return admitted[index];
+    }
+
+    public int getWindowSize() {
+        return admitted.length;
+    }
+
+    /**
+     * @return number of beverages served by the plan
+     */
+    public int getServed() {
+        return admissionOrder.length;
+    }
+
+    /**
+     * @return number of beverages the same stock would serve if the orders were admitted in the order of submission
+     */
+    public int getFifoServed() {
+        return fifoServed;
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulePlan{served=" + getServed() + ", fifoServed=" + fifoServed + ", window=" + admitted.length + '}';
+    }
+}
@@ -0,0 +1,15 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * How the coffee machine orders a window of orders submitted together before they are queued at the outlets
+ */
+public enum SchedulingPolicy {
+    //orders are queued in the order they were submitted
+    FIFO,
+    //orders are planned by the OrderScheduler to serve as many beverages as the stock and the refill pack allow
+    YIELD;
+
+    public static SchedulingPolicy fromConfig(String value) {
+        return SchedulingPolicy.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,77 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Inventory and refill pack of a coffee machine shared by every process on the host which opens the same file
+ * <p>
+ * The counters live in a memory-mapped InventoryFile and every ration and refill is a compare-and-set on the mapped
+ * memory, so the processes feeding the same physical machine agree on its stock without a broker. The first process
+ * to open the file stocks it from its machine definition, the others find the stock as it is. Each process still has
+ * its own outlets, and the listeners of its inventory only hear about the changes made by that process.
+ */
+public class SharedInventory implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedInventory.class);
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final InventoryFile inventoryFile;
+    private final InventoryManager inventoryManager;
+    private final RefillProvider refillProvider;
+
+    private SharedInventory(InventoryFile inventoryFile, InventoryManager inventoryManager,
+                            RefillProvider refillProvider) {
+        this.inventoryFile = inventoryFile;
+        this.inventoryManager = inventoryManager;
+        this.refillProvider = refillProvider;
+    }
+
+    /**
+     * Method to open the shared inventory of the given machine definition
+     * @param file              inventory file, created if needed
+     * @param machineDefinition
+     * @return
+     * @throws IOException
+     */
+    public static SharedInventory open(Path file, MachineDefinition machineDefinition) throws IOException {
+        return open(file, machineDefinition, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param file              inventory file, created if needed
+     * @param machineDefinition
+     * @param capacity          maximum number of ingredients if the file is created
+     * @return
+     * @throws IOException
+     */
+    public static SharedInventory open(Path file, MachineDefinition machineDefinition, int capacity) throws IOException {
+        IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        InventoryFile inventoryFile = InventoryFile.open(file, ingredientRegistry, capacity,
+                machineDefinition.getItemsQuantity(), machineDefinition.getRefillPack());
+        LOGGER.info("Opened the shared inventory {}", file);
+        return new SharedInventory(inventoryFile,
+                new InventoryManager(ingredientRegistry, inventoryFile.counters(InventoryFile.STOCK)),
+                new RefillProvider(ingredientRegistry, inventoryFile.counters(InventoryFile.REFILL_PACK)));
+    }
+
+    public InventoryManager getInventoryManager() {
+        return inventoryManager;
+    }
+
+    public RefillProvider getRefillProvider() {
+        return refillProvider;
+    }
+
+    /**
+     * Method to flush the counters and release the file, the inventory stays in the file for the other processes
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        inventoryFile.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the discrete-event simulation, read from the simulation section of the input
+ * Brew times and the order mix are given by beverage name, beverages without a brew time take the default one and
+ * the order mix is uniform unless weights are given
+ */
+public final class SimulationConfig {
+
+    public static final long DEFAULT_ORDERS = 1000;
+    public static final double DEFAULT_ARRIVALS_PER_HOUR = 400;
+    public static final long DEFAULT_BREW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final long orders;
+    private final ArrivalProcess arrivalProcess;
+    private final double arrivalsPerHour;
+    private final long seed;
+    private final long defaultBrewNanos;
+    private final Map<String, Long> brewNanos;
+    private final Map<String, Integer> mix;
+
+    /**
+     * @param orders           number of orders to simulate
+     * @param arrivalProcess
+     * @param arrivalsPerHour  mean arrival rate of the orders
+     * @param seed             seed of the arrivals and of the order mix, the same seed gives the same simulation
+     * @param defaultBrewNanos brew time of the beverages without one of their own
+     * @param brewNanos        brew time by beverage name
+     * @param mix              relative weight of every beverage in the orders by beverage name, empty for a uniform mix
+     */
+    public SimulationConfig(long orders, ArrivalProcess arrivalProcess, double arrivalsPerHour, long seed,
+                            long defaultBrewNanos, Map<String, Long> brewNanos, Map<String, Integer> mix) {
+        if (orders < 0 || arrivalsPerHour <= 0 || defaultBrewNanos < 0)
+            throw new IllegalArgumentException("Simulated orders, arrival rate and brew time must be positive!");
+        this.orders = orders;
+        this.arrivalProcess = arrivalProcess;
+        this.arrivalsPerHour = arrivalsPerHour;
+        this.seed = seed;
+        this.defaultBrewNanos = defaultBrewNanos;
+        this.brewNanos = Collections.unmodifiableMap(brewNanos);
+        this.mix = Collections.unmodifiableMap(mix);
+    }
+
+    public static SimulationConfig defaults() {
+        return new SimulationConfig(DEFAULT_ORDERS, ArrivalProcess.POISSON, DEFAULT_ARRIVALS_PER_HOUR, 0,
+                DEFAULT_BREW_NANOS, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param orders number of orders to simulate
+     * @return same configuration with another number of orders
+     */
+    public SimulationConfig withOrders(long orders) {
+        return new SimulationConfig(orders, arrivalProcess, arrivalsPerHour, seed, defaultBrewNanos, brewNanos, mix);
+    }
+
+    /**
+     * @param arrivalsPerHour mean arrival rate of the orders
+     * @return same configuration with another arrival rate
+     */
+    public SimulationConfig withArrivalsPerHour(double arrivalsPerHour) {
+        return new SimulationConfig(orders, arrivalProcess, arrivalsPerHour, seed, defaultBrewNanos, brewNanos, mix);
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public ArrivalProcess getArrivalProcess() {
+        return arrivalProcess;
+    }
+
+    public double getArrivalsPerHour() {
+        return arrivalsPerHour;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param beverageName
+     * @return brew time of the beverage in nanoseconds
+     */
+    public long getBrewNanos(String beverageName) {
+        Long nanos = brewNanos.get(beverageName);
+        return nanos == null ? defaultBrewNanos : nanos;
+    }
+
+    /**
+     * @param beverageName
+     * @return relative weight of the beverage in the orders
+     */
+    public int getWeight(String beverageName) {
+        if (mix.isEmpty())
+            return 1;
+        Integer weight = mix.get(beverageName);
+        return weight == null ? 0 : weight;
+    }
+}
@@ -0,0 +1,111 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a discrete-event simulation of a coffee machine
+ */
+public class SimulationReport {
+
+    private final long orders;
+    private final long served;
+    private final long refusedAtAdmission;
+    private final long simulatedNanos;
+    private final long events;
+    private final long elapsedNanos;
+    private final LatencySummary waitSummary;
+    private final List<OutletReport> outletReports;
+    private final List<StockOut> admissionStockOuts;
+
+    public SimulationReport(long orders, long served, long refusedAtAdmission, long simulatedNanos, long events,
+                            long elapsedNanos, LatencySummary waitSummary, List<OutletReport> outletReports,
+                            List<StockOut> admissionStockOuts) {
+        this.orders = orders;
+        this.served = served;
+        this.refusedAtAdmission = refusedAtAdmission;
+        this.simulatedNanos = simulatedNanos;
+        this.events = events;
+        this.elapsedNanos = elapsedNanos;
+        this.waitSummary = waitSummary;
+        this.outletReports = Collections.unmodifiableList(outletReports);
+        this.admissionStockOuts = Collections.unmodifiableList(admissionStockOuts);
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public long getServed() {
+        return served;
+    }
+
+    /**
+     * @return orders refused on arrival because neither the stock nor the refill pack could make them
+     */
+    public long getRefusedAtAdmission() {
+        return refusedAtAdmission;
+    }
+
+    /**
+     * @return simulated time from the start until the last order was done
+     */
+    public long getSimulatedNanos() {
+        return simulatedNanos;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return wall clock time the simulation took
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return time the served orders waited for an outlet, over all the outlets
+     */
+    public LatencySummary getWaitSummary() {
+        return waitSummary;
+    }
+
+    public List<OutletReport> getOutletReports() {
+        return outletReports;
+    }
+
+    /**
+     * @return first refusal at admission for every ingredient, in simulated time order
+     */
+    public List<StockOut> getAdmissionStockOuts() {
+        return admissionStockOuts;
+    }
+
+    /**
+     * @return mean utilization of the outlets, between 0 and 1
+     */
+    public double getUtilization() {
+        double utilization = 0;
+        for (OutletReport outletReport : outletReports) {
+            utilization += outletReport.getUtilization();
+        }
+        return outletReports.isEmpty() ? 0 : utilization / outletReports.size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("orders=").append(orders).append(", served=").append(served)
+                .append(", refusedAtAdmission=").append(refusedAtAdmission)
+                .append(", simulated=").append(TimeUnit.NANOSECONDS.toSeconds(simulatedNanos)).append('s')
+                .append(", events=").append(events)
+                .append(", elapsed=").append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms")
+                .append(String.format(", utilization=%.1f%%", getUtilization() * 100))
+                .append(", wait=").append(waitSummary)
+                .append(", admissionStockOuts=").append(admissionStockOuts);
+        outletReports.forEach(outletReport -> report.append(System.lineSeparator()).append(outletReport));
+        return report.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.dunzo.coffee_machine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point of the simulated time at which an order was first refused for lack of an ingredient
+ */
+public final class StockOut {
+
+    private final long timeNanos;
+    private final String ingredient;
+    private final String beverageName;
+
+    public StockOut(long timeNanos, String ingredient, String beverageName) {
+        this.timeNanos = timeNanos;
+        this.ingredient = ingredient;
+        this.beverageName = beverageName;
+    }
+
+    /**
+     * @return simulated time since the start of the simulation
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    public String getIngredient() {
+        return ingredient;
+    }
+
+    /**
+     * @return beverage of the order which was refused
+     */
+    public String getBeverageName() {
+        return beverageName;
+    }
+
+    @Override
+    public String toString() {
+        return ingredient + "@" + TimeUnit.NANOSECONDS.toSeconds(timeNanos) + "s(" + beverageName + ")";
+    }
+}
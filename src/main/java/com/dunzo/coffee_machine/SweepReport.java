@@ -0,0 +1,73 @@
+package com.dunzo.coffee_machine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of a configuration sweep, one per point in the order of the SweepSpace, and the Pareto-optimal ones
+ */
+public class SweepReport {
+
+    private final List<SweepResult> results;
+    private final List<SweepResult> paretoFront;
+    private final long elapsedNanos;
+
+    SweepReport(List<SweepResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.paretoFront = Collections.unmodifiableList(paretoFront(results));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * the configurations no other configuration dominates, see SweepResult#dominates
+     */
+    private static List<SweepResult> paretoFront(List<SweepResult> results) {
+        List<SweepResult> paretoFront = new ArrayList<>();
+        for (SweepResult candidate : results) {
+            boolean dominated = false;
+            for (int i = 0; i < results.size() && !dominated; i++) {
+                dominated = results.get(i).dominates(candidate);
+            }
+            if (!dominated)
+                paretoFront.add(candidate);
+        }
+        return paretoFront;
+    }
+
+    public List<SweepResult> getResults() {
+        return results;
+    }
+
+    public List<SweepResult> getParetoFront() {
+        return paretoFront;
+    }
+
+    /**
+     * @return wall clock time of the whole sweep
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Method to render the results as a text table, the Pareto-optimal configurations are marked with a *
+     * @return
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-7s %-11s %-12s %-12s %-9s %-9s %-12s %-14s %s%n", "outlets", "stock_scale",
+                "refill_scale", "provisioned", "orders", "served", "served_ratio", "throughput/h", "p99_wait_s"));
+        for (SweepResult result : results) {
+            SimulationReport simulationReport = result.getSimulationReport();
+            table.append(String.format("%-7d %-11.3f %-12.3f %-12d %-9d %-9d %-12.4f %-14.1f %.1f%s%n",
+                    result.getOutlets(), result.getStockScale(), result.getRefillScale(),
+                    result.getProvisionedQuantity(), simulationReport.getOrders(), simulationReport.getServed(),
+                    result.getServedRatio(), result.getThroughputPerHour(),
+                    (double) simulationReport.getWaitSummary().getP99() / TimeUnit.SECONDS.toNanos(1),
+                    paretoFront.contains(result) ? " *" : ""));
+        }
+        return table.toString();
+    }
+}
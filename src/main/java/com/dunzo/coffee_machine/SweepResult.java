@@ -0,0 +1,77 @@
+package com.dunzo.coffee_machine;
+
+/**
+ * Outcome of the simulation of a single point of a configuration sweep
+ */
+public class SweepResult {
+
+    private static final double NANOS_PER_HOUR = 3_600_000_000_000d;
+
+    private final int outlets;
+    private final double stockScale;
+    private final double refillScale;
+    private final long provisionedQuantity;
+    private final SimulationReport simulationReport;
+
+    SweepResult(int outlets, double stockScale, double refillScale, long provisionedQuantity,
+                SimulationReport simulationReport) {
+        this.outlets = outlets;
+        this.stockScale = stockScale;
+        this.refillScale = refillScale;
+        this.provisionedQuantity = provisionedQuantity;
+        this.simulationReport = simulationReport;
+    }
+
+    public int getOutlets() {
+        return outlets;
+    }
+
+    public double getStockScale() {
+        return stockScale;
+    }
+
+    public double getRefillScale() {
+        return refillScale;
+    }
+
+    /**
+     * @return total quantity of every ingredient in the stock and the refill pack, the cost of the stock levels
+     */
+    public long getProvisionedQuantity() {
+        return provisionedQuantity;
+    }
+
+    public SimulationReport getSimulationReport() {
+        return simulationReport;
+    }
+
+    /**
+     * @return share of the orders which were served, 1 if there were none
+     */
+    public double getServedRatio() {
+        long orders = simulationReport.getOrders();
+        return orders == 0 ? 1 : (double) simulationReport.getServed() / orders;
+    }
+
+    /**
+     * @return orders served per simulated hour
+     */
+    public double getThroughputPerHour() {
+        long simulatedNanos = simulationReport.getSimulatedNanos();
+        return simulatedNanos == 0 ? 0 : simulationReport.getServed() * NANOS_PER_HOUR / simulatedNanos;
+    }
+
+    /**
+     * Method to check whether this configuration is at least as good as the other one on every objective, fewer
+     * outlets, less stock, more throughput and a higher served ratio, and strictly better on one of them
+     * @param other
+     * @return
+     */
+    public boolean dominates(SweepResult other) {
+        if (outlets > other.outlets || provisionedQuantity > other.provisionedQuantity
+                || getThroughputPerHour() < other.getThroughputPerHour() || getServedRatio() < other.getServedRatio())
+            return false;
+        return outlets < other.outlets || provisionedQuantity < other.provisionedQuantity
+                || getThroughputPerHour() > other.getThroughputPerHour() || getServedRatio() > other.getServedRatio();
+    }
+}
@@ -0,0 +1,115 @@
+package com.dunzo.coffee_machine;
+
+import java.util.Arrays;
+
+/**
+ * Parameter ranges of a configuration sweep, every combination of them is a point of the sweep
+ * Stock and refill pack levels are scales of the quantities of the swept machine, applied to every ingredient
+ */
+public final class SweepSpace {
+
+    private final int[] outletCounts;
+    private final double[] stockScales;
+    private final double[] refillScales;
+
+    /**
+     * @param outletCounts numbers of outlets
+     * @param stockScales  factors applied to the initial quantity of every ingredient
+     * @param refillScales factors applied to the refill pack quantity of every ingredient
+     */
+    public SweepSpace(int[] outletCounts, double[] stockScales, double[] refillScales) {
+        if (outletCounts.length == 0 || stockScales.length == 0 || refillScales.length == 0)
+            throw new IllegalArgumentException("Every parameter of the sweep needs at least one value!");
+        for (int outletCount : outletCounts) {
+            if (outletCount <= 0)
+                throw new IllegalArgumentException("Number of outlets must be positive!");
+        }
+        for (double scale : concat(stockScales, refillScales)) {
+            if (scale < 0)
+                throw new IllegalArgumentException("Stock and refill pack scales can't be negative!");
+        }
+        this.outletCounts = outletCounts.clone();
+        this.stockScales = stockScales.clone();
+        this.refillScales = refillScales.clone();
+    }
+
+    /**
+     * Method to parse the ranges of the command line, each one is a comma separated list of values or of ranges
+     * from..to, with a step of 1, or from..to:step
+     * e.g. 1..8 for the outlets and 0.5..2:0.5,4 for a scale
+     * @param outletCounts
+     * @param stockScales
+     * @param refillScales
+     * @return
+     */
+    public static SweepSpace parse(String outletCounts, String stockScales, String refillScales) {
+        double[] outlets = parseValues(outletCounts);
+        int[] counts = new int[outlets.length];
+        for (int i = 0; i < outlets.length; i++) {
+            counts[i] = (int) outlets[i];
+            if (counts[i] != outlets[i])
+                throw new IllegalArgumentException("Number of outlets must be a whole number, got " + outlets[i]);
+        }
+        return new SweepSpace(counts, parseValues(stockScales), parseValues(refillScales));
+    }
+
+    static double[] parseValues(String range) {
+        double[] values = new double[16];
+        int size = 0;
+        for (String part : range.split(",")) {
+            part = part.trim();
+            int rangeSeparator = part.indexOf("..");
+            if (rangeSeparator < 0) {
+                values = append(values, size++, Double.parseDouble(part));
+                continue;
+            }
+            int stepSeparator = part.indexOf(':', rangeSeparator);
+            double from = Double.parseDouble(part.substring(0, rangeSeparator));
+            double to = Double.parseDouble(part.substring(rangeSeparator + 2,
+                    stepSeparator < 0 ? part.length() : stepSeparator));
+            double step = stepSeparator < 0 ? 1 : Double.parseDouble(part.substring(stepSeparator + 1));
+            if (step <= 0)
+                throw new IllegalArgumentException("Step of the range " + part + " must be positive!");
+            //values are computed from the index so that the steps don't accumulate rounding errors
+            for (int i = 0; from + i * step <= to + step * 1e-9; i++) {
+                values = append(values, size++, from + i * step);
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static double[] append(double[] values, int index, double value) {
+        if (index == values.length)
+            values = Arrays.copyOf(values, index * 2);
+        values[index] = value;
+        return values;
+    }
+
+    private static double[] concat(double[] first, double[] second) {
+        double[] values = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, values, first.length, second.length);
+        return values;
+    }
+
+    /**
+     * @return number of points of the sweep
+     */
+    public int size() {
+        return outletCounts.length * stockScales.length * refillScales.length;
+    }
+
+    /**
+     * points are numbered with the refill scale varying fastest, then the stock scale, then the outlets
+     */
+    int outletCountAt(int point) {
+        return outletCounts[point / (stockScales.length * refillScales.length)];
+    }
+
+    double stockScaleAt(int point) {
+        return stockScales[point / refillScales.length % stockScales.length];
+    }
+
+    double refillScaleAt(int point) {
+        return refillScales[point % refillScales.length];
+    }
+}
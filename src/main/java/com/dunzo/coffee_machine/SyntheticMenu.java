@@ -0,0 +1,112 @@
+package com.dunzo.coffee_machine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Class to generate a synthetic machine definition of arbitrary scale
+ * Used by the benchmarks and the load tools where the hand written inputs are far too small
+ */
+public class SyntheticMenu {
+
+    private final Map<String, Integer> itemsQuantity;
+    private final Map<String, Map<String, Integer>> beverages;
+    private final Map<String, Integer> refillPack;
+
+    private SyntheticMenu(Map<String, Integer> itemsQuantity, Map<String, Map<String, Integer>> beverages,
+                          Map<String, Integer> refillPack) {
+        this.itemsQuantity = itemsQuantity;
+        this.beverages = beverages;
+        this.refillPack = refillPack;
+    }
+
+    /**
+     * Method to generate a menu where each beverage uses between 1 and maxIngredientsPerBeverage random ingredients
+     *
+     * @param beverageCount
+     * @param ingredientCount
+     * @param maxIngredientsPerBeverage
+     * @param quantityPerIngredient initial quantity of every ingredient
+     * @param refillPerIngredient   refill pack quantity of every ingredient, 0 for no refill pack
+     * @param seed
+     * @return
+     */
+    public static SyntheticMenu generate(int beverageCount, int ingredientCount, int maxIngredientsPerBeverage,
+                                         int quantityPerIngredient, int refillPerIngredient, long seed) {
+        Random random = new Random(seed);
+        Map<String, Integer> itemsQuantity = new LinkedHashMap<>();
+        Map<String, Integer> refillPack = new LinkedHashMap<>();
+        for (int i = 0; i < ingredientCount; i++) {
+            itemsQuantity.put(ingredientName(i), quantityPerIngredient);
+            if (refillPerIngredient > 0)
+                refillPack.put(ingredientName(i), refillPerIngredient);
+        }
+        Map<String, Map<String, Integer>> beverages = new LinkedHashMap<>();
+        int maxIngredients = Math.max(1, Math.min(maxIngredientsPerBeverage, ingredientCount));
+        for (int i = 0; i < beverageCount; i++) {
+            Map<String, Integer> recipe = new LinkedHashMap<>();
+            int ingredients = 1 + random.nextInt(maxIngredients);
+            while (recipe.size() < ingredients) {
+                recipe.put(ingredientName(random.nextInt(ingredientCount)), 1 + random.nextInt(50));
+            }
+            beverages.put("beverage_" + i, recipe);
+        }
+        return new SyntheticMenu(itemsQuantity, beverages, refillPack);
+    }
+
+    /**
+     * Method to render the menu as a single machine input, see Main for the schema
+     * @param outlets
+     * @param objectMapper
+     * @return
+     */
+    public ObjectNode toInput(int outlets, ObjectMapper objectMapper) {
+        ObjectNode input = objectMapper.createObjectNode();
+        ObjectNode machine = input.putObject(ApplicationConstants.MACHINE);
+        machine.putObject(ApplicationConstants.OUTLETS).put(ApplicationConstants.COUNT_N, outlets);
+        machine.set(ApplicationConstants.TOTAL_ITEMS_QUANTITY, objectMapper.valueToTree(itemsQuantity));
+        machine.set(ApplicationConstants.BEVERAGES, objectMapper.valueToTree(beverages));
+        if (!refillPack.isEmpty())
+            machine.set(ApplicationConstants.REFILL_PACK, objectMapper.valueToTree(refillPack));
+        return input;
+    }
+
+    /**
+     * Method to build the machine definition of the menu directly, without rendering it as json
+     * @param outlets
+     * @return
+     */
+    public MachineDefinition toDefinition(int outlets) {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        itemsQuantity.keySet().forEach(ingredientRegistry::register);
+        int[] quantities = new int[ingredientRegistry.size()];
+        int[] refills = new int[ingredientRegistry.size()];
+        itemsQuantity.forEach((ingredient, quantity) -> quantities[ingredientRegistry.idOf(ingredient)] = quantity);
+        refillPack.forEach((ingredient, quantity) -> refills[ingredientRegistry.idOf(ingredient)] = quantity);
+        List<Recipe> recipes = new ArrayList<>(beverages.size());
+        beverages.forEach((name, ingredients) -> recipes.add(Recipe.compile(name, ingredients, ingredientRegistry)));
+        return new MachineDefinition(ingredientRegistry, OutletConfig.of(outlets), quantities, refills, recipes);
+    }
+
+    public static String ingredientName(int index) {
+        return "ingredient_" + index;
+    }
+
+    public Map<String, Integer> getItemsQuantity() {
+        return itemsQuantity;
+    }
+
+    public Map<String, Map<String, Integer>> getBeverages() {
+        return beverages;
+    }
+
+    public Map<String, Integer> getRefillPack() {
+        return refillPack;
+    }
+}
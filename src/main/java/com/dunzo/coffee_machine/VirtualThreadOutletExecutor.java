@@ -0,0 +1,91 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Outlets of a coffee machine as virtual threads
+ * <p>
+ * Every queued order gets a virtual thread of its own, and a semaphore sized to the number of outlets bounds how many
+ * of them prepare a beverage at the same time. Waiting virtual threads are cheap, so very large outlet counts don't
+ * cost platform threads. The thread takes the order at the head of the queue once it holds a permit, so orders are
+ * still served in queue order and the overflow policy can still shed queued orders.
+ * <p>
+ * Virtual threads need Java 21, the build targets 1.8, so they are looked up reflectively.
+ */
+class VirtualThreadOutletExecutor extends OutletExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadOutletExecutor.class);
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+
+    private final ExecutorService virtualThreads;
+    private final Semaphore outlets;
+
+    VirtualThreadOutletExecutor(int outlets, BlockingQueue<Runnable> orderQueue, OverflowPolicy overflowPolicy) {
+        super(orderQueue, overflowPolicy);
+        if (!isSupported())
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        this.virtualThreads = newVirtualThreadPerTaskExecutor();
+        this.outlets = new Semaphore(outlets, true);
+    }
+
+    static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    private static Method findVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Method to start a virtual thread for the order which was just queued
+     */
+    @Override
+    protected void dispatch() {
+        activeWork.incrementAndGet();
+        virtualThreads.execute(this::serve);
+    }
+
+    private void serve() {
+        try {
+            outlets.acquire();
+            try {
+                //the order may have been shed meanwhile, then there is nothing left for this thread
+                Runnable order = orderQueue.poll();
+                if (order != null)
+                    order.run();
+            } finally {
+                outlets.release();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Outlet interrupted while waiting for a free outlet!");
+            Thread.currentThread().interrupt();
+        } finally {
+            workDone();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        virtualThreads.shutdown();
+    }
+}
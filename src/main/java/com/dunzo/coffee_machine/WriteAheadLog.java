@@ -0,0 +1,411 @@
+package com.dunzo.coffee_machine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the changes made to an inventory, with group commit and periodic snapshots
+ * <p>
+ * Outlets append their changes to an in-memory buffer under a short lock which only covers copying a few ints, and
+ * then wait in sync() for their change to be durable. A single flusher thread swaps the buffer, writes it out and
+ * forces it to disk, so all the outlets which appended while the previous batch was being forced share the next
+ * force. The flusher also applies every batch to a shadow copy of the inventory and every snapshotInterval records
+ * writes that copy as an InventorySnapshot and truncates the log, so recovery never replays more than about
+ * snapshotInterval records no matter how long the machine has been running.
+ * <p>
+ * Refills are appended before their quantity becomes visible to the rations, see InventoryLog, so a log cut short by
+ * a crash never replays a ration without the refills it relied on.
+ * <p>
+ * Record layout, little endian: payload length (int), crc32 of the payload (int), then the payload: lsn (long),
+ * type (int), count (int) followed by count pairs of ingredient id (int) and quantity (int). For NAME records the
+ * count is the ingredient id and is followed by its utf-8 name. Every ingredient is named in the log before its id
+ * is first used, so the log can be replayed into a registry with different ids.
+ */
+public class WriteAheadLog implements InventoryLog, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+    static final int RATION = 1;
+    static final int REFILL = 2;
+    static final int ADD = 3;
+    static final int NAME = 4;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PAYLOAD_HEADER_SIZE = 16;
+    private static final int INITIAL_BUFFER_SIZE = 64 << 10;
+
+    /**
+     * receives the records of the log as they are replayed
+     */
+    interface RecordVisitor {
+        void name(int ingredientId, String name);
+
+        void change(long lsn, int type, int ingredientId, int quantity);
+    }
+
+    private final Path snapshotPath;
+    private final IngredientRegistry ingredientRegistry;
+    private final FileChannel channel;
+    private final int snapshotInterval;
+    //guarded by this
+    private ByteBuffer activeBuffer;
+    private ByteBuffer spareBuffer;
+    private long lastLsn;
+    private int namesLogged;
+    private boolean closing;
+    private boolean crashed;
+    //durability
+    private volatile long appendedLsn;
+    private volatile long durableLsn;
+    private volatile boolean stopped;
+    private volatile long commits;
+    private final Object durableMonitor;
+    //only touched by the flusher
+    private String[] shadowNames;
+    private int[] shadowItemsQuantity;
+    private int[] shadowRefillPack;
+    private int shadowSize;
+    private long recordsSinceSnapshot;
+    private final CRC32 crc32;
+    private final Thread flusher;
+    private volatile IOException failure;
+
+    /**
+     * Method to start a new log on top of the given snapshot, which is written first
+     * @param logPath
+     * @param snapshotPath
+     * @param ingredientRegistry
+     * @param base               state of the inventory the log starts from, indexed by the ids of the registry
+     * @param snapshotInterval   number of records after which a snapshot is taken
+     * @throws IOException
+     */
+    WriteAheadLog(Path logPath, Path snapshotPath, IngredientRegistry ingredientRegistry, InventorySnapshot base,
+                  int snapshotInterval) throws IOException {
+        this.snapshotPath = snapshotPath;
+        this.ingredientRegistry = ingredientRegistry;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.activeBuffer = allocate(INITIAL_BUFFER_SIZE);
+        this.spareBuffer = allocate(INITIAL_BUFFER_SIZE);
+        this.lastLsn = base.getLsn();
+        this.appendedLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        this.namesLogged = base.size();
+        this.durableMonitor = new Object();
+        this.shadowSize = base.size();
+        this.shadowNames = new String[Math.max(16, shadowSize)];
+        this.shadowItemsQuantity = new int[shadowNames.length];
+        this.shadowRefillPack = new int[shadowNames.length];
+        for (int i = 0; i < shadowSize; i++) {
+            shadowNames[i] = base.nameAt(i);
+            shadowItemsQuantity[i] = base.itemsQuantityAt(i);
+            shadowRefillPack[i] = base.refillPackAt(i);
+        }
+        this.crc32 = new CRC32();
+        base.write(snapshotPath);
+        this.channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.flusher = new Thread(this::flush, "inventory-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void rationed(Recipe recipe) {
+        int size = recipe.size();
+        synchronized (this) {
+            //ingredient ids of a recipe are sorted, the last one is the highest
+            if (size > 0)
+                logNames(recipe.ingredientIdAt(size - 1));
+            ByteBuffer buffer = reserve(RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + size * 8);
+            buffer.putInt(PAYLOAD_HEADER_SIZE + size * 8).putInt(0).putLong(++lastLsn).putInt(RATION).putInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.putInt(recipe.ingredientIdAt(i)).putInt(recipe.quantityAt(i));
+            }
+            appended();
+        }
+    }
+
+    @Override
+    public void refilled(int ingredientId, int quantity, boolean fromRefillPack) {
+        synchronized (this) {
+            logNames(ingredientId);
+            ByteBuffer buffer = reserve(RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + 8);
+            buffer.putInt(PAYLOAD_HEADER_SIZE + 8).putInt(0).putLong(++lastLsn).putInt(fromRefillPack ? REFILL : ADD)
+                    .putInt(1).putInt(ingredientId).putInt(quantity);
+            appended();
+        }
+    }
+
+    private void logNames(int ingredientId) {
+        while (namesLogged <= ingredientId) {
+            byte[] name = ingredientRegistry.nameOf(namesLogged).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = reserve(RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + name.length);
+            buffer.putInt(PAYLOAD_HEADER_SIZE + name.length).putInt(0).putLong(++lastLsn).putInt(NAME)
+                    .putInt(namesLogged++).put(name);
+        }
+    }
+
+    private ByteBuffer reserve(int length) {
+        if (activeBuffer.remaining() < length) {
+            ByteBuffer grown = allocate(Math.max(activeBuffer.capacity() * 2, activeBuffer.position() + length));
+            //Buffer casts keep the class runnable on Java 8 when built with a newer JDK
+            ((Buffer) activeBuffer).flip();
+            grown.put(activeBuffer);
+            activeBuffer = grown;
+        }
+        return activeBuffer;
+    }
+
+    private void appended() {
+        appendedLsn = lastLsn;
+        notify();
+    }
+
+    /**
+     * Method to wait until every change logged so far is forced to disk
+     * Waits for at most one force already in progress and the one after it, which is shared by every outlet
+     * which logged in the meantime
+     */
+    @Override
+    public void sync() {
+        long target = appendedLsn;
+        if (durableLsn >= target)
+            return;
+        synchronized (durableMonitor) {
+            while (durableLsn < target) {
+                if (failure != null)
+                    throw new IllegalStateException("Inventory log failed", failure);
+                if (stopped)
+                    throw new IllegalStateException("Inventory log is closed");
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the inventory log", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of forces to disk so far, each of them commits a group of changes
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    private void flush() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long batchLsn;
+                synchronized (this) {
+                    while (activeBuffer.position() == 0 && !closing) {
+                        wait();
+                    }
+                    if (crashed || activeBuffer.position() == 0)
+                        break;
+                    batch = activeBuffer;
+                    activeBuffer = spareBuffer;
+                    spareBuffer = batch;
+                    batchLsn = lastLsn;
+                }
+                ((Buffer) batch).flip();
+                int records = sealAndApply(batch);
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                ((Buffer) batch).clear();
+                commits++;
+                durableLsn = batchLsn;
+                synchronized (durableMonitor) {
+                    durableMonitor.notifyAll();
+                }
+                recordsSinceSnapshot += records;
+                if (recordsSinceSnapshot >= snapshotInterval)
+                    snapshot(batchLsn);
+            }
+            if (!crashed)
+                snapshot(durableLsn);
+        } catch (IOException e) {
+            LOGGER.error("Unable to write the inventory log, changes are no longer durable!", e);
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Method to fill in the checksum of every record of the batch and apply it to the shadow inventory
+     * @param batch
+     * @return number of records in the batch
+     */
+    private int sealAndApply(ByteBuffer batch) {
+        int records = 0;
+        int position = batch.position();
+        while (position < batch.limit()) {
+            int length = batch.getInt(position);
+            int payload = position + RECORD_HEADER_SIZE;
+            crc32.reset();
+            crc32.update(batch.array(), batch.arrayOffset() + payload, length);
+            batch.putInt(position + 4, (int) crc32.getValue());
+            int type = batch.getInt(payload + 8);
+            int count = batch.getInt(payload + 12);
+            if (type == NAME) {
+                byte[] name = Arrays.copyOfRange(batch.array(), batch.arrayOffset() + payload + PAYLOAD_HEADER_SIZE,
+                        batch.arrayOffset() + payload + length);
+                shadowName(count, new String(name, StandardCharsets.UTF_8));
+            } else {
+                for (int i = 0; i < count; i++) {
+                    int pair = payload + PAYLOAD_HEADER_SIZE + i * 8;
+                    shadowChange(type, batch.getInt(pair), batch.getInt(pair + 4));
+                }
+            }
+            records++;
+            position = payload + length;
+        }
+        return records;
+    }
+
+    private void shadowName(int ingredientId, String name) {
+        if (ingredientId >= shadowNames.length) {
+            int length = Math.max(ingredientId + 1, shadowNames.length * 2);
+            shadowNames = Arrays.copyOf(shadowNames, length);
+            shadowItemsQuantity = Arrays.copyOf(shadowItemsQuantity, length);
+            shadowRefillPack = Arrays.copyOf(shadowRefillPack, length);
+        }
+        shadowNames[ingredientId] = name;
+        shadowSize = Math.max(shadowSize, ingredientId + 1);
+    }
+
+    private void shadowChange(int type, int ingredientId, int quantity) {
+        switch (type) {
+            case RATION:
+                shadowItemsQuantity[ingredientId] -= quantity;
+                break;
+            case REFILL:
+                shadowItemsQuantity[ingredientId] += quantity;
+                shadowRefillPack[ingredientId] -= quantity;
+                break;
+            case ADD:
+                shadowItemsQuantity[ingredientId] += quantity;
+                break;
+            default:
+                throw new IllegalStateException("Unknown inventory log record type " + type);
+        }
+    }
+
+    /**
+     * Method to write the shadow inventory as the snapshot and start the log afresh
+     * A crash after the snapshot and before the truncation only leaves records the snapshot already covers
+     */
+    private void snapshot(long lsn) throws IOException {
+        new InventorySnapshot(lsn, Arrays.copyOf(shadowNames, shadowSize), Arrays.copyOf(shadowItemsQuantity, shadowSize),
+                Arrays.copyOf(shadowRefillPack, shadowSize)).write(snapshotPath);
+        channel.truncate(0);
+        channel.position(0);
+        recordsSinceSnapshot = 0;
+        LOGGER.debug("Inventory snapshot taken at lsn {}", lsn);
+    }
+
+    /**
+     * Method to replay the records of the log which come after the given lsn
+     * Replay stops at the first torn or corrupt record, which can only be the tail of a crashed write
+     * @param logPath
+     * @param afterLsn
+     * @param recordVisitor
+     * @return number of records replayed
+     * @throws IOException
+     */
+    static long replay(Path logPath, long afterLsn, RecordVisitor recordVisitor) throws IOException {
+        if (!Files.isRegularFile(logPath))
+            return 0;
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(logPath)).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc32 = new CRC32();
+        long replayed = 0;
+        while (log.remaining() >= RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE) {
+            int position = log.position();
+            int length = log.getInt(position);
+            int payload = position + RECORD_HEADER_SIZE;
+            if (length < PAYLOAD_HEADER_SIZE || payload + length > log.limit())
+                break;
+            crc32.reset();
+            crc32.update(log.array(), payload, length);
+            if ((int) crc32.getValue() != log.getInt(position + 4))
+                break;
+            long lsn = log.getLong(payload);
+            int type = log.getInt(payload + 8);
+            int count = log.getInt(payload + 12);
+            if (type == NAME) {
+                //names are replayed whatever their lsn, they are needed to map the ids of the later records
+                recordVisitor.name(count, new String(log.array(), payload + PAYLOAD_HEADER_SIZE,
+                        length - PAYLOAD_HEADER_SIZE, StandardCharsets.UTF_8));
+            } else if (lsn > afterLsn) {
+                for (int i = 0; i < count; i++) {
+                    int pair = payload + PAYLOAD_HEADER_SIZE + i * 8;
+                    recordVisitor.change(lsn, type, log.getInt(pair), log.getInt(pair + 4));
+                }
+                replayed++;
+            }
+            ((Buffer) log).position(payload + length);
+        }
+        return replayed;
+    }
+
+    /**
+     * Method to force the pending changes, take a final snapshot and close the log
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        synchronized (this) {
+            closing = true;
+            notify();
+        }
+        flusher.join();
+        channel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Method to stop the log as a crash would: the changes not forced yet are lost and no final snapshot is taken
+     * Returns once the flusher is done with any force or snapshot in progress, so the files are left as is
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    void crash() throws InterruptedException, IOException {
+        synchronized (this) {
+            closing = true;
+            crashed = true;
+            notify();
+        }
+        flusher.join();
+        channel.close();
+    }
+}
@@ -64,4 +64,43 @@ public class AutomaticSimulationApplicationTest {
         //asserting that no beverages failed
         Assert.assertEquals(0, results.stream().filter(x -> !x.wasBeveragePrepared()).count());
     }
-}
\ No newline at end of file
+
+    /**
+     * single outlet with room for a single waiting order, the caller blocks instead of dropping orders
+     */
+    @Test
+    public void allBeveragesAreMadeWithABlockingBoundedQueue() {
+        List<OutletResponse> results = CoffeeMachineSimulation.run("input5.json");
+
+        //asserting that both the beverages were prepared
+        Assert.assertEquals(2, results.stream().filter(x -> x.wasBeveragePrepared()).count());
+        Assert.assertEquals(0, results.stream().filter(x -> !x.wasBeveragePrepared()).count());
+    }
+
+    /**
+     * outlets on virtual threads serve the same beverages, on a JDK without virtual threads they fall back to platform threads
+     */
+    @Test
+    public void allBeveragesAreMadeOnVirtualThreads() {
+        List<OutletResponse> results = CoffeeMachineSimulation.run("input6.json");
+
+        //asserting that both the beverages were prepared
+        Assert.assertEquals(2, results.stream().filter(x -> x.wasBeveragePrepared()).count());
+        Assert.assertEquals(0, results.stream().filter(x -> !x.wasBeveragePrepared()).count());
+    }
+
+    /**
+     * the planning scheduler skips the large beverage which would use up the hot water for the two smaller ones,
+     * whatever the timing of the outlets
+     */
+    @Test
+    public void schedulerServesTheMostBeverages() {
+        List<OutletResponse> results = CoffeeMachineSimulation.run("input7.json");
+
+        //asserting that the two smaller beverages were prepared
+        Assert.assertEquals(2, results.stream().filter(x -> x.wasBeveragePrepared()).count());
+        List<OutletResponse> failedBeverages = results.stream().filter(x -> !x.wasBeveragePrepared()).collect(Collectors.toList());
+        Assert.assertEquals(1, failedBeverages.size());
+        Assert.assertEquals("americano", failedBeverages.get(0).getBeverageName());
+    }
+}
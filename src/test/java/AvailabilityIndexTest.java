@@ -0,0 +1,141 @@
+import com.dunzo.coffee_machine.AvailabilityIndex;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AvailabilityIndexTest {
+
+    /**
+     * a beverage becomes unavailable once the stock plus the refill pack can't make it, comes back with a refill,
+     * and every change is notified
+     */
+    @Test
+    public void availabilityFollowsRationsAndRefills() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 500);
+        stock.put("tea_leaves_syrup", 50);
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, stock);
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, Collections.singletonMap("tea_leaves_syrup", 10));
+        Map<String, Integer> tea = new HashMap<>();
+        tea.put("hot_water", 200);
+        tea.put("tea_leaves_syrup", 30);
+        List<Recipe> menu = new ArrayList<>();
+        menu.add(Recipe.compile("hot_tea", tea, ingredientRegistry));
+        menu.add(Recipe.compile("hot_water", Collections.singletonMap("hot_water", 100), ingredientRegistry));
+        AvailabilityIndex availabilityIndex = new AvailabilityIndex(inventoryManager, refillProvider, menu);
+        List<String> changes = new ArrayList<>();
+        availabilityIndex.subscribe((beverage, available) -> changes.add(beverage.getBeverageName() + "=" + available));
+
+        Assert.assertTrue(availabilityIndex.isAvailable("hot_tea"));
+        Assert.assertTrue(inventoryManager.tryRation(menu.get(0)).isSuccess());
+        //asserting that 20 left in stock plus 10 in the refill pack still make a tea
+        Assert.assertTrue(availabilityIndex.isAvailable("hot_tea"));
+        Assert.assertTrue(refillProvider.refillShortfall(menu.get(0), inventoryManager).isSuccess());
+        Assert.assertTrue(inventoryManager.tryRation(menu.get(0)).isSuccess());
+        Assert.assertFalse(availabilityIndex.isAvailable("hot_tea"));
+        Assert.assertTrue(availabilityIndex.isAvailable("hot_water"));
+
+        inventoryManager.refill("tea_leaves_syrup", 30);
+        //asserting that 100 hot water is still short of a tea
+        Assert.assertFalse(availabilityIndex.isAvailable(0));
+        inventoryManager.refill("hot_water", 100);
+        Assert.assertTrue(availabilityIndex.isAvailable(0));
+        Assert.assertTrue(inventoryManager.tryRation(menu.get(1)).isSuccess());
+        Assert.assertTrue(inventoryManager.tryRation(menu.get(1)).isSuccess());
+        //asserting that no hot water is left for either beverage
+        Assert.assertEquals(0, availabilityIndex.getAvailable().cardinality());
+        Assert.assertEquals(4, changes.size());
+        Assert.assertEquals("hot_tea=false", changes.get(0));
+    }
+
+    /**
+     * after concurrent rations the index matches what the inventory can actually make
+     */
+    @Test
+    public void indexMatchesTheInventoryAfterConcurrentRations() throws InterruptedException {
+        SyntheticMenu syntheticMenu = SyntheticMenu.generate(2000, 50, 5, 3000, 0, 7);
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, syntheticMenu.getItemsQuantity());
+        RefillProvider refillProvider = RefillProvider.createEmpty(ingredientRegistry);
+        List<Recipe> menu = new ArrayList<>();
+        syntheticMenu.getBeverages().forEach((name, ingredients) -> menu.add(Recipe.compile(name, ingredients, ingredientRegistry)));
+        AvailabilityIndex availabilityIndex = new AvailabilityIndex(inventoryManager, refillProvider, menu);
+
+        int outlets = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            int outlet = i;
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = outlet; j < menu.size(); j += outlets) {
+                    inventoryManager.tryRation(menu.get(j));
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+        int available = 0;
+        for (int index = 0; index < menu.size(); index++) {
+            Recipe recipe = menu.get(index);
+            boolean canBeMade = true;
+            for (int i = 0; i < recipe.size(); i++) {
+                canBeMade &= inventoryManager.getQuantity(recipe.ingredientIdAt(i)) >= recipe.quantityAt(i);
+            }
+            Assert.assertEquals(recipe.getBeverageName(), canBeMade, availabilityIndex.isAvailable(index));
+            available += canBeMade ? 1 : 0;
+        }
+        Assert.assertEquals(available, availabilityIndex.getAvailable().cardinality());
+        Assert.assertTrue(available < menu.size());
+    }
+
+    /**
+     * two indexes follow the same inventory, the refresher of one notifies its subscribers without any lookup and
+     * a closed index no longer follows the inventory
+     */
+    @Test
+    public void indexesShareTheInventoryAndRefreshInTheBackground() throws InterruptedException {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry,
+                Collections.singletonMap("hot_water", 100));
+        RefillProvider refillProvider = RefillProvider.createEmpty(ingredientRegistry);
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 100), ingredientRegistry);
+        AvailabilityIndex background = new AvailabilityIndex(inventoryManager, refillProvider,
+                Collections.singletonList(hotWater)).start(1, TimeUnit.MILLISECONDS);
+        AvailabilityIndex onLookup = new AvailabilityIndex(inventoryManager, refillProvider,
+                Collections.singletonList(hotWater));
+        CountDownLatch notified = new CountDownLatch(1);
+        background.subscribe((beverage, available) -> notified.countDown());
+
+        Assert.assertTrue(inventoryManager.tryRation(hotWater).isSuccess());
+        Assert.assertTrue(notified.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(onLookup.isAvailable(0));
+
+        onLookup.close();
+        inventoryManager.refill("hot_water", 100);
+        Assert.assertTrue(background.isAvailable(0));
+        Assert.assertFalse(onLookup.isAvailable(0));
+        background.close();
+    }
+}
@@ -0,0 +1,314 @@
+import com.dunzo.coffee_machine.ApplicationConstants;
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.ExecutionMode;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.Menu;
+import com.dunzo.coffee_machine.OrderStatus;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.OverflowPolicy;
+import com.dunzo.coffee_machine.PriorityClass;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class CoffeeMachineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static CoffeeMachine hotWaterMachine(int outlets, int hotWater) {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", hotWater);
+        return new CoffeeMachine(outlets, new InventoryManager(stock));
+    }
+
+    private static Recipe hotWater(CoffeeMachine coffeeMachine) {
+        return Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1), coffeeMachine.getIngredientRegistry());
+    }
+
+    /**
+     * orders can keep arriving on the same machine and each one is answered through its own future
+     */
+    @Test
+    public void ordersAreServedAsTheyArrive() throws InterruptedException {
+        CoffeeMachine coffeeMachine = hotWaterMachine(3, 100);
+        Recipe hotWater = hotWater(coffeeMachine);
+
+        for (int batch = 0; batch < 10; batch++) {
+            List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                responses.add(coffeeMachine.submitOrder(hotWater));
+            }
+            //asserting that every order of the batch is prepared before the next one arrives
+            for (CompletableFuture<OutletResponse> response : responses) {
+                Assert.assertTrue(response.join().wasBeveragePrepared());
+            }
+        }
+        //stock is exhausted now
+        Assert.assertFalse(coffeeMachine.submitOrder(hotWater).join().wasBeveragePrepared());
+        coffeeMachine.close();
+    }
+
+    /**
+     * close waits for the queued orders and refuses any new ones
+     */
+    @Test
+    public void closeDrainsQueuedOrders() throws InterruptedException {
+        CoffeeMachine coffeeMachine = hotWaterMachine(1, 1000);
+        Recipe hotWater = hotWater(coffeeMachine);
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            responses.add(coffeeMachine.submitOrder(hotWater));
+        }
+        coffeeMachine.close();
+
+        //asserting that all the queued orders were served before close returned
+        Assert.assertTrue(responses.stream().allMatch(CompletableFuture::isDone));
+        try {
+            coffeeMachine.submitOrder(hotWater);
+            Assert.fail("closed machine should not accept orders");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * with a full queue every order is either prepared or refused fast, never silently lost, and shedding drops the
+     * oldest queued orders first
+     */
+    @Test
+    public void fullQueueRejectsOrShedsOrders() throws InterruptedException {
+        for (OverflowPolicy overflowPolicy : new OverflowPolicy[]{OverflowPolicy.REJECT, OverflowPolicy.SHED_OLDEST}) {
+            List<Runnable> turns = new ArrayList<>();
+            CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(1).withOrderQueue(2, overflowPolicy),
+                    new InventoryManager(Collections.singletonMap("hot_water", 1000)), null, turns::add);
+            Recipe hotWater = hotWater(coffeeMachine);
+            List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                responses.add(coffeeMachine.submitOrder(hotWater));
+                Assert.assertTrue(coffeeMachine.getQueueDepth() <= 2);
+            }
+            //the outlet only gets to work once every order is submitted, so the queue overflowed on the third one
+            while (!turns.isEmpty()) {
+                turns.remove(0).run();
+            }
+            coffeeMachine.close();
+
+            long prepared = responses.stream().filter(x -> x.join().wasBeveragePrepared()).count();
+            OrderStatus refusal = overflowPolicy == OverflowPolicy.REJECT ? OrderStatus.REJECTED : OrderStatus.SHED;
+            long refused = responses.stream().filter(x -> x.join().getStatus() == refusal).count();
+            Assert.assertEquals(200, prepared + refused);
+            Assert.assertEquals(198, refused);
+            //asserting that rejecting keeps the first queued orders and shedding keeps the last ones
+            List<CompletableFuture<OutletResponse>> kept = overflowPolicy == OverflowPolicy.REJECT ?
+                    responses.subList(0, 2) : responses.subList(198, 200);
+            Assert.assertTrue(kept.stream().allMatch(x -> x.join().wasBeveragePrepared()));
+        }
+    }
+
+    /**
+     * queued orders are served by class, express before standard before bulk, and an order picked up past its
+     * deadline is answered EXPIRED without touching the inventory
+     */
+    @Test
+    public void priorityDispatchServesExpressFirst() throws InterruptedException {
+        List<Runnable> turns = new ArrayList<>();
+        //timing every order so that each one shows up in the latency of its class
+        System.setProperty(ApplicationConstants.METRICS_TIMING_SAMPLE_PROPERTY, "1");
+        CoffeeMachine coffeeMachine;
+        try {
+            coffeeMachine = new CoffeeMachine(OutletConfig.of(1).withPriorityDispatch(TimeUnit.MINUTES.toNanos(1)),
+                    new InventoryManager(Collections.singletonMap("hot_water", 100)), null, turns::add);
+        } finally {
+            System.clearProperty(ApplicationConstants.METRICS_TIMING_SAMPLE_PROPERTY);
+        }
+        Recipe hotWater = hotWater(coffeeMachine);
+        List<PriorityClass> served = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        PriorityClass[] arrivals = {PriorityClass.BULK, PriorityClass.STANDARD, PriorityClass.BULK, PriorityClass.EXPRESS,
+                PriorityClass.STANDARD, PriorityClass.EXPRESS};
+        for (PriorityClass priorityClass : arrivals) {
+            CompletableFuture<OutletResponse> response = coffeeMachine.submitOrder(hotWater, priorityClass, 0,
+                    TimeUnit.NANOSECONDS);
+            response.thenRun(() -> served.add(priorityClass));
+            responses.add(response);
+        }
+        CompletableFuture<OutletResponse> expiring = coffeeMachine.submitOrder(hotWater, PriorityClass.EXPRESS, 1,
+                TimeUnit.NANOSECONDS);
+        Thread.sleep(1);
+        //the outlet only gets to work once every order is queued
+        while (!turns.isEmpty()) {
+            turns.remove(0).run();
+        }
+
+        Assert.assertEquals(OrderStatus.EXPIRED, expiring.join().getStatus());
+        Assert.assertTrue(responses.stream().allMatch(x -> x.join().wasBeveragePrepared()));
+        Assert.assertEquals(Arrays.asList(PriorityClass.EXPRESS, PriorityClass.EXPRESS, PriorityClass.STANDARD,
+                PriorityClass.STANDARD, PriorityClass.BULK, PriorityClass.BULK), served);
+        //asserting that the expired order took nothing from the stock
+        Assert.assertEquals(94, coffeeMachine.getInventoryManager().getQuantity("hot_water"));
+        Assert.assertEquals(1, coffeeMachine.getMetrics().getExpired(PriorityClass.EXPRESS));
+        Assert.assertEquals(2, coffeeMachine.getMetrics().getLatency(PriorityClass.BULK).getCount());
+        coffeeMachine.close();
+    }
+
+    /**
+     * a class ages by its oldest order, so a newer bulk order with an earlier deadline doesn't hold back a bulk order
+     * which has waited long enough to go ahead of express orders
+     */
+    @Test
+    public void priorityAgingFollowsTheOldestOrder() throws InterruptedException {
+        List<Runnable> turns = new ArrayList<>();
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(1).withPriorityDispatch(TimeUnit.MILLISECONDS.toNanos(100)),
+                new InventoryManager(Collections.singletonMap("hot_water", 100)), null, turns::add);
+        Recipe hotWater = hotWater(coffeeMachine);
+        List<String> served = Collections.synchronizedList(new ArrayList<>());
+        coffeeMachine.submitOrder(hotWater, PriorityClass.BULK, 10, TimeUnit.MINUTES).thenRun(() -> served.add("old bulk"));
+        //three aging periods, the bulk class now ranks above the express one
+        Thread.sleep(350);
+        coffeeMachine.submitOrder(hotWater, PriorityClass.BULK, 1, TimeUnit.MINUTES).thenRun(() -> served.add("new bulk"));
+        coffeeMachine.submitOrder(hotWater, PriorityClass.EXPRESS, 0, TimeUnit.NANOSECONDS).thenRun(() -> served.add("express"));
+        while (!turns.isEmpty()) {
+            turns.remove(0).run();
+        }
+
+        //asserting that the bulk orders go first, by deadline, however recent the most urgent of them is
+        Assert.assertEquals(Arrays.asList("new bulk", "old bulk", "express"), served);
+        coffeeMachine.close();
+    }
+
+    /**
+     * a reloaded menu is served to the orders submitted after it, while the orders already queued keep the recipe
+     * they were submitted with, and ingredients new to the machine can be stocked right away
+     */
+    @Test
+    public void reloadedMenuLeavesQueuedOrdersOnTheirVersion() throws IOException, InterruptedException {
+        List<Runnable> turns = new ArrayList<>();
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(1),
+                new InventoryManager(Collections.singletonMap("hot_water", 100)), null, turns::add);
+        Path menuFile = temporaryFolder.getRoot().toPath().resolve("menu.json");
+        Files.write(menuFile, "{\"machine\":{\"beverages\":{\"tea\":{\"hot_water\":10}}}}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, coffeeMachine.reloadMenu(menuFile).getVersion());
+        CompletableFuture<OutletResponse> oldTea = coffeeMachine.submitOrder("tea");
+
+        Files.write(menuFile, ("{\"machine\":{\"outlets\":{\"count_n\":1},\"beverages\":{" +
+                "\"tea\":{\"hot_water\":20},\"lemonade\":{\"hot_water\":5,\"lemon\":1}}}}").getBytes(StandardCharsets.UTF_8));
+        Menu menu = coffeeMachine.reloadMenu(menuFile);
+        Assert.assertEquals(2, coffeeMachine.getMenuVersion());
+        Assert.assertEquals(2, menu.getBeverages().size());
+        coffeeMachine.getInventoryManager().refill("lemon", 1);
+        CompletableFuture<OutletResponse> newTea = coffeeMachine.submitOrder("tea");
+        CompletableFuture<OutletResponse> lemonade = coffeeMachine.submitOrder("lemonade");
+        while (!turns.isEmpty()) {
+            turns.remove(0).run();
+        }
+
+        Assert.assertTrue(oldTea.join().wasBeveragePrepared());
+        Assert.assertTrue(newTea.join().wasBeveragePrepared());
+        Assert.assertTrue(lemonade.join().wasBeveragePrepared());
+        //asserting that the queued tea took the quantity of the first menu
+        Assert.assertEquals(100 - 10 - 20 - 5, coffeeMachine.getInventoryManager().getQuantity("hot_water"));
+        Assert.assertEquals(0, coffeeMachine.getInventoryManager().getQuantity("lemon"));
+        try {
+            coffeeMachine.submitOrder("coffee");
+            Assert.fail("beverages which are not on the menu should not be accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        coffeeMachine.close();
+    }
+
+    /**
+     * only the shortfall of the recipe is taken from the refill pack, and every machine has a refill pack of its own
+     */
+    @Test
+    public void refillProvidesOnlyTheShortfall() throws InterruptedException {
+        CoffeeMachine[] coffeeMachines = new CoffeeMachine[2];
+        for (int i = 0; i < coffeeMachines.length; i++) {
+            InventoryManager inventoryManager = new InventoryManager(Collections.singletonMap("hot_water", 50));
+            RefillProvider refillProvider = new RefillProvider(inventoryManager.getIngredientRegistry(),
+                    Collections.singletonMap("hot_water", 500));
+            coffeeMachines[i] = new CoffeeMachine(OutletConfig.of(1), inventoryManager, refillProvider);
+        }
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 100),
+                coffeeMachines[0].getIngredientRegistry());
+        Assert.assertTrue(coffeeMachines[0].submitOrder(hotWater).join().wasBeveragePrepared());
+        coffeeMachines[0].close();
+        coffeeMachines[1].close();
+
+        int hotWaterId = coffeeMachines[0].getIngredientRegistry().idOf("hot_water");
+        Assert.assertEquals(0, coffeeMachines[0].getInventoryManager().getQuantity(hotWaterId));
+        Assert.assertEquals(450, coffeeMachines[0].getRefillProvider().remainingQuantity(hotWaterId));
+        //asserting that the other machine's refill pack is untouched
+        Assert.assertEquals(500, coffeeMachines[1].getRefillProvider().remainingQuantity(
+                coffeeMachines[1].getIngredientRegistry().idOf("hot_water")));
+    }
+
+    /**
+     * a striped machine serves exactly its stock and gets its leases back when it is closed
+     */
+    @Test
+    public void stripedOutletsServeTheStock() throws InterruptedException {
+        InventoryManager inventoryManager = new InventoryManager(Collections.singletonMap("hot_water", 1000));
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(4).withStripedInventory(true), inventoryManager);
+        Recipe hotWater = hotWater(coffeeMachine);
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            responses.add(coffeeMachine.submitOrder(hotWater));
+        }
+        coffeeMachine.close();
+
+        long prepared = responses.stream().filter(response -> response.join().wasBeveragePrepared()).count();
+        //asserting that no order was refused while the stock sat in the leases of other outlets
+        Assert.assertEquals(1000, prepared);
+        Assert.assertEquals(0, inventoryManager.getQuantity("hot_water"));
+        //asserting that nothing is left in the leases of the outlets
+        Assert.assertEquals(0, coffeeMachine.getIngredientLeases().getLeasedQuantity(
+                coffeeMachine.getIngredientRegistry().idOf("hot_water")));
+    }
+
+    /**
+     * very large outlet counts don't need platform threads when the outlets run on virtual threads
+     */
+    @Test
+    public void virtualOutletsServeLargeOutletCounts() throws InterruptedException {
+        boolean virtualThreadsSupported;
+        try {
+            java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            virtualThreadsSupported = true;
+        } catch (NoSuchMethodException e) {
+            virtualThreadsSupported = false;
+        }
+        Assume.assumeTrue(virtualThreadsSupported);
+
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(10000).withExecutionMode(ExecutionMode.VIRTUAL),
+                new InventoryManager(Collections.singletonMap("hot_water", 15000)));
+        Recipe hotWater = hotWater(coffeeMachine);
+        int threadsBefore = Thread.activeCount();
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            responses.add(coffeeMachine.submitOrder(hotWater));
+        }
+        //asserting that no platform thread was created per outlet
+        Assert.assertTrue(Thread.activeCount() - threadsBefore < 100);
+        coffeeMachine.close();
+
+        Assert.assertEquals(15000, responses.stream().filter(x -> x.join().wasBeveragePrepared()).count());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+import com.dunzo.coffee_machine.ConfigurationSweep;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineDefinitionLoader;
+import com.dunzo.coffee_machine.SweepReport;
+import com.dunzo.coffee_machine.SweepResult;
+import com.dunzo.coffee_machine.SweepSpace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ConfigurationSweepTest {
+
+    private static MachineDefinition input8() throws IOException {
+        try (InputStream inputStream = ConfigurationSweepTest.class.getClassLoader().getResourceAsStream("input8.json")) {
+            return MachineDefinitionLoader.load(inputStream);
+        }
+    }
+
+    /**
+     * every combination of the ranges is simulated once, with the same results whatever the parallelism
+     */
+    @Test
+    public void sweepIsIndependentOfParallelism() throws IOException {
+        MachineDefinition machineDefinition = input8();
+        SweepSpace sweepSpace = SweepSpace.parse("1..4", "0.5..2:0.5", "0,1");
+        SweepReport sequential = ConfigurationSweep.run(machineDefinition, sweepSpace, 1);
+        SweepReport parallel = ConfigurationSweep.run(machineDefinition, sweepSpace, 4);
+
+        Assert.assertEquals(4 * 4 * 2, sequential.getResults().size());
+        for (int i = 0; i < sequential.getResults().size(); i++) {
+            SweepResult expected = sequential.getResults().get(i);
+            SweepResult actual = parallel.getResults().get(i);
+            Assert.assertEquals(expected.getOutlets(), actual.getOutlets());
+            Assert.assertEquals(expected.getStockScale(), actual.getStockScale(), 0);
+            Assert.assertEquals(expected.getSimulationReport().getServed(), actual.getSimulationReport().getServed());
+            Assert.assertEquals(expected.getSimulationReport().getSimulatedNanos(),
+                    actual.getSimulationReport().getSimulatedNanos());
+        }
+        //asserting that the sweep did not share the inventory between its points: more stock never serves less
+        SweepResult scarce = sequential.getResults().get(0);
+        SweepResult plenty = sequential.getResults().get(6);
+        Assert.assertEquals(2, plenty.getStockScale(), 0);
+        Assert.assertTrue(plenty.getSimulationReport().getServed() > scarce.getSimulationReport().getServed());
+    }
+
+    /**
+     * no configuration of the Pareto front is beaten by another one, and every other configuration is beaten by one
+     * of the front
+     */
+    @Test
+    public void paretoFrontHoldsTheUndominatedConfigurations() throws IOException {
+        SweepReport sweepReport = ConfigurationSweep.run(input8(), SweepSpace.parse("1..6", "0.5..3:0.5", "1"), 2);
+
+        Assert.assertFalse(sweepReport.getParetoFront().isEmpty());
+        for (SweepResult result : sweepReport.getResults()) {
+            boolean dominated = sweepReport.getResults().stream().anyMatch(other -> other.dominates(result));
+            Assert.assertEquals(!dominated, sweepReport.getParetoFront().contains(result));
+            if (dominated)
+                Assert.assertTrue(sweepReport.getParetoFront().stream().anyMatch(front -> front.dominates(result)));
+        }
+        Assert.assertTrue(sweepReport.toTable().contains(" *"));
+    }
+}
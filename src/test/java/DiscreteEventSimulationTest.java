@@ -0,0 +1,78 @@
+import com.dunzo.coffee_machine.ArrivalProcess;
+import com.dunzo.coffee_machine.CoffeeMachineSimulation;
+import com.dunzo.coffee_machine.DiscreteEventSimulation;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.OutletReport;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.SimulationConfig;
+import com.dunzo.coffee_machine.SimulationReport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class DiscreteEventSimulationTest {
+
+    /**
+     * orders arriving at a steady pace never wait, the tea runs out after 100 cups and shows up on the timeline
+     */
+    @Test
+    public void stockOutsOfTheInput() {
+        SimulationReport simulationReport = CoffeeMachineSimulation.simulate("input8.json");
+
+        Assert.assertEquals(400, simulationReport.getOrders());
+        Assert.assertEquals(0, simulationReport.getWaitSummary().getP99());
+        long refused = simulationReport.getOutletReports().stream().mapToLong(OutletReport::getRefused).sum();
+        Assert.assertEquals(simulationReport.getOrders(), simulationReport.getServed() + refused
+                + simulationReport.getRefusedAtAdmission());
+        //asserting that the tea stock-out is on the timeline
+        Assert.assertEquals("tea_leaves_syrup", simulationReport.getAdmissionStockOuts().get(0).getIngredient());
+        Assert.assertTrue(simulationReport.getAdmissionStockOuts().get(0).getTimeNanos() > 0);
+    }
+
+    /**
+     * 400 orders an hour of 30 seconds each keep 4 outlets busy 83% of the time without anyone waiting,
+     * a single outlet can't keep up and the orders queue up
+     */
+    @Test
+    public void outletsNeededForTheArrivalRate() {
+        SimulationConfig simulationConfig = new SimulationConfig(4000, ArrivalProcess.UNIFORM, 400, 0,
+                TimeUnit.SECONDS.toNanos(30), Collections.emptyMap(), Collections.emptyMap());
+
+        SimulationReport fourOutlets = new DiscreteEventSimulation(hotWaterMachine(4), simulationConfig).run();
+        SimulationReport oneOutlet = new DiscreteEventSimulation(hotWaterMachine(1), simulationConfig).run();
+
+        Assert.assertEquals(4000, fourOutlets.getServed());
+        Assert.assertEquals(0.83, fourOutlets.getUtilization(), 0.01);
+        Assert.assertEquals(0, fourOutlets.getWaitSummary().getMax());
+        Assert.assertTrue(oneOutlet.getUtilization() > 0.99);
+        Assert.assertTrue(oneOutlet.getWaitSummary().getP50() > TimeUnit.HOURS.toNanos(1));
+    }
+
+    /**
+     * a million orders are simulated on a single thread, and the same seed gives the same run
+     */
+    @Test
+    public void simulationIsDeterministic() {
+        SimulationConfig simulationConfig = new SimulationConfig(1_000_000, ArrivalProcess.POISSON, 400, 42,
+                TimeUnit.SECONDS.toNanos(30), Collections.emptyMap(), Collections.emptyMap());
+
+        SimulationReport first = new DiscreteEventSimulation(hotWaterMachine(4), simulationConfig).run();
+        SimulationReport second = new DiscreteEventSimulation(hotWaterMachine(4), simulationConfig).run();
+
+        Assert.assertEquals(1_000_000, first.getServed());
+        Assert.assertEquals(first.getSimulatedNanos(), second.getSimulatedNanos());
+        Assert.assertEquals(first.getWaitSummary().getP99(), second.getWaitSummary().getP99());
+        Assert.assertEquals(first.getOutletReports().get(3).getServed(), second.getOutletReports().get(3).getServed());
+    }
+
+    private static MachineDefinition hotWaterMachine(int outlets) {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1), ingredientRegistry);
+        return new MachineDefinition(ingredientRegistry, OutletConfig.of(outlets), new int[]{Integer.MAX_VALUE},
+                new int[1], Collections.singletonList(hotWater));
+    }
+}
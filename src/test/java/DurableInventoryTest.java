@@ -0,0 +1,170 @@
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.DurableInventory;
+import com.dunzo.coffee_machine.InventoryLog;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineDefinitionLoader;
+import com.dunzo.coffee_machine.MachineFactory;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.WriteAheadLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+public class DurableInventoryTest {
+
+    private static final String INPUT = "{\"machine\":{\"outlets\":{\"count_n\":8}," +
+            "\"total_items_quantity\":{\"hot_water\":100,\"sugar_syrup\":1000}," +
+            "\"refill_pack\":{\"hot_water\":20}," +
+            "\"beverages\":{\"sweet_water\":{\"hot_water\":5,\"sugar_syrup\":1}}}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static MachineDefinition definition() throws IOException {
+        return MachineDefinitionLoader.load(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static long serve(CoffeeMachine coffeeMachine, Recipe recipe, int orders) throws InterruptedException {
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            responses.add(coffeeMachine.submitOrder(recipe));
+        }
+        coffeeMachine.close();
+        return responses.stream().filter(response -> response.join().wasBeveragePrepared()).count();
+    }
+
+    /**
+     * a machine restarted after a crash remembers what it has dispensed, including the refill pack it used up,
+     * and only replays the changes since the last snapshot
+     */
+    @Test
+    public void stateSurvivesCrash() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        MachineDefinition machineDefinition = definition();
+        DurableInventory durableInventory = DurableInventory.open(directory, machineDefinition, 10);
+        Assert.assertFalse(durableInventory.isRecovered());
+        CoffeeMachine coffeeMachine = MachineFactory.create(machineDefinition, durableInventory, null);
+        //100 + 20 from the refill pack
+        Assert.assertEquals(24, serve(coffeeMachine, machineDefinition.getBeverages().get(0), 30));
+        //every change was forced in fewer commits than there were changes
+        Assert.assertTrue(durableInventory.getWriteAheadLog().getCommits() > 0);
+        //the directory can't be opened twice
+        try {
+            DurableInventory.open(directory, definition(), 10);
+            Assert.fail("the state directory is already open");
+        } catch (IOException expected) {
+        }
+        //crash: no final snapshot, and the flusher is stopped before the directory is opened again
+        durableInventory.crash();
+
+        MachineDefinition restartedDefinition = definition();
+        DurableInventory recovered = DurableInventory.open(directory, restartedDefinition, 10);
+        Assert.assertTrue(recovered.isRecovered());
+        Assert.assertTrue(recovered.getReplayedRecords() < 24);
+        Assert.assertEquals(0, recovered.getInventoryManager().getQuantity("hot_water"));
+        Assert.assertEquals(1000 - 24, recovered.getInventoryManager().getQuantity("sugar_syrup"));
+        Assert.assertEquals(0, recovered.getRefillProvider().remainingQuantity(
+                restartedDefinition.getIngredientRegistry().idOf("hot_water")));
+        CoffeeMachine restarted = MachineFactory.create(restartedDefinition, recovered, null);
+        Assert.assertEquals(0, serve(restarted, restartedDefinition.getBeverages().get(0), 5));
+        recovered.close();
+    }
+
+    /**
+     * a torn write at the tail of the log is ignored and new ingredients keep their quantities across restarts
+     */
+    @Test
+    public void tornTailIsIgnored() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        MachineDefinition machineDefinition = definition();
+        DurableInventory durableInventory = DurableInventory.open(directory, machineDefinition, 1000);
+        CoffeeMachine coffeeMachine = MachineFactory.create(machineDefinition, durableInventory, null);
+        Assert.assertEquals(3, serve(coffeeMachine, machineDefinition.getBeverages().get(0), 3));
+        durableInventory.getInventoryManager().refill("honey", 7);
+        durableInventory.getInventoryManager().awaitDurable();
+        durableInventory.crash();
+        Files.write(directory.resolve(DurableInventory.LOG_FILE_NAME), new byte[]{40, 0, 0, 0, 1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        DurableInventory recovered = DurableInventory.open(directory, definition(), 1000);
+        Assert.assertEquals(4, recovered.getReplayedRecords());
+        Assert.assertEquals(85, recovered.getInventoryManager().getQuantity("hot_water"));
+        Assert.assertEquals(7, recovered.getInventoryManager().getQuantity("honey"));
+        recovered.close();
+
+        DurableInventory reopened = DurableInventory.open(directory, definition(), 1000);
+        Assert.assertEquals(0, reopened.getReplayedRecords());
+        Assert.assertEquals(7, reopened.getInventoryManager().getQuantity("honey"));
+        reopened.close();
+    }
+
+    /**
+     * a refill is in the log before any ration can use it: while the refill is being logged its quantity can't be
+     * rationed yet, so a crash at that point recovers no more rations than the refills logged before them allow
+     */
+    @Test
+    public void refillIsLoggedBeforeTheRationUsingIt() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        MachineDefinition machineDefinition = definition();
+        DurableInventory durableInventory = DurableInventory.open(directory, machineDefinition, 1000);
+        InventoryManager inventoryManager = durableInventory.getInventoryManager();
+        Recipe sweetWater = machineDefinition.getBeverages().get(0);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(inventoryManager.tryRation(sweetWater).isSuccess());
+        }
+        CountDownLatch refilling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteAheadLog writeAheadLog = durableInventory.getWriteAheadLog();
+        inventoryManager.setInventoryLog(new InventoryLog() {
+            @Override
+            public void rationed(Recipe recipe) {
+                writeAheadLog.rationed(recipe);
+            }
+
+            @Override
+            public void refilled(int ingredientId, int quantity, boolean fromRefillPack) {
+                //the refill stalls before its record is appended
+                refilling.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                writeAheadLog.refilled(ingredientId, quantity, fromRefillPack);
+            }
+
+            @Override
+            public void sync() {
+                writeAheadLog.sync();
+            }
+        });
+        Thread refill = new Thread(() -> inventoryManager.refill("hot_water", 5));
+        refill.start();
+        refilling.await();
+        //the ration racing the refill can't use the quantity which is not logged yet
+        Assert.assertFalse(inventoryManager.tryRation(sweetWater).isSuccess());
+        inventoryManager.awaitDurable();
+        durableInventory.crash();
+        release.countDown();
+        refill.join();
+
+        DurableInventory recovered = DurableInventory.open(directory, definition(), 1000);
+        Assert.assertEquals(0, recovered.getInventoryManager().getQuantity("hot_water"));
+        Assert.assertEquals(1000 - 20, recovered.getInventoryManager().getQuantity("sugar_syrup"));
+        recovered.close();
+    }
+}
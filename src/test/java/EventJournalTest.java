@@ -0,0 +1,69 @@
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.EventJournal;
+import com.dunzo.coffee_machine.EventJournalReader;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static long count(List<String> lines, String text) {
+        return lines.stream().filter(line -> line.contains(text)).count();
+    }
+
+    /**
+     * every order event is journaled even when the ring is much smaller than the number of events
+     */
+    @Test
+    public void journalIsComplete() throws Exception {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 150);
+        stock.put("sugar_syrup", 1000);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+        RefillProvider refillProvider = new RefillProvider(inventoryManager.getIngredientRegistry(),
+                Collections.singletonMap("hot_water", 50));
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(4), inventoryManager, refillProvider);
+        Path journalFile = temporaryFolder.getRoot().toPath().resolve("orders.journal");
+        EventJournal eventJournal = new EventJournal(journalFile, coffeeMachine.getIngredientRegistry(), 4);
+        coffeeMachine.setOrderJournal(eventJournal);
+
+        Map<String, Integer> ingredients = new HashMap<>();
+        ingredients.put("hot_water", 1);
+        ingredients.put("sugar_syrup", 1);
+        Recipe sweetWater = Recipe.compile("sweet_water", ingredients, coffeeMachine.getIngredientRegistry());
+        for (int i = 0; i < 250; i++) {
+            coffeeMachine.submitOrder(sweetWater);
+        }
+        coffeeMachine.close();
+        eventJournal.close();
+
+        List<String> lines = new ArrayList<>();
+        long records = EventJournalReader.decode(journalFile, lines::add);
+        Assert.assertEquals(records, lines.size());
+        Assert.assertEquals(250, count(lines, "SUBMITTED beverage=sweet_water"));
+        //150 from the stock and 50 from the refill pack
+        Assert.assertEquals(200, count(lines, "RATIONED beverage=sweet_water"));
+        Assert.assertEquals(200, count(lines, "INGREDIENT_DELTA ingredient=hot_water quantity=-1"));
+        Assert.assertEquals(200, count(lines, "INGREDIENT_DELTA ingredient=sugar_syrup quantity=-1"));
+        Assert.assertEquals(50, lines.stream().filter(line -> line.contains("REFILLED ingredient=hot_water"))
+                .mapToInt(line -> Integer.parseInt(line.substring(line.lastIndexOf('=') + 1))).sum());
+        Assert.assertEquals(50, count(lines, "FAILED beverage=sweet_water status=INSUFFICIENT_INGREDIENTS"));
+        Assert.assertEquals(250 + 200 * 3 + 50 + count(lines, "REFILLED"), records);
+        Assert.assertTrue(eventJournal.getFullWaits() > 0);
+    }
+}
@@ -0,0 +1,49 @@
+import com.dunzo.coffee_machine.FleetReport;
+import com.dunzo.coffee_machine.FleetRunner;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineReport;
+import com.dunzo.coffee_machine.OrderStatus;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FleetRunnerTest {
+
+    /**
+     * the four single machine inputs run side by side and give the same results as when they run alone
+     */
+    @Test
+    public void fleetMachinesAreIndependent() {
+        FleetReport fleetReport = FleetRunner.run("fleet1.json");
+
+        List<MachineReport> machineReports = fleetReport.getMachineReports();
+        Assert.assertEquals(4, machineReports.size());
+        Assert.assertEquals(2, machineReports.get(0).getPrepared());
+        Assert.assertEquals(2, machineReports.get(1).getPrepared());
+        Assert.assertEquals(2, machineReports.get(2).getPrepared());
+        //asserting that the refill pack of the fourth machine was not used up by the others
+        Assert.assertEquals(4, machineReports.get(3).getPrepared());
+        Assert.assertEquals(2, fleetReport.getOrders(OrderStatus.INSUFFICIENT_INGREDIENTS));
+    }
+
+    /**
+     * thousands of machines with many outlets each share a handful of threads
+     */
+    @Test
+    public void threadCountDoesNotGrowWithOutlets() {
+        List<MachineDefinition> machineDefinitions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            machineDefinitions.add(SyntheticMenu.generate(10, 5, 3, 100, 0, i).toDefinition(16));
+        }
+        int threadsBefore = Thread.activeCount();
+        FleetReport fleetReport = FleetRunner.run(machineDefinitions, 4);
+
+        Assert.assertEquals(20000, fleetReport.getTotalOrders());
+        Assert.assertTrue(fleetReport.getOrders(OrderStatus.PREPARED) > 0);
+        //2000 machines with 16 outlets each would have needed 32000 threads
+        Assert.assertTrue(Thread.activeCount() - threadsBefore <= 4);
+    }
+}
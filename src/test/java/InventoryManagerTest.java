@@ -0,0 +1,307 @@
+import com.dunzo.coffee_machine.BatchRationer;
+import com.dunzo.coffee_machine.FeasibilityIndex;
+import com.dunzo.coffee_machine.IngredientLeases;
+import com.dunzo.coffee_machine.InsufficientIngredientsException;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.RationResult;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InventoryManagerTest {
+
+    /**
+     * nothing should be deducted if even one of the ingredients is short
+     */
+    @Test
+    public void rationIsAllOrNothing() {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 500);
+        stock.put("sugar_syrup", 10);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+
+        Map<String, Integer> recipe = new HashMap<>();
+        recipe.put("hot_water", 200);
+        recipe.put("sugar_syrup", 50);
+        try {
+            inventoryManager.ration(recipe);
+            Assert.fail("sugar_syrup is short, ration should have failed");
+        } catch (InsufficientIngredientsException e) {
+            Assert.assertEquals(1, e.getInsufficientIngredients().size());
+            Assert.assertEquals("sugar_syrup", e.getInsufficientIngredients().get(0));
+        }
+        //asserting that hot_water was rolled back
+        Assert.assertEquals(500, inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(10, inventoryManager.getQuantity("sugar_syrup"));
+    }
+
+    /**
+     * concurrent outlets should never over-dispense and exactly as many beverages as the stock allows should be made
+     */
+    @Test
+    public void concurrentRationsNeverOverDispense() throws InterruptedException {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 1000);
+        stock.put("tea_leaves_syrup", 700);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+
+        Map<String, Integer> recipe = new HashMap<>();
+        recipe.put("hot_water", 10);
+        recipe.put("tea_leaves_syrup", 10);
+
+        int outlets = 8;
+        AtomicInteger prepared = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 50; j++) {
+                    try {
+                        inventoryManager.ration(recipe);
+                        prepared.incrementAndGet();
+                    } catch (InsufficientIngredientsException ignored) {
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+        //tea_leaves_syrup runs out after 70 beverages
+        Assert.assertEquals(70, prepared.get());
+        Assert.assertEquals(300, inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(0, inventoryManager.getQuantity("tea_leaves_syrup"));
+    }
+
+    /**
+     * batched rations racing with direct ones still never over-dispense and each ration stays all-or-nothing
+     */
+    @Test
+    public void batchedRationsNeverOverDispense() throws InterruptedException {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 1000);
+        stock.put("tea_leaves_syrup", 700);
+        stock.put("milk", 10000);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+        BatchRationer batchRationer = new BatchRationer(inventoryManager, 16, TimeUnit.MICROSECONDS.toNanos(50));
+
+        Map<String, Integer> tea = new HashMap<>();
+        tea.put("hot_water", 10);
+        tea.put("tea_leaves_syrup", 10);
+        Recipe teaRecipe = Recipe.compile("tea", tea, inventoryManager.getIngredientRegistry());
+        Map<String, Integer> latte = new HashMap<>();
+        latte.put("hot_water", 5);
+        latte.put("milk", 10);
+        Recipe latteRecipe = Recipe.compile("latte", latte, inventoryManager.getIngredientRegistry());
+
+        int outlets = 8;
+        AtomicInteger teas = new AtomicInteger();
+        AtomicInteger lattes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            boolean direct = i == 0;
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 50; j++) {
+                    Recipe recipe = j % 2 == 0 ? teaRecipe : latteRecipe;
+                    RationResult rationResult = direct ?
+                            inventoryManager.tryRation(recipe) : batchRationer.ration(recipe);
+                    if (rationResult.isSuccess())
+                        (recipe == teaRecipe ? teas : lattes).incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+        //asserting that the stock matches exactly what was served
+        Assert.assertTrue(teas.get() <= 70);
+        Assert.assertEquals(1000 - 10 * teas.get() - 5 * lattes.get(), inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(700 - 10 * teas.get(), inventoryManager.getQuantity("tea_leaves_syrup"));
+        Assert.assertEquals(10000 - 10 * lattes.get(), inventoryManager.getQuantity("milk"));
+        Assert.assertTrue(inventoryManager.getQuantity("hot_water") >= 0);
+    }
+
+    /**
+     * an outlet only learns that its batched ration succeeded once the batch is deducted, so whatever has been
+     * served is always missing from the stock, on tight stock with batched and direct rations racing
+     */
+    @Test
+    public void batchedResultsFollowTheDeduction() throws InterruptedException {
+        InventoryManager inventoryManager = new InventoryManager(Collections.singletonMap("hot_water", 300));
+        BatchRationer batchRationer = new BatchRationer(inventoryManager, 16, TimeUnit.MICROSECONDS.toNanos(50));
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1),
+                inventoryManager.getIngredientRegistry());
+
+        int outlets = 8;
+        AtomicInteger served = new AtomicInteger();
+        AtomicInteger aheadOfTheStock = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            boolean direct = i % 4 == 0;
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 60; j++) {
+                    RationResult rationResult = direct ?
+                            inventoryManager.tryRation(hotWater) : batchRationer.ration(hotWater);
+                    if (rationResult.isSuccess() && served.incrementAndGet() + inventoryManager.getQuantity("hot_water") > 300)
+                        aheadOfTheStock.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assert.assertEquals(0, aheadOfTheStock.get());
+        Assert.assertEquals(300, served.get() + inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(300, served.get());
+    }
+
+    /**
+     * outlets serving from their own leases keep the totals exact, and once the leases are gathered back nothing that
+     * could still be served is refused
+     */
+    @Test
+    public void stripedRationsKeepTheTotalsExact() throws InterruptedException {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 1000);
+        stock.put("tea_leaves_syrup", 700);
+        stock.put("milk", 10000);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+        IngredientLeases ingredientLeases = new IngredientLeases(inventoryManager, 4);
+
+        Map<String, Integer> tea = new HashMap<>();
+        tea.put("hot_water", 10);
+        tea.put("tea_leaves_syrup", 10);
+        Recipe teaRecipe = Recipe.compile("tea", tea, inventoryManager.getIngredientRegistry());
+        Map<String, Integer> latte = new HashMap<>();
+        latte.put("hot_water", 5);
+        latte.put("milk", 10);
+        Recipe latteRecipe = Recipe.compile("latte", latte, inventoryManager.getIngredientRegistry());
+
+        int outlets = 8;
+        AtomicInteger teas = new AtomicInteger();
+        AtomicInteger lattes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 15; j++) {
+                    Recipe recipe = j % 3 == 0 ? latteRecipe : teaRecipe;
+                    if (ingredientLeases.ration(recipe).isSuccess())
+                        (recipe == teaRecipe ? teas : lattes).incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+        //asserting that the leased quantities are still counted in the totals
+        Assert.assertEquals(1000 - 10 * teas.get() - 5 * lattes.get(), inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(700 - 10 * teas.get(), inventoryManager.getQuantity("tea_leaves_syrup"));
+
+        //a single outlet serves whatever is left, wherever it is leased
+        while (ingredientLeases.ration(teaRecipe).isSuccess()) {
+            teas.incrementAndGet();
+        }
+        while (ingredientLeases.ration(latteRecipe).isSuccess()) {
+            lattes.incrementAndGet();
+        }
+        ingredientLeases.returnAll();
+
+        int hotWaterId = inventoryManager.getIngredientRegistry().idOf("hot_water");
+        Assert.assertEquals(0, ingredientLeases.getLeasedQuantity(hotWaterId));
+        Assert.assertTrue(inventoryManager.getQuantity("hot_water") < 5);
+        Assert.assertEquals(1000 - 10 * teas.get() - 5 * lattes.get(), inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(700 - 10 * teas.get(), inventoryManager.getQuantity("tea_leaves_syrup"));
+        Assert.assertEquals(10000 - 10 * lattes.get(), inventoryManager.getQuantity("milk"));
+    }
+
+    /**
+     * a quantity on its way between the shared counter and a lease is still counted, the quantity read never drops
+     * below what is left once the rations in progress are done
+     */
+    @Test
+    public void quantityInTransitIsCounted() throws InterruptedException {
+        InventoryManager inventoryManager = new InventoryManager(Collections.singletonMap("hot_water", 200000));
+        IngredientLeases ingredientLeases = new IngredientLeases(inventoryManager, 4);
+        int hotWaterId = inventoryManager.getIngredientRegistry().idOf("hot_water");
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1),
+                inventoryManager.getIngredientRegistry());
+
+        int outlets = 4;
+        AtomicInteger served = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(outlets);
+        for (int i = 0; i < outlets; i++) {
+            executorService.execute(() -> {
+                while (ingredientLeases.ration(hotWater).isSuccess()) {
+                    served.incrementAndGet();
+                }
+            });
+        }
+        executorService.shutdown();
+        while (!executorService.isTerminated()) {
+            int quantity = inventoryManager.getQuantity(hotWaterId);
+            //every outlet has at most one ration in progress which is not counted in served yet
+            Assert.assertTrue(quantity >= 200000 - served.get() - outlets);
+        }
+        Assert.assertEquals(200000, served.get());
+        Assert.assertTrue(ingredientLeases.getTopUps() > 0);
+    }
+
+    /**
+     * an ingredient missing from both the inventory and the refill pack makes the recipe infeasible up front
+     */
+    @Test
+    public void missingIngredientIsInfeasible() {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 500);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+        FeasibilityIndex feasibilityIndex = new FeasibilityIndex(inventoryManager,
+                RefillProvider.createEmpty(inventoryManager.getIngredientRegistry()));
+
+        Map<String, Integer> ingredients = new HashMap<>();
+        ingredients.put("hot_water", 100);
+        ingredients.put("green_mixture", 30);
+        Recipe greenTea = Recipe.compile("green_tea", ingredients, inventoryManager.getIngredientRegistry());
+
+        RationResult feasibility = feasibilityIndex.check(greenTea);
+        Assert.assertTrue(feasibility.isInfeasible());
+        Assert.assertEquals(1, feasibility.getInsufficientIngredientIds().length);
+        Assert.assertFalse(inventoryManager.tryRation(greenTea).isSuccess());
+        Assert.assertEquals(500, inventoryManager.getQuantity("hot_water"));
+    }
+}
\ No newline at end of file
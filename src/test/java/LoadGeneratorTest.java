@@ -0,0 +1,118 @@
+import com.dunzo.coffee_machine.ArrivalProcess;
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.LoadGenerator;
+import com.dunzo.coffee_machine.LoadProfile;
+import com.dunzo.coffee_machine.LoadReport;
+import com.dunzo.coffee_machine.MachineFactory;
+import com.dunzo.coffee_machine.OrderJournal;
+import com.dunzo.coffee_machine.OrderStatus;
+import com.dunzo.coffee_machine.OrderTrace;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LoadGeneratorTest {
+
+    private static final List<String> BEVERAGES = Arrays.asList("tea", "coffee", "latte", "lemonade", "mocha");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * generated traces keep the mean rate whatever the arrival process, favour the beverages at the top of the menu
+     * and come back unchanged from their file
+     */
+    @Test
+    public void generatedTracesRoundTrip() throws IOException {
+        for (ArrivalProcess arrivalProcess : ArrivalProcess.values()) {
+            OrderTrace orderTrace = OrderTrace.generate(BEVERAGES, LoadProfile.of(1000, 20000)
+                    .withArrivalProcess(arrivalProcess).withSeed(7));
+            //asserting that 20000 orders at 1000 per second take about 20 seconds
+            Assert.assertEquals(20e9, orderTrace.getDurationNanos(), 2e9);
+            int[] counts = new int[BEVERAGES.size()];
+            for (int i = 0; i < orderTrace.size(); i++) {
+                counts[BEVERAGES.indexOf(orderTrace.beverageNameAt(i))]++;
+            }
+            //with an exponent of 1 the first beverage is ordered about five times as often as the fifth
+            Assert.assertTrue(counts[0] > 3 * counts[4]);
+
+            Path file = temporaryFolder.getRoot().toPath().resolve(arrivalProcess + ".trace");
+            orderTrace.write(file);
+            OrderTrace read = OrderTrace.read(file);
+            Assert.assertEquals(BEVERAGES, read.getBeverageNames());
+            Assert.assertEquals(orderTrace.size(), read.size());
+            for (int i = 0; i < orderTrace.size(); i++) {
+                Assert.assertEquals(orderTrace.arrivalNanosAt(i), read.arrivalNanosAt(i));
+                Assert.assertEquals(orderTrace.beverageNameAt(i), read.beverageNameAt(i));
+            }
+        }
+    }
+
+    /**
+     * a trace with a negative number of orders or an order for a beverage outside the menu is refused as corrupt
+     */
+    @Test
+    public void corruptTracesAreRefused() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("corrupt.trace");
+        OrderTrace.generate(BEVERAGES, LoadProfile.of(1000, 1).withSeed(7)).write(file);
+        byte[] trace = Files.readAllBytes(file);
+        //magic, version and beverage count, the names, then the order count, the arrival and the beverage of the order
+        int ordersAt = 12;
+        for (String beverage : BEVERAGES) {
+            ordersAt += 2 + beverage.length();
+        }
+        byte[] negativeOrders = trace.clone();
+        negativeOrders[ordersAt] = (byte) 0x80;
+        byte[] unknownBeverage = trace.clone();
+        unknownBeverage[trace.length - 1] = (byte) BEVERAGES.size();
+        for (byte[] corrupt : new byte[][]{negativeOrders, unknownBeverage}) {
+            Files.write(file, corrupt);
+            try {
+                OrderTrace.read(file);
+                Assert.fail("the trace is corrupt");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    /**
+     * every order of the trace is answered and accounted for, its latency from the intended arrival is never below
+     * its service time, and a recorded run replays the same orders
+     */
+    @Test
+    public void runAnswersEveryOrder() throws InterruptedException {
+        SyntheticMenu syntheticMenu = SyntheticMenu.generate(20, 10, 3, 10000, 0, 1);
+        List<String> beverageNames = new ArrayList<>(syntheticMenu.getBeverages().keySet());
+        OrderTrace orderTrace = OrderTrace.generate(beverageNames, LoadProfile.of(20000, 2000)
+                .withArrivalProcess(ArrivalProcess.BURSTY).withSeed(3));
+        OrderTrace.Recorder recorder = new OrderTrace.Recorder(OrderJournal.NONE);
+        LoadReport loadReport;
+        try (CoffeeMachine coffeeMachine = MachineFactory.create(syntheticMenu.toDefinition(2), null)) {
+            coffeeMachine.setOrderJournal(recorder);
+            loadReport = LoadGenerator.run(coffeeMachine, orderTrace);
+        }
+
+        Assert.assertEquals(0, loadReport.getErrors());
+        Assert.assertEquals(2000, loadReport.getAnsweredOrders());
+        Assert.assertEquals(2000, loadReport.getOrders(OrderStatus.PREPARED)
+                + loadReport.getOrders(OrderStatus.INSUFFICIENT_INGREDIENTS));
+        Assert.assertEquals(2000, loadReport.getLatency().getCount());
+        Assert.assertTrue(loadReport.getLatency().getMax() >= loadReport.getServiceTime().getMax());
+        Assert.assertTrue(loadReport.getThroughput() > 0);
+
+        OrderTrace recorded = recorder.toTrace();
+        Assert.assertEquals(orderTrace.size(), recorded.size());
+        for (int i = 0; i < orderTrace.size(); i++) {
+            Assert.assertEquals(orderTrace.beverageNameAt(i), recorded.beverageNameAt(i));
+        }
+    }
+}
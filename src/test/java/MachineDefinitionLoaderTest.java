@@ -0,0 +1,81 @@
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineDefinitionLoader;
+import com.dunzo.coffee_machine.OverflowPolicy;
+import com.dunzo.coffee_machine.Recipe;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class MachineDefinitionLoaderTest {
+
+    /**
+     * the sections can come in any order, beverages may use ingredients which are not in the stock
+     * and unknown fields are skipped
+     */
+    @Test
+    public void sectionsInAnyOrder() throws IOException {
+        String input = "{\"comment\":[1,{\"a\":2}],\"machine\":{" +
+                "\"beverages\":{\"hot_tea\":{\"hot_water\":200,\"tea_leaves_syrup\":30}," +
+                "\"green_tea\":{\"hot_water\":100,\"green_mixture\":30}}," +
+                "\"refill_pack\":{\"hot_water\":50}," +
+                "\"total_items_quantity\":{\"tea_leaves_syrup\":100,\"hot_water\":500}," +
+                "\"outlets\":{\"queue_capacity\":8,\"overflow_policy\":\"shed_oldest\",\"count_n\":2," +
+                "\"ration_batch_size\":16,\"ration_batch_window_us\":50}}}";
+        MachineDefinition machineDefinition = MachineDefinitionLoader.load(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        Assert.assertEquals(3, ingredientRegistry.size());
+        Assert.assertEquals(2, machineDefinition.getOutletConfig().getCount());
+        Assert.assertEquals(8, machineDefinition.getOutletConfig().getQueueCapacity());
+        Assert.assertEquals(OverflowPolicy.SHED_OLDEST, machineDefinition.getOutletConfig().getOverflowPolicy());
+        Assert.assertEquals(16, machineDefinition.getOutletConfig().getRationBatchSize());
+        Assert.assertEquals(50_000, machineDefinition.getOutletConfig().getRationBatchWindowNanos());
+
+        int[] itemsQuantity = machineDefinition.getItemsQuantity();
+        Assert.assertEquals(500, itemsQuantity[ingredientRegistry.idOf("hot_water")]);
+        Assert.assertEquals(100, itemsQuantity[ingredientRegistry.idOf("tea_leaves_syrup")]);
+        Assert.assertEquals(0, itemsQuantity[ingredientRegistry.idOf("green_mixture")]);
+        Assert.assertEquals(50, machineDefinition.getRefillPack()[ingredientRegistry.idOf("hot_water")]);
+
+        Assert.assertEquals(2, machineDefinition.getBeverages().size());
+        Recipe greenTea = machineDefinition.getBeverages().get(1);
+        Assert.assertEquals("green_tea", greenTea.getBeverageName());
+        Assert.assertEquals(Integer.valueOf(30), greenTea.toMap(ingredientRegistry).get("green_mixture"));
+    }
+
+    /**
+     * a plain input is loaded with the same content as written
+     */
+    @Test
+    public void loadsInput() throws IOException {
+        MachineDefinition machineDefinition;
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("input1.json")) {
+            machineDefinition = MachineDefinitionLoader.load(inputStream);
+        }
+        IngredientRegistry ingredientRegistry = machineDefinition.getIngredientRegistry();
+        Assert.assertEquals(3, machineDefinition.getOutletConfig().getCount());
+        Assert.assertFalse(machineDefinition.getOutletConfig().isQueueBounded());
+        Assert.assertEquals(5, ingredientRegistry.size());
+        Assert.assertEquals(2, machineDefinition.getBeverages().size());
+        Recipe blackTea = machineDefinition.getBeverages().get(1);
+        Assert.assertEquals(4, blackTea.size());
+        Assert.assertEquals(Integer.valueOf(50), blackTea.toMap(ingredientRegistry).get("sugar_syrup"));
+    }
+
+    /**
+     * an overflow policy has nothing to act on without a bounded queue, so it is refused rather than ignored
+     */
+    @Test(expected = JsonParseException.class)
+    public void overflowPolicyNeedsQueueCapacity() throws IOException {
+        String input = "{\"machine\":{\"outlets\":{\"count_n\":2,\"overflow_policy\":\"block\"}," +
+                "\"total_items_quantity\":{\"hot_water\":500},\"beverages\":{}}}";
+        MachineDefinitionLoader.load(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,112 @@
+import com.dunzo.coffee_machine.ApplicationConstants;
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.LatencyHistogram;
+import com.dunzo.coffee_machine.MachineMetrics;
+import com.dunzo.coffee_machine.MetricsSnapshot;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MachineMetricsTest {
+
+    /**
+     * percentiles are reported within the precision of the buckets
+     */
+    @Test
+    public void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        Assert.assertEquals(100_000, histogram.getCount());
+        Assert.assertEquals(100_000_000, histogram.getMax());
+        Assert.assertEquals(50_000_500, histogram.getMean(), 1);
+        Assert.assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.07);
+        Assert.assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.07);
+        Assert.assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    /**
+     * every order and refill is counted and the live ingredient levels are visible over JMX
+     */
+    @Test
+    public void machineMetricsOverJmx() throws Exception {
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 2);
+        InventoryManager inventoryManager = new InventoryManager(stock);
+        RefillProvider refillProvider = new RefillProvider(inventoryManager.getIngredientRegistry(),
+                Collections.singletonMap("hot_water", 1));
+        //timing every order so that each one shows up in the histograms
+        System.setProperty(ApplicationConstants.METRICS_TIMING_SAMPLE_PROPERTY, "1");
+        CoffeeMachine coffeeMachine;
+        try {
+            coffeeMachine = new CoffeeMachine(OutletConfig.of(1), inventoryManager, refillProvider);
+        } finally {
+            System.clearProperty(ApplicationConstants.METRICS_TIMING_SAMPLE_PROPERTY);
+        }
+        ObjectName objectName = coffeeMachine.registerMBean("metrics-test");
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1),
+                coffeeMachine.getIngredientRegistry());
+        for (int i = 0; i < 3; i++) {
+            OutletResponse outletResponse = coffeeMachine.submitOrder(hotWater).join();
+            Assert.assertTrue(outletResponse.wasBeveragePrepared());
+            Assert.assertTrue(outletResponse.getRationNanos() > 0);
+        }
+        //refill pack is used up, the fourth order is refused at admission
+        Assert.assertFalse(coffeeMachine.submitOrder(hotWater).join().wasBeveragePrepared());
+
+        MetricsSnapshot metricsSnapshot = coffeeMachine.getMetricsSnapshot();
+        Assert.assertEquals(3, metricsSnapshot.getOrdersPrepared());
+        Assert.assertEquals(1, metricsSnapshot.getOrdersInsufficient());
+        Assert.assertEquals(3, metricsSnapshot.getRation().getCount());
+        Assert.assertEquals(1, metricsSnapshot.getRefillAttempts());
+        Assert.assertEquals(1, metricsSnapshot.getRefillsServed());
+        Assert.assertEquals(Integer.valueOf(0), metricsSnapshot.getIngredientLevels().get("hot_water"));
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        CompositeData snapshot = (CompositeData) mBeanServer.getAttribute(objectName, "MetricsSnapshot");
+        Assert.assertEquals(3L, snapshot.get("ordersPrepared"));
+        Assert.assertEquals(3L, ((CompositeData) snapshot.get("queueWait")).get("count"));
+
+        coffeeMachine.close();
+        Assert.assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+    /**
+     * by default every order is counted but only a sample of them reads the clock and is timed
+     */
+    @Test
+    public void onlySampledOrdersAreTimed() throws InterruptedException {
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(2),
+                new InventoryManager(Collections.singletonMap("hot_water", 1600)));
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 1),
+                coffeeMachine.getIngredientRegistry());
+        int timed = 0;
+        for (int i = 0; i < 1600; i++) {
+            if (coffeeMachine.submitOrder(hotWater).join().getRationNanos() > 0)
+                timed++;
+        }
+        coffeeMachine.close();
+
+        MetricsSnapshot metricsSnapshot = coffeeMachine.getMetricsSnapshot();
+        Assert.assertEquals(MachineMetrics.DEFAULT_TIMING_SAMPLE_RATE, coffeeMachine.getMetrics().getTimingSampleRate());
+        Assert.assertEquals(1600, metricsSnapshot.getOrdersPrepared());
+        Assert.assertEquals(timed, metricsSnapshot.getRation().getCount());
+        Assert.assertEquals(timed, metricsSnapshot.getQueueWait().getCount());
+        //50 timed orders are expected, far from both none and all of them
+        Assert.assertTrue(timed > 10 && timed < 200);
+    }
+}
@@ -0,0 +1,98 @@
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.OrderScheduler;
+import com.dunzo.coffee_machine.OrderStatus;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SchedulePlan;
+import com.dunzo.coffee_machine.SchedulingPolicy;
+import com.dunzo.coffee_machine.SyntheticMenu;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class OrderSchedulerTest {
+
+    /**
+     * the plan counts the refill pack in and can swap one greedy pick for two orders which fit in its place
+     */
+    @Test
+    public void planServesMoreThanFifo() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry,
+                Collections.singletonMap("hot_water", 300));
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, Collections.singletonMap("hot_water", 300));
+        List<Recipe> window = new ArrayList<>();
+        window.add(Recipe.compile("large", Collections.singletonMap("hot_water", 500), ingredientRegistry));
+        for (int i = 0; i < 3; i++) {
+            window.add(Recipe.compile("small_" + i, Collections.singletonMap("hot_water", 200), ingredientRegistry));
+        }
+
+        SchedulePlan schedulePlan = new OrderScheduler(inventoryManager, refillProvider).plan(window);
+
+        //asserting that the first order takes most of the hot water in the order of submission
+        Assert.assertEquals(1, schedulePlan.getFifoServed());
+        Assert.assertEquals(3, schedulePlan.getServed());
+        Assert.assertFalse(schedulePlan.isAdmitted(0));
+    }
+
+    /**
+     * on random menus the plan always fits in the stock plus the refill pack and never serves less than FIFO
+     */
+    @Test
+    public void planFitsAndIsNeverWorseThanFifo() {
+        for (long seed = 0; seed < 20; seed++) {
+            SyntheticMenu menu = SyntheticMenu.generate(2000, 20, 4, 1500, 500, seed);
+            IngredientRegistry ingredientRegistry = new IngredientRegistry();
+            InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, menu.getItemsQuantity());
+            RefillProvider refillProvider = new RefillProvider(ingredientRegistry, menu.getRefillPack());
+            List<Recipe> window = new ArrayList<>();
+            menu.getBeverages().forEach((name, ingredients) -> window.add(Recipe.compile(name, ingredients, ingredientRegistry)));
+
+            SchedulePlan schedulePlan = new OrderScheduler(inventoryManager, refillProvider).plan(window);
+
+            Assert.assertTrue(schedulePlan.getServed() >= schedulePlan.getFifoServed());
+            long[] used = new long[ingredientRegistry.size()];
+            for (int index : schedulePlan.getAdmissionOrder()) {
+                Recipe recipe = window.get(index);
+                for (int i = 0; i < recipe.size(); i++) {
+                    used[recipe.ingredientIdAt(i)] += recipe.quantityAt(i);
+                }
+            }
+            for (int id = 0; id < used.length; id++) {
+                Assert.assertTrue(used[id] <= inventoryManager.getQuantity(id) + refillProvider.remainingQuantity(id));
+            }
+        }
+    }
+
+    /**
+     * a machine planning its orders refuses the ones left out of the plan and counts them apart
+     */
+    @Test
+    public void plannedOutOrdersAreCounted() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry,
+                Collections.singletonMap("hot_water", 500));
+        List<Recipe> orders = new ArrayList<>();
+        orders.add(Recipe.compile("large", Collections.singletonMap("hot_water", 500), ingredientRegistry));
+        for (int i = 0; i < 2; i++) {
+            orders.add(Recipe.compile("small_" + i, Collections.singletonMap("hot_water", 250), ingredientRegistry));
+        }
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(1).withSchedulingPolicy(SchedulingPolicy.YIELD),
+                inventoryManager);
+
+        List<CompletableFuture<OutletResponse>> responses = coffeeMachine.submitAllOrders(orders);
+        coffeeMachine.close();
+
+        Assert.assertEquals(OrderStatus.INSUFFICIENT_INGREDIENTS, responses.get(0).join().getStatus());
+        Assert.assertEquals(1, coffeeMachine.getMetricsSnapshot().getOrdersPlannedOut());
+        Assert.assertEquals(2, coffeeMachine.getMetricsSnapshot().getOrdersPrepared());
+    }
+}
@@ -0,0 +1,93 @@
+import com.dunzo.coffee_machine.CoffeeMachine;
+import com.dunzo.coffee_machine.IngredientRegistry;
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.OutletConfig;
+import com.dunzo.coffee_machine.OutletResponse;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.ReplenishmentConfig;
+import com.dunzo.coffee_machine.ReplenishmentService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ReplenishmentServiceTest {
+
+    /**
+     * an ingredient is topped up once its stock falls below the demand forecast, a low-water mark holds even
+     * without any demand
+     */
+    @Test
+    public void stockIsToppedUpAheadOfDemand() {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        Map<String, Integer> stock = new HashMap<>();
+        stock.put("hot_water", 1000);
+        stock.put("hot_milk", 50);
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry, stock);
+        Map<String, Integer> refillPack = new HashMap<>();
+        refillPack.put("hot_water", 10000);
+        refillPack.put("hot_milk", 10000);
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry, refillPack);
+        ReplenishmentService replenishmentService = new ReplenishmentService(inventoryManager, refillProvider,
+                new ReplenishmentConfig(TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(1), 1,
+                        Collections.singletonMap("hot_milk", 100)));
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 50), ingredientRegistry);
+
+        long now = TimeUnit.SECONDS.toNanos(1);
+        replenishmentService.replenish(now);
+        //asserting that the milk went up to its low-water mark right away
+        Assert.assertEquals(100, inventoryManager.getQuantity("hot_milk"));
+        Assert.assertEquals(1000, inventoryManager.getQuantity("hot_water"));
+
+        for (int i = 0; i < 12; i++) {
+            Assert.assertTrue(inventoryManager.tryRation(hotWater).isSuccess());
+        }
+        replenishmentService.replenish(now + TimeUnit.SECONDS.toNanos(1));
+
+        //600 a second leaves 400 for a forecast of 600, topped up to 600 plus another 600
+        Assert.assertEquals(600, replenishmentService.getConsumptionRate(ingredientRegistry.idOf("hot_water")), 0.001);
+        Assert.assertEquals(1200, inventoryManager.getQuantity("hot_water"));
+        Assert.assertEquals(9200, refillProvider.remainingQuantity(ingredientRegistry.idOf("hot_water")));
+        Assert.assertEquals(2, replenishmentService.getRefills());
+        Assert.assertEquals(0, replenishmentService.getTooLate());
+    }
+
+    /**
+     * refills ahead of demand run concurrently with the outlets and nothing is lost or made twice
+     */
+    @Test
+    public void replenishmentRunsAlongsideTheOutlets() throws InterruptedException {
+        IngredientRegistry ingredientRegistry = new IngredientRegistry();
+        InventoryManager inventoryManager = new InventoryManager(ingredientRegistry,
+                Collections.singletonMap("hot_water", 100));
+        RefillProvider refillProvider = new RefillProvider(ingredientRegistry,
+                Collections.singletonMap("hot_water", 100000));
+        CoffeeMachine coffeeMachine = new CoffeeMachine(OutletConfig.of(4), inventoryManager, refillProvider);
+        //the low-water mark covers every order, so the first check already keeps the outlets from running short
+        //and the later ones top up the stock while the outlets draw it down
+        ReplenishmentService replenishmentService = coffeeMachine.startReplenishment(new ReplenishmentConfig(
+                TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(50), 0.5,
+                Collections.singletonMap("hot_water", 10000 * 5)));
+        Recipe hotWater = Recipe.compile("hot_water", Collections.singletonMap("hot_water", 5), ingredientRegistry);
+
+        List<CompletableFuture<OutletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            responses.add(coffeeMachine.submitOrder(hotWater));
+        }
+        coffeeMachine.close();
+
+        Assert.assertTrue(responses.stream().allMatch(x -> x.join().wasBeveragePrepared()));
+        int hotWaterId = ingredientRegistry.idOf("hot_water");
+        Assert.assertEquals(100 + 100000 - 10000 * 5,
+                inventoryManager.getQuantity(hotWaterId) + refillProvider.remainingQuantity(hotWaterId));
+        Assert.assertTrue(replenishmentService.getRefills() > 0);
+        Assert.assertEquals(0, replenishmentService.getTooLate());
+    }
+}
@@ -0,0 +1,143 @@
+import com.dunzo.coffee_machine.InventoryManager;
+import com.dunzo.coffee_machine.MachineDefinition;
+import com.dunzo.coffee_machine.MachineDefinitionLoader;
+import com.dunzo.coffee_machine.RationResult;
+import com.dunzo.coffee_machine.Recipe;
+import com.dunzo.coffee_machine.RefillProvider;
+import com.dunzo.coffee_machine.SharedInventory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SharedInventoryTest {
+
+    private static final String INPUT = "{\"machine\":{\"outlets\":{\"count_n\":1}," +
+            "\"total_items_quantity\":{\"hot_water\":200000,\"tea_leaves_syrup\":60000,\"milk\":1000000}," +
+            "\"refill_pack\":{\"hot_water\":20000}," +
+            "\"beverages\":{\"tea\":{\"hot_water\":10,\"tea_leaves_syrup\":10}," +
+            "\"latte\":{\"hot_water\":5,\"milk\":10}}}}";
+    private static final String READY = "ready";
+    private static final String SERVED = "served";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static MachineDefinition definition() throws IOException {
+        return MachineDefinitionLoader.load(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * entry point of the processes started by the stress test: serves teas and lattes from the shared inventory,
+     * refilling their shortfall from the shared refill pack, until neither can be made and prints how many it served
+     * The processes start serving together, once they are told to on their standard input
+     */
+    public static void main(String[] args) throws IOException {
+        MachineDefinition machineDefinition = definition();
+        try (SharedInventory sharedInventory = SharedInventory.open(Paths.get(args[0]), machineDefinition)) {
+            InventoryManager inventoryManager = sharedInventory.getInventoryManager();
+            RefillProvider refillProvider = sharedInventory.getRefillProvider();
+            List<Recipe> beverages = machineDefinition.getBeverages();
+            System.out.println(READY);
+            new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+            int[] served = new int[beverages.size()];
+            boolean[] exhausted = new boolean[beverages.size()];
+            int remaining = beverages.size();
+            for (int order = 0; remaining > 0; order++) {
+                int index = order % beverages.size();
+                if (exhausted[index])
+                    continue;
+                Recipe recipe = beverages.get(index);
+                RationResult rationResult = inventoryManager.tryRation(recipe);
+                if (!rationResult.isSuccess()) {
+                    if (refillProvider.refillShortfall(recipe, inventoryManager).isInfeasible()) {
+                        exhausted[index] = true;
+                        remaining--;
+                        continue;
+                    }
+                    rationResult = inventoryManager.tryRation(recipe);
+                }
+                if (rationResult.isSuccess())
+                    served[index]++;
+            }
+            StringBuilder line = new StringBuilder(SERVED);
+            for (int count : served) {
+                line.append(' ').append(count);
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * several processes rationing and refilling the same inventory file never over-dispense: the stock and the refill
+     * pack left in the file match exactly what the processes served, and nothing that could be served is left
+     */
+    @Test
+    public void processesNeverOverDispense() throws IOException, InterruptedException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.shm");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    SharedInventoryTest.class.getName(), file.toString()).redirectErrorStream(true).start());
+        }
+        List<BufferedReader> outputs = new ArrayList<>();
+        for (Process process : processes) {
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.UTF_8));
+            String line;
+            do {
+                line = output.readLine();
+            } while (line != null && !line.equals(READY));
+            outputs.add(output);
+        }
+        for (Process process : processes) {
+            process.getOutputStream().write('\n');
+            process.getOutputStream().flush();
+        }
+        int teas = 0;
+        int lattes = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            Process process = processes.get(i);
+            String result = null;
+            try (BufferedReader output = outputs.get(i)) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith(SERVED))
+                        result = line;
+                }
+            }
+            Assert.assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            Assert.assertEquals(0, process.exitValue());
+            Assert.assertNotNull(result);
+            String[] counts = result.split(" ");
+            teas += Integer.parseInt(counts[1]);
+            lattes += Integer.parseInt(counts[2]);
+        }
+
+        MachineDefinition machineDefinition = definition();
+        try (SharedInventory sharedInventory = SharedInventory.open(file, machineDefinition)) {
+            InventoryManager inventoryManager = sharedInventory.getInventoryManager();
+            int hotWaterId = machineDefinition.getIngredientRegistry().idOf("hot_water");
+            int refilled = 20000 - sharedInventory.getRefillProvider().remainingQuantity(hotWaterId);
+            //asserting that every ration and refill of every process was applied exactly once
+            Assert.assertEquals(200000 + refilled - 10 * teas - 5 * lattes, inventoryManager.getQuantity("hot_water"));
+            Assert.assertEquals(60000 - 10 * teas, inventoryManager.getQuantity("tea_leaves_syrup"));
+            Assert.assertEquals(1000000 - 10 * lattes, inventoryManager.getQuantity("milk"));
+            //asserting that the processes stopped only once the hot water ran out for good
+            Assert.assertTrue(inventoryManager.getQuantity("hot_water") + 20000 - refilled < 5);
+        }
+    }
+}